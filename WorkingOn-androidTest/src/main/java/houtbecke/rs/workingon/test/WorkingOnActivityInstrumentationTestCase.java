@@ -17,6 +17,8 @@ public class WorkingOnActivityInstrumentationTestCase<T extends Activity> extend
 
 	@Before
 	protected void setUp() throws Exception {
+		if (WorkingOn.getInjectorCache() == null)
+			WorkingOn.setInjectorCacheSize(Integer.parseInt(System.getProperty(WorkingOn.INJECTOR_CACHE_SIZE_PROPERTY, "4")));
 		WorkingOn.configureTestTasks(this.getClass());
 		T activity = getActivity();
 		RoboGuice.injectMembers(activity, this);
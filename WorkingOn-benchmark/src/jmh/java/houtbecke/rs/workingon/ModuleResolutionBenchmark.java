@@ -0,0 +1,102 @@
+package houtbecke.rs.workingon;
+
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.Module;
+import com.google.inject.Stage;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ *
+ * Benchmarks resolving modules for tasks on the synthetic module graph generated by the build, on its own
+ * and together with building a Guice injector. This only uses the ModuleResolver, so it runs on the plain
+ * JVM without Android or RoboGuice.
+ *
+ * moduleCount base modules are resolved for taskCount tasks, for which hitRatio percent of the base
+ * modules have a task module. Each task module overrides the one of the previous task, so the override
+ * chains have a depth of taskCount.
+ *
+ * The resolver is reset before every iteration, so resolve and resolveAndCreateInjector measure resolving
+ * again with the class names and override graph already known, as on a reload. resolveFromScratch resets
+ * the resolver in the measured method, subtract the time of reset to get the time of resolving from scratch.
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ModuleResolutionBenchmark {
+
+    private static final String MODULE_PACKAGE = "houtbecke.rs.workingon.benchmark.modules";
+
+    @Param({"10", "50", "200"})
+    public int moduleCount;
+
+    @Param({"1", "3"})
+    public int taskCount;
+
+    @Param({"0", "10", "50", "100"})
+    public int hitRatio;
+
+    private final ModuleResolver resolver = new ModuleResolver(() -> true);
+    private final InjectorFactory injectorFactory = modules -> Guice.createInjector(Stage.PRODUCTION, modules);
+    private final List<Module> extraModules = Collections.emptyList();
+    private List<Class<? extends Module>> moduleClasses;
+    private List<String> tasks;
+
+    @Setup(Level.Trial)
+    public void setUp() throws ClassNotFoundException {
+        moduleClasses = new ArrayList<>(moduleCount);
+        for (int i = 0; i < moduleCount; i++)
+            moduleClasses.add(Class.forName(MODULE_PACKAGE + ".p" + i + ".Module" + i).asSubclass(Module.class));
+
+        tasks = new ArrayList<>(taskCount);
+        for (int k = 1; k <= taskCount; k++)
+            tasks.add("R" + hitRatio + "k" + k);
+    }
+
+    @Setup(Level.Iteration)
+    public void restart() {
+        resetResolver();
+    }
+
+    private void resetResolver() {
+        resolver.reset();
+        resolver.clearElementRecordings();
+        resolver.clearTaskModules();
+    }
+
+    @Benchmark
+    public ModuleRegistry resolve() throws Exception {
+        return resolver.resolve(tasks, moduleClasses, extraModules);
+    }
+
+    @Benchmark
+    public Injector resolveAndCreateInjector() throws Exception {
+        return resolver.load(injectorFactory, tasks, moduleClasses, extraModules);
+    }
+
+    @Benchmark
+    public ModuleRegistry resolveFromScratch() throws Exception {
+        resetResolver();
+        return resolver.resolve(tasks, moduleClasses, extraModules);
+    }
+
+    @Benchmark
+    public void reset() {
+        resetResolver();
+    }
+}
@@ -0,0 +1,285 @@
+package houtbecke.rs.workingon.compiler;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardLocation;
+
+/**
+ *
+ * Generates a ModuleFactories registry for all Guice Modules in the compilation, including the ones
+ * in task subpackages and the ones annotated with OverridesModule.
+ *
+ * For every public, concrete Module with a public single boolean argument or no-args constructor
+ * the registry will contain a factory that calls that constructor directly, and the Module it overrides.
+ * WorkingOn.loadModules will use this registry instead of reflection when it is present. A nested Module
+ * is only included when all classes enclosing it are public too, and a Module overriding one that can't
+ * be referenced from the registry is left out, so those are left to reflection.
+ *
+ * Modules are collected in every round, including the ones generated by other processors, and the
+ * registry is written in the last round.
+ *
+ * Every compilation, for example of an application and of each library with modules, gets its own
+ * registry, in the package all of its modules share or in the package given with the
+ * workingon.registryPackage processor option. The registry is listed in META-INF/services, through
+ * which the resolver finds the registries of all compilations.
+ *
+ * Next to the registry a list of the modules and the Module each overrides is written to the class
+ * output, which the WorkingOn Gradle plugin reads to strip task modules from release builds.
+ *
+ */
+public class ModuleFactoriesProcessor extends AbstractProcessor {
+
+    static final String MODULE = "com.google.inject.Module";
+    static final String OVERRIDES_MODULE = "houtbecke.rs.workingon.OverridesModule";
+    static final String MODULE_FACTORIES = "houtbecke.rs.workingon.ModuleFactories";
+    static final String REGISTRY_PACKAGE_OPTION = "workingon.registryPackage";
+    static final String DEFAULT_REGISTRY_PACKAGE = "houtbecke.rs.workingon.generated";
+    static final String REGISTRY_CLASS = "WorkingOnModuleFactories";
+    static final String MODULE_LIST = REGISTRY_CLASS + ".modules";
+    static final String SERVICES = "META-INF/services/" + MODULE_FACTORIES;
+
+    private final Map<String, ModuleInfo> modules = new TreeMap<>();
+
+    static class ModuleInfo {
+        String qualifiedName;
+        String packageName;
+        boolean debugConstructor;
+        String overrides;
+    }
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        return Collections.singleton("*");
+    }
+
+    @Override
+    public Set<String> getSupportedOptions() {
+        return Collections.singleton(REGISTRY_PACKAGE_OPTION);
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        TypeElement moduleElement = processingEnv.getElementUtils().getTypeElement(MODULE);
+        if (moduleElement == null)
+            return false;
+
+        if (!roundEnv.processingOver()) {
+            for (TypeElement type: ElementFilter.typesIn(roundEnv.getRootElements()))
+                collect(type, moduleElement.asType());
+            return false;
+        }
+
+        if (!modules.isEmpty()) {
+            String registryPackage = registryPackage();
+            try {
+                write(registryPackage);
+                writeModuleList(registryPackage);
+                writeServices(registryPackage);
+            } catch (IOException e) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Could not write " + REGISTRY_CLASS + ": " + e.getMessage());
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Collects the type and its nested types, if it's public, as the registry can't refer to the types
+     * nested in a type that's not
+     */
+    private void collect(TypeElement type, TypeMirror moduleType) {
+        if (!type.getModifiers().contains(Modifier.PUBLIC))
+            return;
+        for (TypeElement nested: ElementFilter.typesIn(type.getEnclosedElements()))
+            if (nested.getModifiers().contains(Modifier.STATIC))
+                collect(nested, moduleType);
+
+        if (type.getKind() != ElementKind.CLASS
+                || type.getModifiers().contains(Modifier.ABSTRACT)
+                || !processingEnv.getTypeUtils().isAssignable(type.asType(), moduleType))
+            return;
+
+        Boolean debugConstructor = null;
+        for (ExecutableElement constructor: ElementFilter.constructorsIn(type.getEnclosedElements())) {
+            if (!constructor.getModifiers().contains(Modifier.PUBLIC))
+                continue;
+            if (constructor.getParameters().size() == 1 && isBoolean(constructor.getParameters().get(0).asType())) {
+                debugConstructor = true;
+                break;
+            }
+            if (constructor.getParameters().isEmpty())
+                debugConstructor = false;
+        }
+        if (debugConstructor == null)
+            return; // no usable constructor, leave it to reflection so the error is the same as without the registry
+        TypeElement overridden = overrides(type);
+        if (overridden != null && !isAccessible(overridden))
+            return; // the registry can't refer to it, leave it to reflection
+
+        ModuleInfo info = new ModuleInfo();
+        info.qualifiedName = type.getQualifiedName().toString();
+        info.packageName = processingEnv.getElementUtils().getPackageOf(type).getQualifiedName().toString();
+        info.debugConstructor = debugConstructor;
+        info.overrides = overridden == null ? null : overridden.getQualifiedName().toString();
+        modules.put(processingEnv.getElementUtils().getBinaryName(type).toString(), info);
+    }
+
+    private boolean isBoolean(TypeMirror type) {
+        if (type.getKind() == TypeKind.BOOLEAN)
+            return true;
+        return type.getKind() == TypeKind.DECLARED
+                && ((TypeElement) ((DeclaredType) type).asElement()).getQualifiedName().contentEquals(Boolean.class.getName());
+    }
+
+    /**
+     * @return true if the type and every type enclosing it are public
+     */
+    private static boolean isAccessible(TypeElement type) {
+        for (Element element = type; element.getKind() != ElementKind.PACKAGE; element = element.getEnclosingElement())
+            if (!element.getModifiers().contains(Modifier.PUBLIC))
+                return false;
+        return true;
+    }
+
+    private TypeElement overrides(TypeElement type) {
+        for (AnnotationMirror annotation: processingEnv.getElementUtils().getAllAnnotationMirrors(type)) {
+            TypeElement annotationType = (TypeElement) annotation.getAnnotationType().asElement();
+            if (!annotationType.getQualifiedName().contentEquals(OVERRIDES_MODULE))
+                continue;
+            for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry: processingEnv.getElementUtils().getElementValuesWithDefaults(annotation).entrySet()) {
+                if (entry.getKey().getSimpleName().contentEquals("value") && entry.getValue().getValue() instanceof DeclaredType) {
+                    return (TypeElement) ((DeclaredType) entry.getValue().getValue()).asElement();
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return The package given with the registryPackage option, or else the package all modules of this
+     *         compilation share, so the registries of different compilations don't clash
+     */
+    private String registryPackage() {
+        String option = processingEnv.getOptions().get(REGISTRY_PACKAGE_OPTION);
+        if (option != null && !option.trim().isEmpty())
+            return option.trim();
+
+        String common = null;
+        for (ModuleInfo info: modules.values())
+            common = common == null ? info.packageName : commonPackage(common, info.packageName);
+        return common == null || common.isEmpty() ? DEFAULT_REGISTRY_PACKAGE : common;
+    }
+
+    static String commonPackage(String a, String b) {
+        String[] as = a.split("\\.");
+        String[] bs = b.split("\\.");
+        StringBuilder common = new StringBuilder();
+        for (int k = 0; k < Math.min(as.length, bs.length) && as[k].equals(bs[k]); k++) {
+            if (k > 0)
+                common.append('.');
+            common.append(as[k]);
+        }
+        return common.toString();
+    }
+
+    private void write(String registryPackage) throws IOException {
+        JavaFileObject file = processingEnv.getFiler().createSourceFile(registryPackage + "." + REGISTRY_CLASS);
+        try (PrintWriter out = new PrintWriter(file.openWriter())) {
+            out.println("package " + registryPackage + ";");
+            out.println();
+            out.println("/**");
+            out.println(" * Generated by " + getClass().getName() + ", do not edit.");
+            out.println(" */");
+            out.println("public final class " + REGISTRY_CLASS + " implements houtbecke.rs.workingon.ModuleFactories {");
+            out.println();
+
+            out.println("    @Override");
+            out.println("    public boolean contains(String moduleClassName) {");
+            out.println("        switch (moduleClassName) {");
+            for (String name: modules.keySet())
+                out.println("            case \"" + name + "\":");
+            out.println("                return true;");
+            out.println("            default:");
+            out.println("                return false;");
+            out.println("        }");
+            out.println("    }");
+            out.println();
+
+            out.println("    @Override");
+            out.println("    public com.google.inject.Module create(String moduleClassName, boolean debugMode) {");
+            out.println("        switch (moduleClassName) {");
+            for (Map.Entry<String, ModuleInfo> entry: modules.entrySet()) {
+                out.println("            case \"" + entry.getKey() + "\":");
+                out.println("                return new " + entry.getValue().qualifiedName + "(" + (entry.getValue().debugConstructor ? "debugMode" : "") + ");");
+            }
+            out.println("            default:");
+            out.println("                return null;");
+            out.println("        }");
+            out.println("    }");
+            out.println();
+
+            out.println("    @Override");
+            out.println("    public Class<? extends com.google.inject.Module> overrides(String moduleClassName) {");
+            out.println("        switch (moduleClassName) {");
+            for (Map.Entry<String, ModuleInfo> entry: modules.entrySet()) {
+                if (entry.getValue().overrides == null)
+                    continue;
+                out.println("            case \"" + entry.getKey() + "\":");
+                out.println("                return " + entry.getValue().overrides + ".class;");
+            }
+            out.println("            default:");
+            out.println("                return null;");
+            out.println("        }");
+            out.println("    }");
+            out.println("}");
+        }
+    }
+
+    /**
+     * Writes one line per module with its binary name, and the Module it overrides separated by a tab
+     * if it's annotated with OverridesModule.
+     */
+    private void writeModuleList(String registryPackage) throws IOException {
+        FileObject file = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, registryPackage, MODULE_LIST);
+        try (PrintWriter out = new PrintWriter(file.openWriter())) {
+            for (Map.Entry<String, ModuleInfo> entry: modules.entrySet())
+                out.println(entry.getValue().overrides == null ? entry.getKey() : entry.getKey() + "\t" + entry.getValue().overrides);
+        }
+    }
+
+    /**
+     * Lists the registry as a ModuleFactories service, so it's found next to the registries of other compilations.
+     */
+    private void writeServices(String registryPackage) throws IOException {
+        FileObject file = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", SERVICES);
+        try (PrintWriter out = new PrintWriter(file.openWriter())) {
+            out.println(registryPackage + "." + REGISTRY_CLASS);
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package houtbecke.rs.workingon.compiler;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Module;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.ServiceLoader;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.TypeElement;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+import houtbecke.rs.workingon.ModuleFactories;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ModuleFactoriesProcessorTest {
+
+    /**
+     * Generates a Module in the first round, as processors like Dagger or AutoValue generate classes.
+     */
+    public static class GeneratingProcessor extends AbstractProcessor {
+        private boolean generated;
+
+        @Override
+        public Set<String> getSupportedAnnotationTypes() {
+            return Collections.singleton("*");
+        }
+
+        @Override
+        public SourceVersion getSupportedSourceVersion() {
+            return SourceVersion.latestSupported();
+        }
+
+        @Override
+        public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+            if (generated)
+                return false;
+            generated = true;
+            try (java.io.Writer out = processingEnv.getFiler().createSourceFile("my.app.module.GeneratedModule").openWriter()) {
+                out.write("package my.app.module; public class GeneratedModule extends com.google.inject.AbstractModule { protected void configure() {} }");
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            return false;
+        }
+    }
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void generatesRegistryInCommonPackage() throws Exception {
+        File classes = compile(Collections.<String>emptyList(),
+                "package my.app.module; public class MyModule extends com.google.inject.AbstractModule { protected void configure() {} }",
+                "package my.app.module.dev; @houtbecke.rs.workingon.OverridesModule public class MyModuleDev extends com.google.inject.AbstractModule { public MyModuleDev(boolean debugMode) {} protected void configure() {} }",
+                "package my.app.module; class Hidden extends com.google.inject.AbstractModule { protected void configure() {} }");
+
+        assertTrue(new File(classes, "my/app/module/WorkingOnModuleFactories.class").isFile());
+        assertEquals(Collections.singletonList("my.app.module.WorkingOnModuleFactories"), read(new File(classes, ModuleFactoriesProcessor.SERVICES)));
+        assertEquals(Arrays.asList("my.app.module.MyModule", "my.app.module.dev.MyModuleDev\tcom.google.inject.Module"),
+                read(new File(classes, "my/app/module/WorkingOnModuleFactories.modules")));
+
+        try (URLClassLoader loader = loader(classes)) {
+            ModuleFactories registry = registries(loader).get(0);
+            assertTrue(registry.contains("my.app.module.MyModule"));
+            assertTrue(registry.contains("my.app.module.dev.MyModuleDev"));
+            assertFalse(registry.contains("my.app.module.Hidden"));
+
+            Module module = registry.create("my.app.module.dev.MyModuleDev", true);
+            assertEquals("my.app.module.dev.MyModuleDev", module.getClass().getName());
+            assertEquals(Module.class, registry.overrides("my.app.module.dev.MyModuleDev"));
+            assertNull(registry.overrides("my.app.module.MyModule"));
+            assertNull(registry.create("my.app.module.Hidden", false));
+        }
+    }
+
+    @Test
+    public void leavesModulesNestedInClassesThatAreNotPublicToReflection() throws Exception {
+        File classes = compile(Collections.<String>emptyList(),
+                "package my.app.module; public class Outer { public static class InnerModule extends com.google.inject.AbstractModule { protected void configure() {} } }",
+                "package my.app.module; class Hidden { public static class InnerModule extends com.google.inject.AbstractModule { protected void configure() {} } }",
+                "package my.app.module; @houtbecke.rs.workingon.OverridesModule(Hidden.InnerModule.class) public class HiddenDevModule extends com.google.inject.AbstractModule { protected void configure() {} }");
+
+        assertEquals(Collections.singletonList("my.app.module.Outer$InnerModule"),
+                read(new File(classes, "my/app/module/WorkingOnModuleFactories.modules")));
+        try (URLClassLoader loader = loader(classes)) {
+            ModuleFactories registry = registries(loader).get(0);
+            assertEquals("my.app.module.Outer$InnerModule", registry.create("my.app.module.Outer$InnerModule", false).getClass().getName());
+            assertFalse(registry.contains("my.app.module.Hidden$InnerModule"));
+            assertFalse(registry.contains("my.app.module.HiddenDevModule"));
+        }
+    }
+
+    @Test
+    public void includesModulesGeneratedInLaterRounds() throws Exception {
+        File classes = compileWith(Collections.<String>emptyList(), ModuleFactoriesProcessor.class.getName() + "," + GeneratingProcessor.class.getName(),
+                "package my.app.module; public class AppModule extends com.google.inject.AbstractModule { protected void configure() {} }");
+
+        assertEquals(Arrays.asList("my.app.module.AppModule", "my.app.module.GeneratedModule"),
+                read(new File(classes, "my/app/module/WorkingOnModuleFactories.modules")));
+        try (URLClassLoader loader = loader(classes)) {
+            assertTrue(registries(loader).get(0).contains("my.app.module.GeneratedModule"));
+        }
+    }
+
+    @Test
+    public void generatesRegistryInPackageOption() throws Exception {
+        File classes = compile(Collections.singletonList("-Aworkingon.registryPackage=my.registry"),
+                "package my.app; public class AppModule extends com.google.inject.AbstractModule { protected void configure() {} }");
+
+        assertTrue(new File(classes, "my/registry/WorkingOnModuleFactories.class").isFile());
+        assertTrue(new File(classes, "my/registry/WorkingOnModuleFactories.modules").isFile());
+        assertEquals(Collections.singletonList("my.registry.WorkingOnModuleFactories"), read(new File(classes, ModuleFactoriesProcessor.SERVICES)));
+    }
+
+    @Test
+    public void generatesRegistryPerCompilation() throws Exception {
+        File library = compile(Collections.<String>emptyList(),
+                "package my.library.module; public class LibraryModule extends com.google.inject.AbstractModule { protected void configure() {} }");
+        File app = compile(Collections.<String>emptyList(),
+                "package my.app.module; public class AppModule extends com.google.inject.AbstractModule { protected void configure() {} }");
+
+        try (URLClassLoader loader = loader(library, app)) {
+            List<ModuleFactories> registries = registries(loader);
+            assertEquals(2, registries.size());
+            assertTrue(registries.get(0).contains("my.library.module.LibraryModule"));
+            assertTrue(registries.get(1).contains("my.app.module.AppModule"));
+        }
+    }
+
+    @Test
+    public void generatesDefaultPackageWithoutCommonPackage() throws Exception {
+        File classes = compile(Collections.<String>emptyList(),
+                "package first; public class FirstModule extends com.google.inject.AbstractModule { protected void configure() {} }",
+                "package second; public class SecondModule extends com.google.inject.AbstractModule { protected void configure() {} }");
+
+        assertTrue(new File(classes, ModuleFactories.GENERATED_CLASS_NAME.replace('.', '/') + ".class").isFile());
+    }
+
+    @Test
+    public void generatesNothingWithoutModules() throws Exception {
+        File classes = compile(Collections.<String>emptyList(), "package my.app; public class NotAModule {}");
+
+        assertFalse(new File(classes, ModuleFactoriesProcessor.SERVICES).exists());
+    }
+
+    @Test
+    public void commonPackage() {
+        assertEquals("my.app", ModuleFactoriesProcessor.commonPackage("my.app.module", "my.app.dev"));
+        assertEquals("my", ModuleFactoriesProcessor.commonPackage("my.app", "my.application"));
+        assertEquals("", ModuleFactoriesProcessor.commonPackage("first", "second"));
+    }
+
+    /**
+     * Compiles the sources with the processor, each source is a single line starting with its package
+     *
+     * @return The class output
+     */
+    private File compile(List<String> options, String... sources) throws IOException {
+        return compileWith(options, ModuleFactoriesProcessor.class.getName(), sources);
+    }
+
+    private File compileWith(List<String> options, String processors, String... sources) throws IOException {
+        File sourceDir = temporaryFolder.newFolder();
+        File classes = temporaryFolder.newFolder();
+        List<File> files = new ArrayList<>();
+        for (String source: sources) {
+            String packageName = source.substring("package ".length(), source.indexOf(';'));
+            String className = source.replaceFirst("^.*?\\b(?:class|interface) (\\w+).*", "$1");
+            File file = new File(sourceDir, packageName.replace('.', '/') + "/" + className + ".java");
+            file.getParentFile().mkdirs();
+            Files.write(file.toPath(), source.getBytes(StandardCharsets.UTF_8));
+            files.add(file);
+        }
+
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        StringWriter output = new StringWriter();
+        List<String> arguments = new ArrayList<>(options);
+        arguments.addAll(Arrays.asList("-processor", processors,
+                "-classpath", System.getProperty("java.class.path"), "-d", classes.getPath(), "-s", temporaryFolder.newFolder().getPath()));
+        try (StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null, StandardCharsets.UTF_8)) {
+            Iterable<? extends JavaFileObject> units = fileManager.getJavaFileObjectsFromFiles(files);
+            if (!compiler.getTask(output, fileManager, null, arguments, null, units).call())
+                fail(output.toString());
+        }
+        return classes;
+    }
+
+    private static URLClassLoader loader(File... classes) throws IOException {
+        URL[] urls = new URL[classes.length];
+        for (int k = 0; k < classes.length; k++)
+            urls[k] = classes[k].toURI().toURL();
+        return new URLClassLoader(urls, AbstractModule.class.getClassLoader());
+    }
+
+    private static List<ModuleFactories> registries(ClassLoader loader) {
+        List<ModuleFactories> registries = new ArrayList<>();
+        for (ModuleFactories registry: ServiceLoader.load(ModuleFactories.class, loader))
+            registries.add(registry);
+        return registries;
+    }
+
+    private static List<String> read(File file) throws IOException {
+        return Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,44 @@
+package houtbecke.rs.workingon;
+
+import android.app.Application;
+
+import com.google.inject.Module;
+import com.google.inject.Provider;
+import com.google.inject.util.Modules;
+
+import java.lang.ref.WeakReference;
+
+/**
+ *
+ * Provides the Application an injector from the InjectorCache is used for, rather than the Application
+ * it was built for.
+ *
+ * The RoboGuice default module binds the Application as an instance, so an injector built to be cached
+ * overrides that binding with this provider, and the cache binds the Application it's reused for before
+ * handing it out. The Application is only held weakly, so it can be collected after its test.
+ *
+ */
+final class ApplicationBinding implements Provider<Application> {
+
+    private volatile WeakReference<Application> application;
+
+    ApplicationBinding(Application application) {
+        bind(application);
+    }
+
+    void bind(Application application) {
+        this.application = new WeakReference<>(application);
+    }
+
+    @Override
+    public Application get() {
+        return application.get();
+    }
+
+    /**
+     * @return The RoboGuice default module, with the Application bound to this provider
+     */
+    Module override(Module defaultRoboModule) {
+        return Modules.override(defaultRoboModule).with(binder -> binder.bind(Application.class).toProvider(this));
+    }
+}
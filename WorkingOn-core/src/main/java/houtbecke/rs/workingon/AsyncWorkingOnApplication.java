@@ -0,0 +1,13 @@
+package houtbecke.rs.workingon;
+
+/**
+ *
+ * A WorkingOnApplication that is notified when its configuration was loaded with
+ * WorkingOn.loadConfigurationAsync.
+ *
+ * The callbacks are invoked on the main thread, onWorkingOnStarted after the application was injected
+ * and startWorkingOn was called, and before the callbacks passed to loadConfigurationAsync.
+ *
+ */
+public interface AsyncWorkingOnApplication extends WorkingOnApplication, WorkingOnCallback {
+}
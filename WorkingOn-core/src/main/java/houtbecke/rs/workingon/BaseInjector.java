@@ -0,0 +1,92 @@
+package houtbecke.rs.workingon;
+
+import android.app.Application;
+
+import com.google.inject.Injector;
+import com.google.inject.Stage;
+
+import java.lang.ref.WeakReference;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ *
+ * The long-lived parent injector used for incremental reloading, with the classes of the modules it
+ * was built from.
+ *
+ * Only modules passed to loadModules that are not overridden or replaced by a task go into the parent
+ * injector. It can be reused for as long as none of its modules is affected by the tasks, as a child
+ * injector may not bind a key its parent already binds. A child injector is built in the Stage of its
+ * parent, so the parent is also built again when the StagePolicy picks another Stage or other lazy singletons.
+ *
+ * The Application is only held weakly, so a BaseInjector kept after a restart doesn't keep the Application
+ * it was built for reachable.
+ *
+ */
+final class BaseInjector {
+
+    private final WeakReference<Application> application;
+    private final Set<String> moduleClassNames;
+    private final Injector injector;
+    private final StagePolicy stagePolicy;
+    private final Stage stage;
+    private final boolean createEagerSingletons;
+    private final SingletonStatsListener singletonStatsListener;
+    private final ApplicationBinding applicationBinding;
+
+    BaseInjector(Application application, Collection<String> moduleClassNames, Injector injector, StagePolicy stagePolicy, Stage stage, boolean createEagerSingletons, SingletonStatsListener singletonStatsListener, ApplicationBinding applicationBinding) {
+        this.application = new WeakReference<>(application);
+        this.moduleClassNames = Collections.unmodifiableSet(new LinkedHashSet<>(moduleClassNames));
+        this.injector = injector;
+        this.stagePolicy = stagePolicy;
+        this.stage = stage;
+        this.createEagerSingletons = createEagerSingletons;
+        this.singletonStatsListener = singletonStatsListener;
+        this.applicationBinding = applicationBinding;
+    }
+
+    /**
+     * @param unaffectedModuleClassNames The classes of the modules not affected by the tasks in a newly resolved plan
+     * @return true if this injector can be the parent of the injector for the newly resolved plan, built in
+     *         the stage with the eager singletons created afterwards or not
+     */
+    boolean canBeReusedFor(Application application, Collection<String> unaffectedModuleClassNames, StagePolicy stagePolicy, Stage stage, boolean createEagerSingletons) {
+        return this.application.get() == application && unaffectedModuleClassNames.containsAll(moduleClassNames)
+                && this.stagePolicy == stagePolicy && this.stage == stage && this.createEagerSingletons == createEagerSingletons;
+    }
+
+    Set<String> getModuleClassNames() {
+        return moduleClassNames;
+    }
+
+    Injector getInjector() {
+        return injector;
+    }
+
+    StagePolicy getStagePolicy() {
+        return stagePolicy;
+    }
+
+    /**
+     * @return true if the singletons that are not lazy are created after building an injector, as it's built in DEVELOPMENT
+     */
+    boolean createsEagerSingletons() {
+        return createEagerSingletons;
+    }
+
+    /**
+     * @return The listener counting the singletons, or null if the injector was built without a StagePolicy
+     */
+    SingletonStatsListener getSingletonStatsListener() {
+        return singletonStatsListener;
+    }
+
+    /**
+     * @return The binding of the Application, which the injector cache rebinds when it reuses a child of this injector
+     */
+    ApplicationBinding getApplicationBinding() {
+        return applicationBinding;
+    }
+}
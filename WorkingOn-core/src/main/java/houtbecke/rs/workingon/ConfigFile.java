@@ -0,0 +1,193 @@
+package houtbecke.rs.workingon;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ *
+ * The tasks, extra module classes, activity and fragment read from a configuration file, which can be
+ * changed without building the app again.
+ *
+ * A properties file lists the tasks and extra module classes separated by commas:
+ *
+ * <pre>
+ * tasks=Login,MockServer
+ * extraModuleClasses=com.example.dev.DevModule
+ * activity=com.example.LoginActivity
+ * fragment=com.example.LoginFragment
+ * </pre>
+ *
+ * A file ending with .json has the same keys, with arrays or comma separated strings for the tasks and
+ * extra module classes. A ConfigFile never changes once it's read, and two are equal if they configure the
+ * same, so it can be compared with the configuration that was loaded before.
+ *
+ * @see WorkingOn#setConfigFile(File, boolean)
+ */
+public final class ConfigFile {
+
+    public static final String TASKS = "tasks";
+    public static final String EXTRA_MODULE_CLASSES = "extraModuleClasses";
+    public static final String ACTIVITY = "activity";
+    public static final String FRAGMENT = "fragment";
+
+    private final List<String> tasks;
+    private final List<String> extraModuleClassNames;
+    private final String activityClassName;
+    private final String fragmentClassName;
+
+    ConfigFile(List<String> tasks, List<String> extraModuleClassNames, String activityClassName, String fragmentClassName) {
+        this.tasks = Collections.unmodifiableList(new ArrayList<>(tasks));
+        this.extraModuleClassNames = Collections.unmodifiableList(new ArrayList<>(extraModuleClassNames));
+        this.activityClassName = activityClassName;
+        this.fragmentClassName = fragmentClassName;
+    }
+
+    /**
+     * @return The configuration in the file, or null if the file does not exist
+     * @throws IOException If the file can't be read or parsed
+     */
+    public static ConfigFile read(File file) throws IOException {
+        if (!file.isFile())
+            return null;
+        InputStream in = new FileInputStream(file);
+        try {
+            Reader reader = new InputStreamReader(in, "UTF-8");
+            if (file.getName().endsWith(".json"))
+                return parseJson(readFully(reader));
+            return parseProperties(reader);
+        } finally {
+            in.close();
+        }
+    }
+
+    public static ConfigFile parseProperties(Reader reader) throws IOException {
+        Properties properties = new Properties();
+        properties.load(reader);
+        return new ConfigFile(
+                split(properties.getProperty(TASKS)),
+                split(properties.getProperty(EXTRA_MODULE_CLASSES)),
+                className(properties.getProperty(ACTIVITY)),
+                className(properties.getProperty(FRAGMENT)));
+    }
+
+    public static ConfigFile parseJson(String json) throws IOException {
+        try {
+            JSONObject object = new JSONObject(json);
+            return new ConfigFile(
+                    list(object, TASKS),
+                    list(object, EXTRA_MODULE_CLASSES),
+                    className(object.optString(ACTIVITY, null)),
+                    className(object.optString(FRAGMENT, null)));
+        } catch (JSONException e) {
+            throw new IOException("Invalid WorkingOn configuration file: " + e.getMessage());
+        }
+    }
+
+    /**
+     * @return The tasks, in order
+     */
+    public List<String> getTasks() {
+        return tasks;
+    }
+
+    /**
+     * @return The names of the extra module classes, in order
+     */
+    public List<String> getExtraModuleClassNames() {
+        return extraModuleClassNames;
+    }
+
+    /**
+     * @return The name of the activity class, or null if the file does not set it
+     */
+    public String getActivityClassName() {
+        return activityClassName;
+    }
+
+    /**
+     * @return The name of the fragment class, or null if the file does not set it
+     */
+    public String getFragmentClassName() {
+        return fragmentClassName;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o)
+            return true;
+        if (!(o instanceof ConfigFile))
+            return false;
+        ConfigFile other = (ConfigFile) o;
+        return tasks.equals(other.tasks)
+                && extraModuleClassNames.equals(other.extraModuleClassNames)
+                && (activityClassName == null ? other.activityClassName == null : activityClassName.equals(other.activityClassName))
+                && (fragmentClassName == null ? other.fragmentClassName == null : fragmentClassName.equals(other.fragmentClassName));
+    }
+
+    @Override
+    public int hashCode() {
+        int result = tasks.hashCode();
+        result = 31 * result + extraModuleClassNames.hashCode();
+        result = 31 * result + (activityClassName == null ? 0 : activityClassName.hashCode());
+        result = 31 * result + (fragmentClassName == null ? 0 : fragmentClassName.hashCode());
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return TASKS + "=" + tasks + " " + EXTRA_MODULE_CLASSES + "=" + extraModuleClassNames + " "
+                + ACTIVITY + "=" + activityClassName + " " + FRAGMENT + "=" + fragmentClassName;
+    }
+
+    private static List<String> list(JSONObject object, String name) throws JSONException {
+        JSONArray array = object.optJSONArray(name);
+        if (array == null)
+            return split(object.optString(name, null));
+        List<String> values = new ArrayList<>(array.length());
+        for (int k = 0; k < array.length(); k++) {
+            String value = array.getString(k).trim();
+            if (!value.isEmpty())
+                values.add(value);
+        }
+        return values;
+    }
+
+    private static List<String> split(String value) {
+        List<String> values = new ArrayList<>();
+        if (value != null)
+            for (String part: value.split(",")) {
+                part = part.trim();
+                if (!part.isEmpty())
+                    values.add(part);
+            }
+        return values;
+    }
+
+    private static String className(String value) {
+        if (value == null)
+            return null;
+        value = value.trim();
+        return value.isEmpty() ? null : value;
+    }
+
+    private static String readFully(Reader reader) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        char[] buffer = new char[1024];
+        int read;
+        while ((read = reader.read(buffer)) != -1)
+            sb.append(buffer, 0, read);
+        return sb.toString();
+    }
+}
@@ -0,0 +1,108 @@
+package houtbecke.rs.workingon;
+
+import android.app.Activity;
+
+import com.google.inject.Module;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ *
+ * Applies a ConfigFile to a context, on top of what was configured without the file.
+ *
+ * What the previous file configured is taken back first, unless the configuration class changed it since,
+ * so a changed file replaces what the previous file configured instead of adding to it.
+ *
+ */
+final class ConfigFileApplier {
+
+    private ConfigFileApplier() {
+    }
+
+    /**
+     * @return The configuration file, or null if it doesn't exist
+     * @throws RuntimeException If it names classes that don't exist or are of the wrong type
+     */
+    static ConfigFile read(File file, ClassResolutionCache classes) throws IOException {
+        ConfigFile configFile = ConfigFile.read(file);
+        if (configFile != null) {
+            for (String name: configFile.getExtraModuleClassNames())
+                configFileClass(name, Module.class, classes);
+            if (configFile.getActivityClassName() != null)
+                configFileClass(configFile.getActivityClassName(), Activity.class, classes);
+            if (configFile.getFragmentClassName() != null)
+                configFileClass(configFile.getFragmentClassName(), Object.class, classes);
+        }
+        return configFile;
+    }
+
+    /**
+     * Applies the configuration file to the context, replacing the file that was applied before.
+     *
+     * @param configFile The file, or null to only take back what the previous file configured
+     */
+    static void apply(WorkingOnContext context, ConfigFile configFile, ClassResolutionCache classes) {
+        // start from what was configured without the file, unless the configuration class changed it since
+        ConfigFile previous = context.loadedConfigFile;
+        if (context.configFromFile != null) {
+            if (context.getConfig() == context.configFromFile)
+                context.setConfig(context.configWithoutFile);
+            else if (context.getConfig() != null)
+                context.setConfig(withoutExtraModuleClassesFromFile(context.getConfig(), context));
+        }
+        if (previous != null && previous.getActivityClassName() != null && context.getActivity() != null
+                && previous.getActivityClassName().equals(context.getActivity().getName()))
+            context.setActivity(context.activityWithoutFile);
+        if (previous != null && previous.getFragmentClassName() != null && context.getFragmentClass() != null
+                && previous.getFragmentClassName().equals(context.getFragmentClass().getName()))
+            context.setFragmentClass(context.fragmentClassWithoutFile);
+
+        context.loadedConfigFile = configFile;
+        context.configWithoutFile = context.getConfig();
+        context.configFromFile = null;
+        context.activityWithoutFile = context.getActivity();
+        context.fragmentClassWithoutFile = context.getFragmentClass();
+        if (configFile != null) {
+            List<Class<? extends Module>> extraModuleClasses = new ArrayList<>(context.configWithoutFile.getExtraModuleClasses());
+            for (String name: configFile.getExtraModuleClassNames())
+                extraModuleClasses.add(configFileClass(name, Module.class, classes));
+            context.configFromFile = new WorkingOnConfig.Builder(context.configWithoutFile)
+                    .tasks(configFile.getTasks())
+                    .extraModuleClasses(extraModuleClasses)
+                    .build();
+            context.setConfig(context.configFromFile);
+            if (configFile.getActivityClassName() != null)
+                context.setActivity(configFileClass(configFile.getActivityClassName(), Activity.class, classes));
+            if (configFile.getFragmentClassName() != null)
+                context.setFragmentClass(configFileClass(configFile.getFragmentClassName(), Object.class, classes));
+        }
+    }
+
+    /**
+     * @return The configuration without the extra module classes the previous file added, which the
+     * configuration class kept when it changed the configuration
+     */
+    private static WorkingOnConfig withoutExtraModuleClassesFromFile(WorkingOnConfig config, WorkingOnContext context) {
+        Set<Class<? extends Module>> fromFile = new LinkedHashSet<>(context.configFromFile.getExtraModuleClasses());
+        fromFile.removeAll(context.configWithoutFile.getExtraModuleClasses());
+        if (fromFile.isEmpty())
+            return config;
+        List<Class<? extends Module>> extraModuleClasses = new ArrayList<>(config.getExtraModuleClasses());
+        extraModuleClasses.removeAll(fromFile);
+        return new WorkingOnConfig.Builder(config).extraModuleClasses(extraModuleClasses).build();
+    }
+
+    private static <T> Class<? extends T> configFileClass(String name, Class<T> type, ClassResolutionCache classes) {
+        Class<?> c = classes.forName(name);
+        if (c == null)
+            throw new RuntimeException("Class in the WorkingOn configuration file not found: " + name);
+        if (!type.isAssignableFrom(c))
+            throw new RuntimeException("Class in the WorkingOn configuration file is not a " + type.getSimpleName() + ": " + name);
+        return c.asSubclass(type);
+    }
+}
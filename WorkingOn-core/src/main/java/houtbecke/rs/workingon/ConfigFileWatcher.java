@@ -0,0 +1,66 @@
+package houtbecke.rs.workingon;
+
+import android.os.FileObserver;
+
+import java.io.File;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ *
+ * Watches the directory of a configuration file, and runs a task once the file stopped changing for a while.
+ *
+ * The directory is watched rather than the file, as the file is often replaced instead of written to,
+ * for example by adb push or an editor. Every change within the debounce time postpones the task, so
+ * it runs once for a file that's written in several steps.
+ *
+ */
+final class ConfigFileWatcher {
+
+    private static final int EVENTS = FileObserver.CLOSE_WRITE | FileObserver.MOVED_TO | FileObserver.MOVED_FROM
+            | FileObserver.CREATE | FileObserver.DELETE;
+
+    private final long debounceMillis;
+    private final Runnable onChange;
+    private final ScheduledExecutorService executor;
+    private final FileObserver observer;
+    private ScheduledFuture<?> pending;
+
+    ConfigFileWatcher(File file, long debounceMillis, Runnable onChange) {
+        this.debounceMillis = debounceMillis;
+        this.onChange = onChange;
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "WorkingOn configuration file");
+            thread.setDaemon(true);
+            return thread;
+        });
+        final String name = file.getName();
+        observer = new FileObserver(file.getAbsoluteFile().getParent(), EVENTS) {
+            @Override
+            public void onEvent(int event, String path) {
+                if (name.equals(path))
+                    changed();
+            }
+        };
+    }
+
+    void start() {
+        observer.startWatching();
+    }
+
+    void stop() {
+        observer.stopWatching();
+        executor.shutdownNow();
+    }
+
+    private synchronized void changed() {
+        if (pending != null)
+            pending.cancel(false);
+        try {
+            pending = executor.schedule(onChange, debounceMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException ignore) { /* stopped */ }
+    }
+}
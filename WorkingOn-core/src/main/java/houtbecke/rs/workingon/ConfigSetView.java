@@ -0,0 +1,115 @@
+package houtbecke.rs.workingon;
+
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ *
+ * A Set that reads from the WorkingOnConfig of the current WorkingOnContext, and writes by publishing
+ * a new WorkingOnConfig with the changed values.
+ *
+ * Every change is applied to the configuration that is current at that moment, so changes made from
+ * different threads are never lost. Iterating goes over the values of the configuration that was
+ * current when the iterator was created.
+ *
+ */
+abstract class ConfigSetView<E> extends AbstractSet<E> {
+
+    /**
+     * @return The configuration of the current WorkingOnContext
+     */
+    private AtomicReference<WorkingOnConfig> config() {
+        return WorkingOn.currentContext().config;
+    }
+
+    abstract Set<E> read(WorkingOnConfig config);
+
+    abstract WorkingOnConfig write(WorkingOnConfig config, Set<E> values);
+
+    @Override
+    public int size() {
+        return read(config().get()).size();
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return read(config().get()).contains(o);
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        final Iterator<E> it = read(config().get()).iterator();
+        return new Iterator<E>() {
+            private E current;
+
+            @Override
+            public boolean hasNext() {
+                return it.hasNext();
+            }
+
+            @Override
+            public E next() {
+                current = it.next();
+                return current;
+            }
+
+            @Override
+            public void remove() {
+                ConfigSetView.this.remove(current);
+            }
+        };
+    }
+
+    @Override
+    public boolean add(E e) {
+        while (true) {
+            AtomicReference<WorkingOnConfig> config = config();
+            WorkingOnConfig current = config.get();
+            Set<E> values = new LinkedHashSet<>(read(current));
+            if (!values.add(e))
+                return false;
+            if (config.compareAndSet(current, write(current, values)))
+                return true;
+        }
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends E> c) {
+        while (true) {
+            AtomicReference<WorkingOnConfig> config = config();
+            WorkingOnConfig current = config.get();
+            Set<E> values = new LinkedHashSet<>(read(current));
+            if (!values.addAll(c))
+                return false;
+            if (config.compareAndSet(current, write(current, values)))
+                return true;
+        }
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        while (true) {
+            AtomicReference<WorkingOnConfig> config = config();
+            WorkingOnConfig current = config.get();
+            Set<E> values = new LinkedHashSet<>(read(current));
+            if (!values.remove(o))
+                return false;
+            if (config.compareAndSet(current, write(current, values)))
+                return true;
+        }
+    }
+
+    @Override
+    public void clear() {
+        while (true) {
+            AtomicReference<WorkingOnConfig> config = config();
+            WorkingOnConfig current = config.get();
+            if (read(current).isEmpty() || config.compareAndSet(current, write(current, new LinkedHashSet<E>())))
+                return;
+        }
+    }
+}
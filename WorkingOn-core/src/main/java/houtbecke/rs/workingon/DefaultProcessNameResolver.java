@@ -0,0 +1,68 @@
+package houtbecke.rs.workingon;
+
+import android.app.ActivityManager;
+import android.content.Context;
+import android.os.Process;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+/**
+ *
+ * Reads the name of the current process from /proc/self/cmdline, or else asks the ActivityManager for it.
+ * The name is read once, as it doesn't change while the process runs.
+ *
+ */
+public class DefaultProcessNameResolver implements ProcessNameResolver {
+
+    private static volatile String processName;
+
+    @Override
+    public String getProcessName(Context context) {
+        String name = processName;
+        if (name == null) {
+            name = readProcessName(context);
+            processName = name;
+        }
+        return name;
+    }
+
+    private static String readProcessName(Context context) {
+        String name = readCmdline();
+        if (name != null)
+            return name;
+        ActivityManager activityManager = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        List<ActivityManager.RunningAppProcessInfo> processes = activityManager == null ? null : activityManager.getRunningAppProcesses();
+        if (processes != null) {
+            int pid = Process.myPid();
+            for (ActivityManager.RunningAppProcessInfo process: processes)
+                if (process.pid == pid)
+                    return process.processName;
+        }
+        return null;
+    }
+
+    private static String readCmdline() {
+        try {
+            InputStream in = new FileInputStream("/proc/self/cmdline");
+            try {
+                byte[] buffer = new byte[256];
+                int length = 0;
+                int read;
+                while (length < buffer.length && (read = in.read(buffer, length, buffer.length - length)) != -1)
+                    length += read;
+                int end = 0;
+                while (end < length && buffer[end] != 0)
+                    end++;
+                String name = new String(buffer, 0, end, "UTF-8").trim();
+                return name.isEmpty() ? null : name;
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            return null;
+        }
+    }
+}
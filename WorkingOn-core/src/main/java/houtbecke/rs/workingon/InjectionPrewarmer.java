@@ -0,0 +1,153 @@
+package houtbecke.rs.workingon;
+
+import android.content.Context;
+
+import com.google.inject.Binding;
+import com.google.inject.ConfigurationException;
+import com.google.inject.Injector;
+import com.google.inject.Key;
+import com.google.inject.ProvisionException;
+import com.google.inject.Scope;
+import com.google.inject.Scopes;
+import com.google.inject.Singleton;
+import com.google.inject.spi.DefaultBindingScopingVisitor;
+import com.google.inject.spi.Dependency;
+import com.google.inject.spi.HasDependencies;
+import com.google.inject.spi.InjectionPoint;
+import com.google.inject.spi.LinkedKeyBinding;
+import com.google.inject.spi.ProviderBinding;
+import com.google.inject.spi.ProviderKeyBinding;
+
+import java.lang.annotation.Annotation;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ *
+ * Prepares the injection of a class before the first instance of it is created, by resolving its
+ * MembersInjector and creating the singletons its members depend on.
+ *
+ * Only singletons that don't depend on a Context, directly or through other bindings, and don't depend on
+ * anything in another scope than singleton are created. RoboGuice keeps the Context of its ContextScope
+ * per thread, so those would be created without the Context they're meant for. Dependencies that are not
+ * singletons are not created either, but the singletons they depend on are. Bindings that can't be
+ * resolved are skipped, as injecting the class reports those the same as without prewarming. After a
+ * singleton fails to be created no more are created, so side effects of constructors that failed once
+ * aren't repeated more often than without prewarming.
+ *
+ */
+final class InjectionPrewarmer {
+
+    private InjectionPrewarmer() {
+    }
+
+    /**
+     * @return The number of singletons that were created or already existed
+     */
+    static int prewarm(Injector injector, Class<?> type) {
+        try {
+            injector.getMembersInjector(type);
+        } catch (ConfigurationException ignore) { /* the singletons it can be injected with are still created */ }
+
+        Deque<Key<?>> keys = new ArrayDeque<>();
+        try {
+            for (InjectionPoint injectionPoint: InjectionPoint.forInstanceMethodsAndFields(type))
+                for (Dependency<?> dependency: injectionPoint.getDependencies())
+                    keys.add(dependency.getKey());
+        } catch (ConfigurationException e) {
+            return 0;
+        }
+
+        int singletons = 0;
+        Set<Key<?>> visited = new HashSet<>();
+        Map<Key<?>, Boolean> safeKeys = new HashMap<>();
+        while (!keys.isEmpty()) {
+            Key<?> key = keys.poll();
+            if (!visited.add(key))
+                continue;
+            Binding<?> binding = bindingOf(injector, key);
+            if (binding == null)
+                continue;
+            if (Scopes.isSingleton(binding)) {
+                if (isSafe(injector, key, safeKeys))
+                    try {
+                        binding.getProvider().get();
+                        singletons++;
+                    } catch (ProvisionException e) {
+                        break; // reported again when the class is injected
+                    }
+                continue; // creating it created the singletons it depends on too
+            }
+            keys.addAll(dependenciesOf(binding));
+        }
+        return singletons;
+    }
+
+    /**
+     * @return true if the binding of the key, and every binding it depends on, provides no Context and is
+     *         either a singleton or not scoped
+     */
+    private static boolean isSafe(Injector injector, Key<?> key, Map<Key<?>, Boolean> safeKeys) {
+        Boolean safe = safeKeys.get(key);
+        if (safe != null)
+            return safe;
+        safeKeys.put(key, true); // a cycle is safe as far as the keys in it are
+        Binding<?> binding = bindingOf(injector, key);
+        safe = binding != null && !Context.class.isAssignableFrom(key.getTypeLiteral().getRawType()) && !isScopedOtherThanSingleton(binding);
+        if (safe)
+            for (Key<?> dependency: dependenciesOf(binding))
+                if (!isSafe(injector, dependency, safeKeys)) {
+                    safe = false;
+                    break;
+                }
+        safeKeys.put(key, safe);
+        return safe;
+    }
+
+    private static Binding<?> bindingOf(Injector injector, Key<?> key) {
+        try {
+            return injector.getBinding(key);
+        } catch (ConfigurationException e) {
+            return null;
+        }
+    }
+
+    private static List<Key<?>> dependenciesOf(Binding<?> binding) {
+        List<Key<?>> dependencies = new ArrayList<>();
+        if (binding instanceof LinkedKeyBinding)
+            dependencies.add(((LinkedKeyBinding<?>) binding).getLinkedKey());
+        else if (binding instanceof ProviderKeyBinding)
+            dependencies.add(((ProviderKeyBinding<?>) binding).getProviderKey());
+        else if (binding instanceof ProviderBinding)
+            dependencies.add(((ProviderBinding<?>) binding).getProvidedKey());
+        if (binding instanceof HasDependencies)
+            for (Dependency<?> dependency: ((HasDependencies) binding).getDependencies())
+                dependencies.add(dependency.getKey());
+        return dependencies;
+    }
+
+    private static boolean isScopedOtherThanSingleton(Binding<?> binding) {
+        return binding.acceptScopingVisitor(new DefaultBindingScopingVisitor<Boolean>() {
+            @Override
+            public Boolean visitScope(Scope scope) {
+                return scope != Scopes.SINGLETON;
+            }
+
+            @Override
+            public Boolean visitScopeAnnotation(Class<? extends Annotation> scopeAnnotation) {
+                return scopeAnnotation != Singleton.class && scopeAnnotation != javax.inject.Singleton.class;
+            }
+
+            @Override
+            protected Boolean visitOther() {
+                return false;
+            }
+        });
+    }
+}
@@ -0,0 +1,86 @@
+package houtbecke.rs.workingon;
+
+import android.app.Application;
+
+import com.google.inject.Injector;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ *
+ * A bounded cache of injectors by the fingerprint of the configuration they were built with. When it's
+ * full the injector that was used least recently is dropped.
+ *
+ * WorkingOn uses this to skip building the injector again when a test has the same configuration as an
+ * earlier test, also when the test runs with another Application as under Robolectric. A reused injector
+ * keeps its singletons, and is bound to the Application it's reused for with an ApplicationBinding. Other
+ * objects of the RoboGuice default module, such as its ContextScope, keep the Application the injector
+ * was built for, so a cached injector keeps that Application reachable until it's dropped.
+ *
+ * Test contexts running in parallel with the same configuration share a cached injector, so annotate
+ * such tests with WorkingOnFreshInjector.
+ *
+ */
+public class InjectorCache {
+
+    private static final class CachedInjector {
+        final Injector injector;
+        final ApplicationBinding applicationBinding;
+
+        CachedInjector(Injector injector, ApplicationBinding applicationBinding) {
+            this.injector = injector;
+            this.applicationBinding = applicationBinding;
+        }
+    }
+
+    private final Map<String, CachedInjector> injectors;
+    private int hits = 0;
+    private int misses = 0;
+
+    public InjectorCache(final int maxSize) {
+        injectors = new LinkedHashMap<String, CachedInjector>(maxSize + 1, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedInjector> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * @return The injector built for the fingerprint, bound to the Application, or null if there is none
+     */
+    public synchronized Injector get(String fingerprint, Application application) {
+        CachedInjector entry = injectors.get(fingerprint);
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        entry.applicationBinding.bind(application);
+        return entry.injector;
+    }
+
+    /**
+     * Caches an injector that was built with the Application bound by the ApplicationBinding.
+     */
+    synchronized void put(String fingerprint, Injector injector, ApplicationBinding applicationBinding) {
+        injectors.put(fingerprint, new CachedInjector(injector, applicationBinding));
+    }
+
+    public synchronized int size() {
+        return injectors.size();
+    }
+
+    public synchronized void clear() {
+        injectors.clear();
+    }
+
+    public synchronized int getHits() {
+        return hits;
+    }
+
+    public synchronized int getMisses() {
+        return misses;
+    }
+}
@@ -0,0 +1,128 @@
+package houtbecke.rs.workingon;
+
+import android.app.Application;
+import android.os.Handler;
+import android.os.Looper;
+
+import com.google.inject.Injector;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ *
+ * The result of loading the WorkingOn configuration in the background, as returned by
+ * WorkingOn.loadConfigurationAsync.
+ *
+ * The injector is built in the background, but the application is injected and started on the main
+ * thread once it's done, after which the callbacks are invoked on the main thread too.
+ *
+ */
+public class InjectorFuture extends FutureTask<Injector> {
+
+    private final WorkingOnContext context;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final List<WorkingOnCallback> callbacks = new ArrayList<>();
+    private boolean started = false;
+
+    InjectorFuture(WorkingOnContext context, Callable<Injector> load) {
+        super(load);
+        this.context = context;
+    }
+
+    /**
+     * Adds a callback that is invoked on the main thread when loading is done and the application was
+     * started. If that already happened it is invoked immediately, or posted if this is not the main thread.
+     */
+    public void addCallback(final WorkingOnCallback callback) {
+        synchronized (callbacks) {
+            if (!started) {
+                callbacks.add(callback);
+                return;
+            }
+        }
+        if (isMainThread())
+            notify(callback);
+        else
+            mainHandler.post(() -> InjectorFuture.this.notify(callback));
+    }
+
+    /**
+     * Blocks until the configuration is loaded. On the main thread the application is injected and
+     * started, and the callbacks are notified, before this returns, on other threads that might still be pending.
+     *
+     * @return The RoboGuice base application injector
+     * @throws RuntimeException If loading the configuration failed or the waiting thread was interrupted
+     */
+    public Injector awaitInjector() {
+        Injector injector;
+        try {
+            injector = get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for WorkingOn configuration", e);
+        } catch (ExecutionException e) {
+            if (isMainThread())
+                start();
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw new RuntimeException("Could not load configuration for WorkingOn", e.getCause());
+        }
+        if (isMainThread())
+            start();
+        return injector;
+    }
+
+    @Override
+    protected void done() {
+        mainHandler.post(this::start);
+    }
+
+    /**
+     * Injects and starts the application if loading succeeded, and notifies the callbacks. Runs once, on the main thread.
+     */
+    private void start() {
+        List<WorkingOnCallback> toNotify = new ArrayList<>();
+        synchronized (callbacks) {
+            if (started)
+                return;
+            started = true;
+            Application application = context.configurationApplication.get();
+            if (application instanceof AsyncWorkingOnApplication)
+                toNotify.add((AsyncWorkingOnApplication) application);
+            toNotify.addAll(callbacks);
+            callbacks.clear();
+        }
+        if (!isCancelled() && succeeded())
+            WorkingOn.startPending(context);
+        for (WorkingOnCallback callback: toNotify)
+            notify(callback);
+    }
+
+    private boolean succeeded() {
+        try {
+            get();
+            return true;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private void notify(WorkingOnCallback callback) {
+        Injector injector;
+        try {
+            injector = get();
+        } catch (Exception e) {
+            callback.onWorkingOnFailed(e instanceof ExecutionException ? e.getCause() : e);
+            return;
+        }
+        callback.onWorkingOnStarted(injector);
+    }
+
+    private static boolean isMainThread() {
+        return Looper.myLooper() == Looper.getMainLooper();
+    }
+}
@@ -0,0 +1,19 @@
+package houtbecke.rs.workingon;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+/**
+ * Indicates that the singletons bound by this Module should not be created eagerly when a StagePolicy
+ * is used, even if the injector is built in the PRODUCTION stage.
+ *
+ * Only modules loadModules resolves, and the modules that override them, are checked for this annotation
+ * before the Stage is picked. See StagePolicy for the Stage the injector is then built in.
+ */
+@Retention(RUNTIME)
+@Target({ ElementType.TYPE })
+public @interface LazySingletons {
+}
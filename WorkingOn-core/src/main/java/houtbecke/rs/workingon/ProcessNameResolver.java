@@ -0,0 +1,20 @@
+package houtbecke.rs.workingon;
+
+import android.content.Context;
+
+/**
+ *
+ * Tells the name of the process WorkingOn loads modules in, to select its ProcessProfiles.
+ *
+ * DefaultProcessNameResolver reads it from the system. Tests can use another resolver to load the modules
+ * of another process.
+ *
+ */
+public interface ProcessNameResolver {
+
+    /**
+     * @return The name of the current process, as set with android:process in the manifest, or null if it's unknown
+     */
+    String getProcessName(Context context);
+
+}
@@ -0,0 +1,77 @@
+package houtbecke.rs.workingon;
+
+import android.content.Context;
+
+import com.google.inject.Module;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ *
+ * The module classes to load in the processes of an application that runs in more than one process, so
+ * a process such as a sync service doesn't build the object graph of the user interface.
+ *
+ * A profile is selected by the name of the process, as resolved by the ProcessNameResolver. A name
+ * starting with a colon is relative to the package name, the same as android:process in the manifest.
+ * Processes without a profile, such as the main process, load the module classes passed to
+ * WorkingOn.configuration or loadModules. The tasks and overrides are resolved within the profile the
+ * same as for those.
+ *
+ */
+public class ProcessProfiles {
+
+    private final Map<String, Class<? extends Module>[]> profiles;
+    private final ProcessNameResolver resolver;
+
+    private ProcessProfiles(Builder builder) {
+        profiles = Collections.unmodifiableMap(new LinkedHashMap<>(builder.profiles));
+        resolver = builder.resolver;
+    }
+
+    /**
+     * @param defaultModuleClasses The module classes to load in a process without a profile
+     * @return The module classes to load in the current process
+     */
+    public Class<? extends Module>[] moduleClassesFor(Context context, Class<? extends Module>[] defaultModuleClasses) {
+        String processName = resolver.getProcessName(context);
+        if (processName == null)
+            return defaultModuleClasses;
+        Class<? extends Module>[] profile = profiles.get(processName);
+        if (profile == null && processName.startsWith(context.getPackageName() + ":"))
+            profile = profiles.get(processName.substring(context.getPackageName().length()));
+        return profile == null ? defaultModuleClasses : profile.clone();
+    }
+
+    public ProcessNameResolver getResolver() {
+        return resolver;
+    }
+
+    public static class Builder {
+
+        private final Map<String, Class<? extends Module>[]> profiles = new LinkedHashMap<>();
+        private ProcessNameResolver resolver = new DefaultProcessNameResolver();
+
+        /**
+         * @param processName The name of the process, or the part after the package name starting with a colon
+         * @param moduleClasses The classes of the modules to load in the process, which can be none
+         */
+        @SafeVarargs
+        public final Builder process(String processName, Class<? extends Module>... moduleClasses) {
+            profiles.put(processName, moduleClasses.clone());
+            return this;
+        }
+
+        public Builder resolver(ProcessNameResolver resolver) {
+            if (resolver == null)
+                throw new NullPointerException("resolver");
+            this.resolver = resolver;
+            return this;
+        }
+
+        public ProcessProfiles build() {
+            return new ProcessProfiles(this);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package houtbecke.rs.workingon;
+
+import android.app.Application;
+
+import com.google.inject.Injector;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.Map;
+
+import roboguice.RoboGuice;
+
+/**
+ *
+ * Changes the injectors RoboGuice keeps per Application, which it has no API for.
+ *
+ * RoboGuice 3 keeps them in the static injectors, resourceListeners and viewListeners maps, keyed by the
+ * Application. Before changing them the fields are checked to be static maps keyed by Application, so
+ * another version of RoboGuice is detected instead of having its fields changed blindly.
+ *
+ */
+final class RoboGuiceInjectors {
+
+    private static final String[] MAP_NAMES = {"injectors", "resourceListeners", "viewListeners"};
+
+    private static final Field[] maps = findMaps();
+
+    private RoboGuiceInjectors() {
+    }
+
+    /**
+     * @return The map fields, or null if this version of RoboGuice doesn't keep them like RoboGuice 3
+     */
+    private static Field[] findMaps() {
+        Field[] fields = new Field[MAP_NAMES.length];
+        try {
+            for (int k = 0; k < MAP_NAMES.length; k++) {
+                Field field = RoboGuice.class.getDeclaredField(MAP_NAMES[k]);
+                if (!Modifier.isStatic(field.getModifiers()) || !Map.class.isAssignableFrom(field.getType()) || !isKeyedByApplication(field))
+                    return null;
+                field.setAccessible(true);
+                fields[k] = field;
+            }
+        } catch (NoSuchFieldException | SecurityException e) {
+            return null;
+        }
+        return fields;
+    }
+
+    private static boolean isKeyedByApplication(Field field) {
+        Type type = field.getGenericType();
+        return type instanceof ParameterizedType && ((ParameterizedType) type).getActualTypeArguments()[0] == Application.class;
+    }
+
+    /**
+     * @return true if RoboGuice keeps its injectors the way this class changes them
+     */
+    static boolean isSupported() {
+        return maps != null;
+    }
+
+    /**
+     * Makes RoboGuice use the injector for the Application.
+     *
+     * @throws IllegalStateException With another version of RoboGuice
+     */
+    @SuppressWarnings("unchecked")
+    static void put(Application application, Injector injector) {
+        if (maps == null)
+            throw new IllegalStateException("This version of RoboGuice doesn't keep its injectors like RoboGuice 3, so the injector cache, incremental reloading and deferred modules can't be used");
+        try {
+            synchronized (RoboGuice.class) {
+                ((Map<Application, Injector>) maps[0].get(null)).put(application, injector);
+            }
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Could not make RoboGuice use the injector", e);
+        }
+    }
+
+    /**
+     * Removes what RoboGuice keeps for the Application. With another version of RoboGuice nothing is removed,
+     * and it keeps the Application as long as it did.
+     */
+    static void remove(Application application) {
+        if (maps == null)
+            return;
+        try {
+            synchronized (RoboGuice.class) {
+                for (Field map: maps)
+                    ((Map<?, ?>) map.get(null)).remove(application);
+            }
+        } catch (IllegalAccessException ignore) { /* it keeps the Application as long as it did */ }
+    }
+}
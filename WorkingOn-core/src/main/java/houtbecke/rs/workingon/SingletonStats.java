@@ -0,0 +1,50 @@
+package houtbecke.rs.workingon;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ *
+ * The number of singletons created eagerly while building the injector and lazily afterwards, and the time
+ * spent creating them. The time of a singleton includes the time of creating the singletons it depends on.
+ *
+ */
+public class SingletonStats {
+
+    private final AtomicInteger eagerCount = new AtomicInteger();
+    private final AtomicLong eagerNanos = new AtomicLong();
+    private final AtomicInteger lazyCount = new AtomicInteger();
+    private final AtomicLong lazyNanos = new AtomicLong();
+
+    void record(boolean eager, long nanos) {
+        if (eager) {
+            eagerCount.incrementAndGet();
+            eagerNanos.addAndGet(nanos);
+        } else {
+            lazyCount.incrementAndGet();
+            lazyNanos.addAndGet(nanos);
+        }
+    }
+
+    public int getEagerCount() {
+        return eagerCount.get();
+    }
+
+    public long getEagerNanos() {
+        return eagerNanos.get();
+    }
+
+    public int getLazyCount() {
+        return lazyCount.get();
+    }
+
+    public long getLazyNanos() {
+        return lazyNanos.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("SingletonStats{eager=%d in %.3f ms, lazy=%d in %.3f ms}",
+                getEagerCount(), getEagerNanos() / 1000000.0, getLazyCount(), getLazyNanos() / 1000000.0);
+    }
+}
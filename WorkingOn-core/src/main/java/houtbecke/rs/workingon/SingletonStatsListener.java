@@ -0,0 +1,57 @@
+package houtbecke.rs.workingon;
+
+import com.google.inject.Binding;
+import com.google.inject.Module;
+import com.google.inject.Scopes;
+import com.google.inject.matcher.AbstractMatcher;
+import com.google.inject.spi.ProvisionListener;
+
+/**
+ *
+ * Counts the singletons an injector creates in SingletonStats, as eager while they're created on the thread
+ * building the injector.
+ *
+ * Child injectors inherit the listener of their parent, so the singletons of a child injector built for
+ * an incremental reload are counted in the SingletonStats started for that reload.
+ *
+ */
+final class SingletonStatsListener implements ProvisionListener {
+
+    private volatile SingletonStats stats = new SingletonStats();
+    private volatile Thread eagerSingletonThread;
+
+    /**
+     * @return A module binding this listener to every singleton
+     */
+    Module module() {
+        return binder -> binder.bindListener(new AbstractMatcher<Binding<?>>() {
+            @Override
+            public boolean matches(Binding<?> binding) {
+                return Scopes.isSingleton(binding);
+            }
+        }, this);
+    }
+
+    /**
+     * Counts the singletons created from now on in new stats, as eager when created on the current thread
+     * until eagerSingletonsCreated is invoked.
+     *
+     * @return The new stats
+     */
+    SingletonStats start() {
+        stats = new SingletonStats();
+        eagerSingletonThread = Thread.currentThread();
+        return stats;
+    }
+
+    void eagerSingletonsCreated() {
+        eagerSingletonThread = null;
+    }
+
+    @Override
+    public <T> void onProvision(ProvisionInvocation<T> provision) {
+        long provisionStart = System.nanoTime();
+        provision.provision();
+        stats.record(eagerSingletonThread == Thread.currentThread(), System.nanoTime() - provisionStart);
+    }
+}
@@ -0,0 +1,128 @@
+package houtbecke.rs.workingon;
+
+import com.google.inject.Key;
+import com.google.inject.Module;
+import com.google.inject.Stage;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ *
+ * Decides the Stage the injector is built in, based on the tasks and whether the application is built
+ * as debuggable, and which singletons should not be created eagerly in the PRODUCTION stage.
+ *
+ * The Stage of the first task that has one is used, otherwise the Stage for the build type.
+ * Singletons are not created eagerly if their key was marked lazy, or if they are bound by a
+ * Module that was marked lazy or is annotated with LazySingletons.
+ *
+ * Guice creates every singleton in the PRODUCTION stage. So when singletons are marked lazy and the
+ * Stage is PRODUCTION, the injector is built in the DEVELOPMENT stage and the other singletons are
+ * created right after it, which means an injected Stage is DEVELOPMENT. Without lazy singletons the
+ * injector is built in the Stage the policy picks.
+ *
+ */
+public class StagePolicy {
+
+    private final Map<String, Stage> taskStages;
+    private final Stage debugStage;
+    private final Stage releaseStage;
+    private final Set<Key<?>> lazyKeys;
+    private final Set<String> lazyModuleClassNames;
+
+    private StagePolicy(Builder builder) {
+        taskStages = Collections.unmodifiableMap(new LinkedHashMap<>(builder.taskStages));
+        debugStage = builder.debugStage;
+        releaseStage = builder.releaseStage;
+        lazyKeys = Collections.unmodifiableSet(new HashSet<>(builder.lazyKeys));
+        lazyModuleClassNames = Collections.unmodifiableSet(new HashSet<>(builder.lazyModuleClassNames));
+    }
+
+    /**
+     * @return The Stage to build the injector in
+     */
+    public Stage stageFor(Iterable<String> tasks, boolean debugMode) {
+        for (String task: tasks) {
+            Stage stage = taskStages.get(task);
+            if (stage != null)
+                return stage;
+        }
+        return debugMode ? debugStage : releaseStage;
+    }
+
+    /**
+     * @return true if keys or modules were marked lazy
+     */
+    public boolean hasLazySingletons() {
+        return !lazyKeys.isEmpty() || !lazyModuleClassNames.isEmpty();
+    }
+
+    public boolean isLazy(Key<?> key) {
+        return lazyKeys.contains(key);
+    }
+
+    public boolean isLazy(String moduleClassName) {
+        return lazyModuleClassNames.contains(moduleClassName);
+    }
+
+    /**
+     * @return A description of everything the policy decides with, which is the same for policies that decide the same
+     */
+    @Override
+    public String toString() {
+        List<String> keys = new ArrayList<>(lazyKeys.size());
+        for (Key<?> key: lazyKeys)
+            keys.add(key.toString());
+        Collections.sort(keys);
+        return "StagePolicy[tasks=" + taskStages + ", debug=" + debugStage + ", release=" + releaseStage
+                + ", lazyKeys=" + keys + ", lazyModules=" + new TreeSet<>(lazyModuleClassNames) + "]";
+    }
+
+    public static class Builder {
+
+        private final Map<String, Stage> taskStages = new LinkedHashMap<>();
+        private Stage debugStage = Stage.PRODUCTION;
+        private Stage releaseStage = Stage.PRODUCTION;
+        private final Set<Key<?>> lazyKeys = new HashSet<>();
+        private final Set<String> lazyModuleClassNames = new HashSet<>();
+
+        public Builder task(String task, Stage stage) {
+            taskStages.put(task, stage);
+            return this;
+        }
+
+        public Builder debug(Stage stage) {
+            debugStage = stage;
+            return this;
+        }
+
+        public Builder release(Stage stage) {
+            releaseStage = stage;
+            return this;
+        }
+
+        public Builder lazy(Key<?> key) {
+            lazyKeys.add(key);
+            return this;
+        }
+
+        public Builder lazy(Class<?> type) {
+            return lazy(Key.get(type));
+        }
+
+        public Builder lazyModule(Class<? extends Module> moduleClass) {
+            lazyModuleClassNames.add(moduleClass.getName());
+            return this;
+        }
+
+        public StagePolicy build() {
+            return new StagePolicy(this);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package houtbecke.rs.workingon;
+
+import com.google.inject.Binding;
+import com.google.inject.Injector;
+import com.google.inject.Module;
+import com.google.inject.Scopes;
+import com.google.inject.Stage;
+import com.google.inject.spi.ElementSource;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ *
+ * Builds injectors the way a StagePolicy decides: in the Stage it picks, counting the singletons that are
+ * created, and in the DEVELOPMENT stage followed by creating the singletons that are not lazy when it picks
+ * PRODUCTION and singletons are marked lazy.
+ *
+ */
+final class StagePolicyInjectors {
+
+    private StagePolicyInjectors() {
+    }
+
+    static Stage stageFor(StagePolicy policy, Iterable<String> tasks, boolean debugMode) {
+        return policy == null ? Stage.PRODUCTION : policy.stageFor(tasks, debugMode);
+    }
+
+    /**
+     * @return true if the injector is built in DEVELOPMENT and the singletons that are not lazy are created afterwards
+     */
+    static boolean createsEagerSingletons(StagePolicy policy, Stage stage, Collection<Module> modules) {
+        // Guice creates every singleton in PRODUCTION, so only lazy singletons need it built in DEVELOPMENT
+        return policy != null && stage == Stage.PRODUCTION && hasLazySingletons(policy, modules);
+    }
+
+    /**
+     * Creates an injector with the factory, counting the singletons it creates in new SingletonStats of the
+     * context, and creates the singletons that are not lazy afterwards if it's built in DEVELOPMENT for the
+     * lazy singletons.
+     *
+     * @param listener The listener counting the singletons, or null if there's no StagePolicy
+     * @param classes The cache the classes of the modules that bound the singletons are looked up in
+     */
+    static Injector create(WorkingOnContext context, InjectorFactory factory, List<Module> modules, StagePolicy policy, boolean createEagerSingletons, SingletonStatsListener listener, ClassResolutionCache classes) {
+        if (listener == null)
+            return factory.createInjector(modules);
+        context.singletonStats = listener.start();
+        try {
+            Injector created = factory.createInjector(modules);
+            if (createEagerSingletons)
+                createEagerSingletons(created, policy, classes);
+            return created;
+        } finally {
+            listener.eagerSingletonsCreated();
+        }
+    }
+
+    private static boolean hasLazySingletons(StagePolicy policy, Collection<Module> modules) {
+        if (policy.hasLazySingletons())
+            return true;
+        for (Module module: modules)
+            if (isLazySingletonsModule(module))
+                return true;
+        return false;
+    }
+
+    private static boolean isLazySingletonsModule(Module module) {
+        if (module instanceof OverrideChain) {
+            OverrideChain chain = (OverrideChain) module;
+            if (isLazySingletonsModule(chain.getModule()))
+                return true;
+            for (Module overridingModule: chain.getOverridingModules())
+                if (isLazySingletonsModule(overridingModule))
+                    return true;
+            return false;
+        }
+        return module.getClass().isAnnotationPresent(LazySingletons.class);
+    }
+
+    private static void createEagerSingletons(Injector injector, StagePolicy policy, ClassResolutionCache classes) {
+        Map<String, Boolean> lazyModules = new HashMap<>();
+        for (Binding<?> binding: injector.getAllBindings().values()) {
+            if (Scopes.isSingleton(binding) && !isLazySingleton(binding, policy, lazyModules, classes))
+                binding.getProvider().get();
+        }
+    }
+
+    private static boolean isLazySingleton(Binding<?> binding, StagePolicy policy, Map<String, Boolean> lazyModules, ClassResolutionCache classes) {
+        if (policy.isLazy(binding.getKey()))
+            return true;
+        if (!(binding.getSource() instanceof ElementSource))
+            return false;
+        for (String moduleClassName: ((ElementSource) binding.getSource()).getModuleClassNames()) {
+            Boolean lazy = lazyModules.get(moduleClassName);
+            if (lazy == null) {
+                Class<?> moduleClass = classes.forName(moduleClassName);
+                lazy = policy.isLazy(moduleClassName) || (moduleClass != null && moduleClass.isAnnotationPresent(LazySingletons.class));
+                lazyModules.put(moduleClassName, lazy);
+            }
+            if (lazy)
+                return true;
+        }
+        return false;
+    }
+}
@@ -4,22 +4,32 @@ import android.app.Activity;
 import android.app.Application;
 import android.content.Context;
 import android.content.pm.ApplicationInfo;
-
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.google.inject.CreationException;
+import com.google.inject.Injector;
 import com.google.inject.Module;
 import com.google.inject.Stage;
-import com.google.inject.util.Modules;
 
-import java.lang.reflect.Constructor;
+import java.io.File;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
 import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
+import java.util.Collection;
 import java.util.HashSet;
 import java.util.Iterator;
-import java.util.LinkedHashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
 
 import roboguice.RoboGuice;
 
@@ -57,6 +67,9 @@ public class WorkingOn {
      */
     public static Class fragmentClass;
 
+    private static final WorkingOnContext defaultContext = new WorkingOnContext(true);
+    private static final ThreadLocal<WorkingOnContext> boundContext = new ThreadLocal<>();
+
     /**
      * The tasks you are currently working on.
      *
@@ -82,8 +95,22 @@ public class WorkingOn {
      * Module overrides based on task will happen in order as specified in this array. If a later task completely
      * replaces instead of overrides a module both the overridden and replacement module will be present. Be aware
      * this could lead to double bindings which will cause an error.
+     *
+     * @deprecated This is a view of the tasks of the current WorkingOnConfig, changing it publishes a new
+     *             configuration for every change. Use setConfig to change the configuration at once.
      */
-    public static Set<String> tasks = new LinkedHashSet<>(0);
+    @Deprecated
+    public static final Set<String> tasks = new ConfigSetView<String>() {
+        @Override
+        Set<String> read(WorkingOnConfig config) {
+            return config.getTasks();
+        }
+
+        @Override
+        WorkingOnConfig write(WorkingOnConfig config, Set<String> values) {
+            return new WorkingOnConfig.Builder(config).tasks(values).build();
+        }
+    };
 
     /**
      * The extra modules that should be loaded in addition to the ones passed to loadModules.
@@ -91,8 +118,21 @@ public class WorkingOn {
      * If the onlyOverrideWhenInDebugMode flag is passed to loadModules and the application is not
      * debuggable or running in test mode the extra modules specified here will not be loaded.
      *
+     * @deprecated This is a view of the extra modules of the current WorkingOnConfig, changing it publishes
+     *             a new configuration for every change. Use setConfig to change the configuration at once.
      */
-    public static Set<Module> extraModules = new LinkedHashSet<>(0);
+    @Deprecated
+    public static final Set<Module> extraModules = new ConfigSetView<Module>() {
+        @Override
+        Set<Module> read(WorkingOnConfig config) {
+            return config.getExtraModules();
+        }
+
+        @Override
+        WorkingOnConfig write(WorkingOnConfig config, Set<Module> values) {
+            return new WorkingOnConfig.Builder(config).extraModules(values).build();
+        }
+    };
 
     /**
      * The classes of extra modules that should be loaded in addition to the ones passed to loadModules.
@@ -103,8 +143,21 @@ public class WorkingOn {
      * If the onlyOverrideWhenInDebugMode flag is passed to loadModules and the application is not
      * debuggable or running in test mode the extra modules specified here will not be loaded.
      *
+     * @deprecated This is a view of the extra module classes of the current WorkingOnConfig, changing it
+     *             publishes a new configuration for every change. Use setConfig to change the configuration at once.
      */
-    public static Set<Class<? extends Module>> extraModuleClasses = new LinkedHashSet<>(0);
+    @Deprecated
+    public static final Set<Class<? extends Module>> extraModuleClasses = new ConfigSetView<Class<? extends Module>>() {
+        @Override
+        Set<Class<? extends Module>> read(WorkingOnConfig config) {
+            return config.getExtraModuleClasses();
+        }
+
+        @Override
+        WorkingOnConfig write(WorkingOnConfig config, Set<Class<? extends Module>> values) {
+            return new WorkingOnConfig.Builder(config).extraModuleClasses(values).build();
+        }
+    };
 
     /**
      *
@@ -114,28 +167,196 @@ public class WorkingOn {
      */
     public static boolean isTesting = false;
 
+    /**
+     * @return true if the application is under testing, as indicated by isTesting or by a test class the
+     *         context of the current thread was configured from
+     */
+    private static boolean isUnderTest() {
+        return isTesting || currentContext().getTestClass() != null;
+    }
 
-    private static boolean configurationNeeded = true;
 
-    private static String configurationConfigClassName;
-    private static Application configurationApplication;
-    private static boolean configurationOnlyOverrideWhenInDebugMode;
-    private static Class<? extends Module>[] configurationModuleClasses;
+    private static volatile WeakReference<Context> resolvingContext = new WeakReference<>(null);
+    private static final ModuleResolver resolver = new ModuleResolver(() -> isInDebugMode(resolvingContext.get()));
+
+    /**
+     * System property that enables the injector cache with the given size when configuring from a test class.
+     */
+    public static final String INJECTOR_CACHE_SIZE_PROPERTY = "workingon.injectorCacheSize";
+
+    private static volatile InjectorCache injectorCache;
+
+    private static final String RESOLUTION_PLAN_FILE = "workingon-resolution-plan";
+
+    private static volatile Executor prewarmExecutor;
+
+    private static final ProcessNameResolver defaultProcessNameResolver = new DefaultProcessNameResolver();
+
+    private static final long CONFIG_FILE_DEBOUNCE_MILLIS = 500;
+
+    private static final String TAG = "WorkingOn";
 
     /**
      * Set the configuration of this application. When the configuration is loaded calls are made to
      * initConfigClass and loadModules with the supplied parameters.
      *
+     * The application is only held weakly, it's kept alive by Android or the test that created it.
+     *
      * @param configClassName
      * @param application
      * @param onlyOverrideWhenInDebugMode
      * @param moduleClasses
      */
+    @SafeVarargs
     public static void configuration(String configClassName, Application application, boolean onlyOverrideWhenInDebugMode, Class<? extends Module>... moduleClasses) {
-        configurationConfigClassName = configClassName;
-        configurationApplication = application;
-        configurationOnlyOverrideWhenInDebugMode = onlyOverrideWhenInDebugMode;
-        configurationModuleClasses = moduleClasses;
+        WorkingOnContext context = currentContext();
+        synchronized (context) {
+            context.configurationConfigClassName = configClassName;
+            context.configurationApplication = new WeakReference<>(application);
+            context.configurationOnlyOverrideWhenInDebugMode = onlyOverrideWhenInDebugMode;
+            context.configurationModuleClasses = moduleClasses;
+            context.processProfiles = null;
+        }
+    }
+
+    /**
+     * Set the configuration of this application, with a policy for the Stage the injector is built in.
+     *
+     * @see #configuration(String, Application, boolean, Class[])
+     * @see #setStagePolicy(StagePolicy)
+     */
+    @SafeVarargs
+    public static void configuration(String configClassName, Application application, boolean onlyOverrideWhenInDebugMode, StagePolicy policy, Class<? extends Module>... moduleClasses) {
+        configuration(configClassName, application, onlyOverrideWhenInDebugMode, moduleClasses);
+        currentContext().stagePolicy = policy;
+    }
+
+    /**
+     * Set the configuration of this application, with the module classes to load in the other processes of
+     * the application.
+     *
+     * @see #configuration(String, Application, boolean, Class[])
+     * @see #setProcessProfiles(ProcessProfiles)
+     */
+    @SafeVarargs
+    public static void configuration(String configClassName, Application application, boolean onlyOverrideWhenInDebugMode, ProcessProfiles profiles, Class<? extends Module>... moduleClasses) {
+        configuration(configClassName, application, onlyOverrideWhenInDebugMode, moduleClasses);
+        currentContext().processProfiles = profiles;
+    }
+
+    /**
+     * Sets the module classes loadModules loads in processes that have a profile, instead of the module
+     * classes passed to it, for the current context. The configuration overload without profiles clears
+     * them, so set them after calling it.
+     *
+     * @param profiles The profiles, or null to load the same module classes in every process
+     */
+    public static void setProcessProfiles(ProcessProfiles profiles) {
+        currentContext().processProfiles = profiles;
+    }
+
+    /**
+     * Sets a file that configures the tasks, extra module classes, activity and fragment after the
+     * configuration class, so they can be changed without building the app again. Its tasks replace the
+     * tasks, its extra module classes are added and its activity and fragment are used when set. The file
+     * is not read while testing.
+     *
+     * When the file is watched, the configuration is reloaded on the main thread once the file stopped
+     * changing for a moment, if what it configures changed since it was loaded. A file that can't be read or
+     * names classes that don't exist is logged and ignored until it's changed again, both when the
+     * configuration is loaded and when it's reloaded.
+     *
+     * @param file A properties or .json file, for example in getExternalFilesDir so it can be pushed with adb,
+     *             or null to no longer use a file
+     * @param watch Whether to reload the configuration when the file changes
+     * @see ConfigFile
+     */
+    public static void setConfigFile(File file, boolean watch) {
+        final WorkingOnContext context = currentContext();
+        synchronized (context) {
+            if (context.configFileWatcher != null)
+                context.configFileWatcher.stop();
+            context.configFileWatcher = null;
+            context.configFile = file;
+            if (file != null && watch) {
+                context.configFileWatcher = new ConfigFileWatcher(file, CONFIG_FILE_DEBOUNCE_MILLIS,
+                        () -> new Handler(Looper.getMainLooper()).post(() -> reloadIfConfigFileChanged(context)));
+                context.configFileWatcher.start();
+            }
+        }
+    }
+
+    /**
+     * @return The context bound to the current thread, or else the context of the process
+     */
+    public static WorkingOnContext currentContext() {
+        WorkingOnContext context = boundContext.get();
+        return context == null ? defaultContext : context;
+    }
+
+    /**
+     * Binds a context to the current thread, after which all WorkingOn methods called on this thread
+     * use it instead of the context of the process.
+     *
+     * @param context The context to bind, or null to use the context of the process again
+     */
+    public static void bindContext(WorkingOnContext context) {
+        if (context == null)
+            boundContext.remove();
+        else
+            boundContext.set(context);
+    }
+
+    /**
+     * Binds a new context to the current thread and configures it from a test class, as configureTestTasks does.
+     *
+     * @param testClass the testClass that will be scanned for annotations
+     * @return The new context
+     */
+    public static WorkingOnContext bindTestContext(Class<?> testClass) {
+        WorkingOnContext context = new WorkingOnContext();
+        bindContext(context);
+        configureTestTasks(testClass);
+        return context;
+    }
+
+    /**
+     * @return The current configuration of tasks and extra modules
+     */
+    public static WorkingOnConfig getConfig() {
+        return currentContext().getConfig();
+    }
+
+    /**
+     * Replaces the configuration of tasks and extra modules as a whole. A load that already started keeps
+     * using the configuration that was current when it started.
+     *
+     * @param workingOnConfig The new configuration
+     */
+    public static void setConfig(WorkingOnConfig workingOnConfig) {
+        currentContext().setConfig(workingOnConfig);
+    }
+
+    /**
+     * Sets the policy that decides the Stage the injector is built in and which singletons are not created
+     * eagerly, for the current context. When a policy is set the singletons that are created are counted in
+     * getSingletonStats.
+     *
+     * Note that when the policy picks PRODUCTION and singletons are marked lazy, by the policy or with
+     * LazySingletons, the injector is built in the DEVELOPMENT stage and the other singletons are created
+     * right after it, as Guice creates all singletons in PRODUCTION. An injected Stage then is DEVELOPMENT.
+     *
+     * @param policy The policy, or null to always build the injector in the PRODUCTION stage
+     */
+    public static void setStagePolicy(StagePolicy policy) {
+        currentContext().stagePolicy = policy;
+    }
+
+    /**
+     * @return The singletons created by the last injector built with a StagePolicy, or null if no StagePolicy was used
+     */
+    public static SingletonStats getSingletonStats() {
+        return currentContext().singletonStats;
     }
 
     /**
@@ -143,18 +364,176 @@ public class WorkingOn {
      * or if a new test was started, or prepareApplicationConfigurationRestart was invoked.
      */
     public static void loadConfigurationIfNeeded() {
-        if (configurationNeeded) {
-            configurationNeeded = false;
-            try {
-                initConfigClass(configurationConfigClassName);
-                loadModules(configurationApplication, configurationOnlyOverrideWhenInDebugMode,configurationModuleClasses);
-            } catch (IllegalAccessException e) {
-                throw new RuntimeException("Could not load configuration for WorkingOn", e);
-            } catch (InvocationTargetException e) {
-                throw new RuntimeException("Could not load configuration for WorkingOn", e);
-            } catch (InstantiationException e) {
-                throw new RuntimeException("Could not load configuration for WorkingOn", e);
+        loadConfigurationIfNeeded(currentContext(), false);
+    }
+
+    /**
+     * Loads the configuration of the context if needed. The context is only locked to claim the load and to
+     * publish that it's done, so other threads can configure the context or restart while it loads. A thread
+     * calling this while another thread loads the same context waits for that load instead.
+     *
+     * @param startOnMainThread true to leave injecting and starting the application to startPending
+     * @return The injector this call loaded, or else the injector of the context
+     */
+    private static Injector loadConfigurationIfNeeded(WorkingOnContext context, boolean startOnMainThread) {
+        String configClassName;
+        Application application;
+        boolean onlyOverrideWhenInDebugMode;
+        Class<? extends Module>[] moduleClasses;
+        int generation;
+        Injector loaded = null;
+        synchronized (context) {
+            while (context.loading)
+                try {
+                    context.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException("Interrupted while waiting for WorkingOn configuration", e);
+                }
+            if (!context.configurationNeeded)
+                return context.injector;
+            context.configurationNeeded = false;
+            context.loading = true;
+            context.startOnMainThread = startOnMainThread;
+            configClassName = context.configurationConfigClassName;
+            application = context.configurationApplication.get();
+            onlyOverrideWhenInDebugMode = context.configurationOnlyOverrideWhenInDebugMode;
+            moduleClasses = context.configurationModuleClasses;
+            generation = context.loadGeneration;
+        }
+        try {
+            long start = traceBegin(WorkingOnTracer.Phase.CONFIG_CLASS, configClassName);
+            initConfigClass(configClassName);
+            traceEnd(WorkingOnTracer.Phase.CONFIG_CLASS, configClassName, start);
+            applyConfigFile(context);
+            if (application == null)
+                throw new RuntimeException("No Application to load the WorkingOn configuration for, call configuration first");
+            loadModules(application, onlyOverrideWhenInDebugMode, moduleClasses);
+            loaded = context.injector;
+            return loaded;
+        } catch (IllegalAccessException e) {
+            throw new RuntimeException("Could not load configuration for WorkingOn", e);
+        } catch (InvocationTargetException e) {
+            throw new RuntimeException("Could not load configuration for WorkingOn", e);
+        } catch (InstantiationException e) {
+            throw new RuntimeException("Could not load configuration for WorkingOn", e);
+        } finally {
+            synchronized (context) {
+                // a restart while loading makes the next call load again, so don't publish what this load built
+                if (generation != context.loadGeneration) {
+                    context.injector = null;
+                    context.pendingStart = null;
+                }
+                context.startOnMainThread = false;
+                context.loading = false;
+                context.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Loads the configuration like loadConfigurationIfNeeded, but on the supplied executor. The modules
+     * are resolved and the injector is built on the executor, the application is injected and started
+     * on the main thread afterwards, followed by the callbacks of an AsyncWorkingOnApplication and of
+     * the handle.
+     *
+     * If a load was already started and prepareApplicationConfigurationRestart has not been invoked
+     * since, the handle of that load is returned instead.
+     *
+     * @param executor The executor to load the configuration on
+     * @return A handle that can be used to wait for the injector or be notified when it's ready
+     */
+    public static InjectorFuture loadConfigurationAsync(Executor executor) {
+        final WorkingOnContext context = currentContext();
+        synchronized (context) {
+            if (context.pendingLoad == null) {
+                context.pendingLoad = new InjectorFuture(context, () -> {
+                    WorkingOnContext previous = boundContext.get();
+                    bindContext(context);
+                    try {
+                        return loadConfigurationIfNeeded(context, true);
+                    } finally {
+                        bindContext(previous);
+                    }
+                });
+                executor.execute(context.pendingLoad);
+            }
+            return context.pendingLoad;
+        }
+    }
+
+    /**
+     * Loads the configuration like loadConfigurationIfNeeded, but on the supplied executor, and notifies
+     * the callback when done.
+     *
+     * @param executor The executor to load the configuration on
+     * @param callback Called on the main thread after WorkingOnApplication.startWorkingOn was called
+     * @return A handle that can be used to wait for the injector
+     */
+    public static InjectorFuture loadConfigurationAsync(Executor executor, WorkingOnCallback callback) {
+        InjectorFuture load = loadConfigurationAsync(executor);
+        load.addCallback(callback);
+        return load;
+    }
+
+    /**
+     * Returns the injector created when loading the configuration. If the configuration is being loaded
+     * asynchronously this waits for it to finish, otherwise it loads the configuration if needed.
+     *
+     * @return The RoboGuice base application injector
+     */
+    public static Injector awaitInjector() {
+        WorkingOnContext context = currentContext();
+        InjectorFuture load;
+        synchronized (context) {
+            load = context.pendingLoad;
+        }
+        if (load != null)
+            return load.awaitInjector();
+        return loadConfigurationIfNeeded(context, false);
+    }
+
+    private static void applyConfigFile(WorkingOnContext context) {
+        File file = context.configFile;
+        if (file == null || isUnderTest())
+            return;
+        long start = traceBegin(WorkingOnTracer.Phase.CONFIG_FILE, file.getPath());
+        ConfigFile configFile;
+        try {
+            configFile = ConfigFileApplier.read(file, resolver.getClassResolutionCache());
+        } catch (IOException | RuntimeException e) {
+            Log.e(TAG, "Ignoring the configuration file " + file + " until it's changed", e);
+            configFile = null;
+        }
+        ConfigFileApplier.apply(context, configFile, resolver.getClassResolutionCache());
+        traceEnd(WorkingOnTracer.Phase.CONFIG_FILE, file.getPath(), start);
+    }
+
+    /**
+     * Reloads the configuration of the context if the configuration file changed what it configures since
+     * it was loaded, and the changed file can be used. Runs on the main thread.
+     */
+    private static void reloadIfConfigFileChanged(WorkingOnContext context) {
+        WorkingOnContext previous = boundContext.get();
+        bindContext(context);
+        try {
+            File file;
+            ConfigFile loaded;
+            synchronized (context) {
+                file = context.configFile;
+                loaded = context.loadedConfigFile;
+                if (file == null || context.configurationNeeded)
+                    return; // the file is read when the configuration is loaded
             }
+            ConfigFile changed = ConfigFileApplier.read(file, resolver.getClassResolutionCache());
+            if (changed == null ? loaded == null : changed.equals(loaded))
+                return;
+            prepareApplicationConfigurationRestart();
+            loadConfigurationIfNeeded();
+        } catch (IOException | RuntimeException e) {
+            Log.e(TAG, "Could not reload the configuration from " + context.configFile + ", ignoring it until it's changed", e);
+        } finally {
+            bindContext(previous);
         }
     }
 
@@ -162,14 +541,250 @@ public class WorkingOn {
      * Prepares the application for a reloading of it's configuration
      */
     public static void prepareApplicationConfigurationRestart() {
+        WorkingOnContext context = currentContext();
+        synchronized (context) {
+            Application application = context.configurationApplication.get();
+            if (!context.configurationNeeded && !context.loading && application instanceof WorkingOnApplication)
+                ((WorkingOnApplication) application).stopWorkingOn();
+            context.injector = null;
+            context.pendingLoad = null;
+            context.loadGeneration++;
+            // the caches only depend on the classes, so a bound context leaves them to the contexts resolving in parallel
+            if (context == defaultContext)
+                resolver.reset();
+            context.configurationNeeded = true;
+        }
+    }
+
+    /**
+     * Sets the tracer that is notified of the phases of loading the configuration, for example a TraceRecorder.
+     * The tracer is shared by all contexts of the process.
+     *
+     * @param workingOnTracer The tracer, or null to stop tracing
+     */
+    public static void setTracer(WorkingOnTracer workingOnTracer) {
+        resolver.setTracer(workingOnTracer);
+    }
+
+    /**
+     * Sets the profiler that records how often and how long every binding is provisioned, and which base,
+     * task or override module contributed it. It's installed in every injector built after this, so call
+     * it before the configuration is loaded. Injectors taken from the injector cache keep the profiler they were built with.
+     * The profiler is shared by all contexts of the process.
+     *
+     * @param profiler The profiler, or null to stop profiling
+     */
+    public static void setBindingProfiler(BindingProfiler profiler) {
+        resolver.setBindingProfiler(profiler);
+    }
+
+    /**
+     * @return The profiler set with setBindingProfiler, to query or dump its statistics
+     */
+    public static BindingProfiler getBindingProfiler() {
+        return resolver.getBindingProfiler();
+    }
+
+    /**
+     * Enables checking the resolved modules for keys bound by more than one module before the injector is
+     * built. loadModules then fails fast with a BindingConflictException that names the modules and the tasks
+     * that introduced each double binding. Use ModuleResolver.checkConflicts to check task combinations in a test.
+     *
+     * @see BindingConflicts
+     */
+    public static void setConflictCheck(boolean check) {
+        resolver.setConflictCheck(check);
+    }
+
+    /**
+     * Forgets the elements recorded from modules annotated with CacheableModule, so they are configured
+     * again the next time modules are loaded.
+     */
+    public static void clearElementRecordings() {
+        resolver.clearElementRecordings();
+    }
+
+    private static long traceBegin(WorkingOnTracer.Phase phase, String detail) {
+        return resolver.traceBegin(phase, detail);
+    }
+
+    private static void traceEnd(WorkingOnTracer.Phase phase, String detail, long start) {
+        resolver.traceEnd(phase, detail, start);
+    }
+
+    /**
+     * Enables parallel instantiation of modules in loadModules. Modules that don't override each
+     * other are then created concurrently on the supplied executor, before they are merged in the same
+     * order as without it. Only enable this if the constructors of your modules are thread safe.
+     *
+     * @param executor A bounded executor to create the modules on, or null to create them sequentially
+     */
+    public static void setModuleInstantiationExecutor(ExecutorService executor) {
+        resolver.setModuleInstantiationExecutor(executor);
+    }
+
+    /**
+     * Enables preparing the injection of the activity and fragment class after loadModules, so the screen
+     * being worked on opens without waiting for it. On the executor the MembersInjectors of the classes are
+     * resolved, and the singletons their members depend on are created, also through dependencies that are
+     * not singletons themselves. Singletons depending on a Context or on a binding in another scope, such as
+     * RoboGuice's ContextSingleton, are left to the main thread. Nothing is prepared when no activity is
+     * configured, or in another process than the main process.
+     *
+     * Only set this if the singletons the activity and fragment depend on can be created on another thread.
+     *
+     * @param executor The executor to prepare the injection on, or null to not prepare it
+     */
+    public static void setPrewarmExecutor(Executor executor) {
+        prewarmExecutor = executor;
+    }
+
+    /**
+     * Enables reusing injectors that were built before for the same configuration, which saves building
+     * the injector again for every test. Tests annotated with WorkingOnFreshInjector always get a newly
+     * built injector.
+     *
+     * A reused injector keeps the state of its singletons, and is bound to the Application it's reused for,
+     * also when Robolectric creates a new Application for every test. The cache is shared by all contexts of
+     * the process, so tests running in parallel reuse each other's injectors for the same configuration.
+     *
+     * @param maxSize The number of injectors to keep, or 0 to disable reusing injectors
+     * @throws IllegalStateException If this version of RoboGuice can't be made to use a cached injector
+     */
+    public static synchronized void setInjectorCacheSize(int maxSize) {
+        if (maxSize > 0 && !RoboGuiceInjectors.isSupported())
+            throw new IllegalStateException("The injector cache needs RoboGuice 3, which keeps its injectors in a static map by Application");
+        injectorCache = maxSize > 0 ? new InjectorCache(maxSize) : null;
+    }
+
+    /**
+     * @return The cache of injectors by configuration, or null if it's not enabled
+     */
+    public static InjectorCache getInjectorCache() {
+        return injectorCache;
+    }
+
+    /**
+     * Computes a fingerprint of everything that determines the injector loadModules will build: the
+     * module classes, tasks, extra module classes, activity, fragment, debug flag and StagePolicy.
+     *
+     * @return The fingerprint, or null if there are extra module instances, which can not be compared
+     */
+    protected static String configurationFingerprint(Application application, WorkingOnContext context, WorkingOnConfig config, Class<? extends Module>[] moduleClasses) {
+        if (!config.getExtraModules().isEmpty())
+            return null;
+        StringBuilder sb = new StringBuilder(application.getClass().getName());
+        sb.append("|modules:");
+        for (Class<? extends Module> moduleClass: moduleClasses)
+            sb.append(moduleClass.getName()).append(',');
+        sb.append("|tasks:");
+        for (String task: config.getTasks())
+            sb.append(task).append(',');
+        sb.append("|extraModules:");
+        for (Class<? extends Module> moduleClass: config.getExtraModuleClasses())
+            sb.append(moduleClass.getName()).append(',');
+        Class<? extends Activity> activity = context.getActivity();
+        Class fragmentClass = context.getFragmentClass();
+        sb.append("|activity:").append(activity == null ? "" : activity.getName());
+        sb.append("|fragment:").append(fragmentClass == null ? "" : fragmentClass.getName());
+        sb.append("|debug:").append(isInDebugMode(application));
+        sb.append("|stagePolicy:").append(context.stagePolicy);
+        return sb.toString();
+    }
+
+    /**
+     * Enables storing the modules resolved by loadModules in the cache directory of the application, so
+     * later starts can create them directly instead of probing for task modules again. The stored plan
+     * is only used when the version and install time of the application, the tasks, module classes and
+     * extra module classes are all the same. Every process stores its own plan. It's never used when testing.
+     * Applies to the current context.
+     *
+     * @param persist true to store and use the resolution plan
+     */
+    public static void setPersistResolutionPlan(boolean persist) {
+        currentContext().persistResolutionPlan = persist;
+    }
 
-        if (!configurationNeeded && configurationApplication instanceof WorkingOnApplication)
-            ((WorkingOnApplication) configurationApplication).stopWorkingOn();
-        configurationNeeded = true;
+    /**
+     * Enables incremental reloading. The modules passed to loadModules that are not overridden or replaced
+     * by a task are then built into a parent injector that is kept between loads, and only the modules
+     * affected by the tasks and the extra modules are built into a child injector of it on every load.
+     *
+     * The parent injector is built again when one of its modules becomes affected by the tasks, as a child
+     * injector can not override a binding of its parent. Singletons bound in the parent keep their state
+     * between loads. If a child injector can not be created on the existing parent, for instance because
+     * the parent created a just-in-time binding for a key the child binds, the parent is built again. When the
+     * unaffected modules depend on a key only an affected or extra module binds, the whole injector is built
+     * on that load instead. Child injectors are built in the Stage of the parent, which is chosen by the
+     * StagePolicy for all modules. Applies to the current context.
+     *
+     * @param incremental true to reload incrementally, false to build the whole injector on every load
+     */
+    public static void setIncrementalReload(boolean incremental) {
+        WorkingOnContext context = currentContext();
+        context.incrementalReload = incremental;
+        if (!incremental) {
+            synchronized (context) {
+                context.baseInjector = null;
+            }
+        }
+    }
+
+    /**
+     * @return A key describing everything the modules are resolved from, or null if the version of the
+     *         application can not be determined
+     */
+    protected static String resolutionPlanKey(Application application, WorkingOnConfig config, Class<? extends Module>[] moduleClasses) {
+        PackageInfo packageInfo;
+        try {
+            packageInfo = application.getPackageManager().getPackageInfo(application.getPackageName(), 0);
+        } catch (PackageManager.NameNotFoundException e) {
+            return null;
+        }
+        StringBuilder sb = new StringBuilder();
+        sb.append(packageInfo.versionCode).append('-').append(packageInfo.lastUpdateTime);
+        sb.append("|modules:");
+        for (Class<? extends Module> moduleClass: moduleClasses)
+            sb.append(moduleClass.getName()).append(',');
+        sb.append("|tasks:");
+        for (String task: config.getTasks())
+            sb.append(task).append(',');
+        sb.append("|extraModules:");
+        for (Class<? extends Module> moduleClass: config.getExtraModuleClasses())
+            sb.append(moduleClass.getName()).append(',');
+        return sb.toString();
+    }
+
+    /**
+     * Removes what RoboGuice keeps for the Application this context loaded for before, if that's another
+     * Application. RoboGuice keeps the injector of an Application in a WeakHashMap, but the injector refers
+     * to the Application it's the key of, so otherwise the Application of every earlier test stays reachable.
+     */
+    private static void releasePreviousApplication(WorkingOnContext context, Application application) {
+        Application previous = context.loadedApplication.get();
+        context.loadedApplication = new WeakReference<>(application);
+        if (previous == null || previous == application)
+            return;
+        context.baseInjector = null; // it can only be reused for the previous Application
+        RoboGuiceInjectors.remove(previous);
+    }
+
+    /**
+     * @return The cache used to resolve module class names, which can be used to check its hit and miss counts.
+     */
+    public static ClassResolutionCache getClassResolutionCache() {
+        return resolver.getClassResolutionCache();
+    }
+
+    /**
+     * @return The resolver WorkingOn resolves modules with, which does not depend on Android
+     */
+    public static ModuleResolver getModuleResolver() {
+        return resolver;
     }
 
     private static void initConfigClass(Class c) {
-        if (isTesting) return;
+        if (isUnderTest()) return;
         try {
             c.newInstance();
         } catch (Exception ignore) {}
@@ -178,15 +793,22 @@ public class WorkingOn {
     /**
      * Instantiates a configuration class. Will only do so when the application is not under test
      * as indicated by isTesting or the System property testClass. If such a property does exist
-     * configuration is done from that class by passing it to configureTestTasks.
+     * configuration is done from that class by passing it to configureTestTasks, unless the context bound
+     * to the current thread was already configured by a test.
      *
      * @param name The name class file of the class to instantiate
      */
     public static void initConfigClass(String name) {
-        String testClass = System.getProperty("testClass");
-        if (testClass != null) {
+        WorkingOnContext bound = boundContext.get();
+        boolean configuredByTest = bound != null && bound.getTestClass() != null; // by bindTestContext
+        String testClass = configuredByTest ? null : System.getProperty("testClass");
+        if (configuredByTest || testClass != null) {
+            String injectorCacheSize = System.getProperty(INJECTOR_CACHE_SIZE_PROPERTY);
+            if (injectorCacheSize != null && injectorCache == null)
+                setInjectorCacheSize(Integer.parseInt(injectorCacheSize));
+            if (configuredByTest)
+                return;
             System.out.println("using test class: "+testClass);
-            isTesting = true;
             try {
                 configureTestTasks(Class.forName(testClass));
             } catch (ClassNotFoundException e) {
@@ -194,7 +816,7 @@ public class WorkingOn {
             }
             return;
         }
-        if (isTesting) return;
+        if (isUnderTest()) return;
         try {
             initConfigClass(Class.forName(name));
         } catch (ClassNotFoundException ignore) {
@@ -205,79 +827,90 @@ public class WorkingOn {
         return (context.getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0;
     }
 
+    /**
+     * @deprecated Modules are resolved by the ModuleResolver, see getModuleResolver
+     */
+    @Deprecated
     protected static Module getModule(Context context, String fullName, Module rootModuleToOverride, Class<? extends Module> rootModuleClass, Set<Module> existingModules) throws ClassNotFoundException, IllegalAccessException, InvocationTargetException, InstantiationException {
-        Class moduleClass = Class.forName(fullName);
-        return getModule(context, moduleClass, rootModuleToOverride, rootModuleClass, existingModules);
+        synchronized (resolver) {
+            resolvingContext = new WeakReference<>(context);
+            return resolver.getModule(fullName, rootModuleToOverride, rootModuleClass, existingModules);
+        }
     }
 
+    /**
+     * @deprecated Modules are resolved by the ModuleResolver, see getModuleResolver
+     */
+    @Deprecated
     protected static Module getModule(Context context, Class moduleClass, Module moduleToOverride, Class<? extends Module> rootModuleClass, Set<Module> existingModules) throws InstantiationException, IllegalAccessException, InvocationTargetException {
-        Module module = null;
-        for (Constructor constructor: moduleClass.getConstructors()) {
-            Class[] parameterTypes = constructor.getParameterTypes();
-            if (parameterTypes.length == 1 && (parameterTypes[0].equals(boolean.class) || parameterTypes[0].equals(Boolean.class))) {
-                module = (Module) constructor.newInstance(isInDebugMode(context));
-                break;
-            }
+        synchronized (resolver) {
+            resolvingContext = new WeakReference<>(context);
+            return resolver.getModule(moduleClass, moduleToOverride, rootModuleClass, existingModules);
         }
-        if (module == null)
-            module = (Module) moduleClass.newInstance();
-
-        Class<? extends Module> classToOverrideWithModuleClass = classToOverrideFor(moduleClass);
-        if (moduleToOverride != null && classToOverrideWithModuleClass != null && classToOverrideWithModuleClass == rootModuleClass)
-            return Modules.override(moduleToOverride).with(module);
-
-        if (classToOverrideWithModuleClass != null) {
-            Module overrideModule = null;
-            if (existingModules != null) {
-                Iterator<Module> it = existingModules.iterator();
-                while (it.hasNext()) {
-                    Module existingModule = it.next();
-                    if (existingModule.getClass().equals(classToOverrideWithModuleClass)) {
-                        it.remove();
-                        overrideModule = existingModule;
-                    }
-                }
-            }
-            if (overrideModule == null)
-                overrideModule = getModule(context, classToOverrideWithModuleClass, null, null, existingModules);
+    }
 
-            return Modules.override(overrideModule).with(module);
+    /**
+     * @deprecated Modules are resolved by the ModuleResolver, see getModuleResolver
+     */
+    @Deprecated
+    protected Module getModule(Context context, String packageName, String className, Module moduleToOverride, Class<? extends Module> rootModuleClass, Set<Module> existingModules) throws ClassNotFoundException, IllegalAccessException, InstantiationException, InvocationTargetException {
+        return getModule(context, packageName + "." + className, moduleToOverride, rootModuleClass, existingModules);
+    }
+
+    /**
+     * @deprecated Modules are resolved by the ModuleResolver, see getModuleResolver
+     */
+    @Deprecated
+    protected static Module addModule(Context context, Set<Module> moduleSet, String moduleFullClassName, Module moduleToOverride, Class<? extends Module> rootModuleClass) throws IllegalAccessException, InstantiationException, InvocationTargetException {
+        synchronized (resolver) {
+            resolvingContext = new WeakReference<>(context);
+            return resolver.addModule(moduleSet, moduleFullClassName, moduleToOverride, rootModuleClass);
         }
-        return module;
     }
 
-    protected Module getModule(Context context, String packageName, String className, Module moduleToOverride, Class<? extends Module> rootModuleClass, Set<Module> existingModules) throws ClassNotFoundException, IllegalAccessException, InstantiationException, InvocationTargetException {
-        return getModule(context, packageName+"."+className, moduleToOverride, rootModuleClass, existingModules);
+    /**
+     * @deprecated Overrides are looked up by the ModuleResolver, see getModuleResolver
+     */
+    @Deprecated
+    protected static Class<? extends Module> rootClassToOverrideFor(String fullClassName) {
+        return resolver.rootClassToOverrideFor(fullClassName);
     }
 
     /**
-     * Add a Module to the supplied list.
+     * @deprecated Overrides are looked up by the ModuleResolver, see getModuleResolver
+     */
+    @Deprecated
+    protected static Class<? extends Module> rootClassToOverrideFor(Class<? extends Module> moduleClass) {
+        return resolver.rootClassToOverrideFor(moduleClass);
+    }
+
+    /**
+     * @deprecated Overrides are looked up by the ModuleResolver, see getModuleResolver
+     */
+    @Deprecated
+    protected static Class<? extends Module> classToOverrideFor(Class<? extends Module> moduleClass) {
+        return resolver.classToOverrideFor(moduleClass);
+    }
+
+    /**
+     * Sets the registry used to create modules and look up their overrides without reflection.
      *
-     * if moduleFullClassName points to a non-existing class this method will do nothing.
+     * Normally this is not needed, as the registry generated by the WorkingOn-compiler annotation
+     * processor is picked up automatically. Pass null to always use reflection.
      *
-     * @param context Context used for checking if the application is in debug mode.
-     * @param moduleSet Set the Module should be added to or replace the last entry from, if a
-     *                   module can be created.
-     * @param moduleFullClassName The fully qualified name of the Class
-     * @return true if a module was added, false if no module was added
-     * @throws IllegalAccessException Thrown if a Class was found but could not be loaded.
-     * @throws InstantiationException Thrown if a Class was found but could not instantiated.
-     *                                Make sure you have a no-args or single boolean arg constructor.
-     * @throws InvocationTargetException Thrown if a Class was found but could not instantiated.
-     *                                   Make sure you have a no-args or single boolean arg constructor.
+     * @param factories The registry to use
      */
-    protected static Module addModule(Context context, Set<Module> moduleSet, String moduleFullClassName, Module moduleToOverride, Class<? extends Module> rootModuleClass) throws IllegalAccessException, InstantiationException, InvocationTargetException {
-        try {
-            Module m = getModule(context, moduleFullClassName, moduleToOverride, rootModuleClass, moduleSet);
-            if (m != null) {
-                moduleSet.add(m);
-                return m;
-            }
-        } catch (ClassNotFoundException ignore) { /* we simply do not add this class if it's not found */}
-        return null;
+    public static void setModuleFactories(ModuleFactories factories) {
+        resolver.setModuleFactories(factories);
     }
 
-
+    /**
+     * @return The registry set with setModuleFactories, or else the one generated by the annotation
+     *         processor, or null if neither exists.
+     */
+    public static ModuleFactories getModuleFactories() {
+        return resolver.getModuleFactories();
+    }
 
     /**
      * Loads the modules with overrides based on the task field when appropriate.
@@ -285,6 +918,12 @@ public class WorkingOn {
      * Modules should have either a no fields constructor, or a single boolean argument constructor.
      * This boolean will be set to true in case the app is build as debuggable.
      *
+     * Modules annotated with DeferredModule, and the task modules overriding them, are only built into an
+     * injector the first time one of their keys is requested from the injector of the application.
+     *
+     * If ProcessProfiles are set and the current process has a profile, its module classes are loaded
+     * instead of the supplied ones.
+     *
      * @param application Your application. Needed by RoboGuice. If you have no application class you can try casting a Context object.
      * @param onlyOverrideWhenInDebugMode Sets whether to always make overrides, and ad extra modules,
      *                                    or only when the application is built as debuggable.
@@ -297,196 +936,405 @@ public class WorkingOn {
 
         if (moduleClasses == null)
             moduleClasses = new Class[0];
-
-        if (onlyOverrideWhenInDebugMode && !isInDebugMode(application) && !isTesting) {
-            Module[] modules = new Module[moduleClasses.length + 1];
-            modules[0] = RoboGuice.newDefaultRoboModule(application);
-            for (int k=0; k < moduleClasses.length; k++) {
-                modules[k+1]=getModule(application, moduleClasses[k], null, null, null);
+        WorkingOnContext context = currentContext();
+        ProcessProfiles profiles = context.processProfiles;
+        if (profiles != null)
+            moduleClasses = profiles.moduleClassesFor(application, moduleClasses);
+        WorkingOnConfig currentConfig = context.getConfig();
+        releasePreviousApplication(context, application);
+
+        if (onlyOverrideWhenInDebugMode && !isInDebugMode(application) && !isUnderTest()) {
+            List<Module> modules = new ArrayList<>(moduleClasses.length + 1);
+            modules.add(RoboGuice.newDefaultRoboModule(application));
+            synchronized (resolver) {
+                resolvingContext = new WeakReference<Context>(application);
+                for (int k=0; k < moduleClasses.length; k++) {
+                    modules.add(resolver.getModule(moduleClasses[k], null, null, null));
+                }
             }
-            RoboGuice.getOrCreateBaseApplicationInjector(application, Stage.PRODUCTION, modules);
-            if (application instanceof WorkingOnApplication)
-                ((WorkingOnApplication) application).startWorkingOn();
+            List<Module> deferredModules = resolver.removeDeferredModules(modules);
+            context.injector = createInjector(application, currentConfig, modules.toArray(new Module[modules.size()]));
+            deferModules(application, context, currentConfig, deferredModules);
+            start(context, application, false);
+            prewarm(context, application);
             return;
         }
 
 
-        Set<Module> modules = new LinkedHashSet<>();
-        Set<String> loadedPackageBaseModules = new HashSet<>();
-        Map<Class<? extends Module>, Module> rootModuleOverrides = new HashMap<>();
+        InjectorCache cache = context.reuseInjector ? injectorCache : null;
+        String fingerprint = cache == null ? null : configurationFingerprint(application, context, currentConfig, moduleClasses);
+        ApplicationBinding applicationBinding = fingerprint == null ? null : new ApplicationBinding(application);
+        if (fingerprint != null) {
+            Injector cachedInjector = cache.get(fingerprint, application);
+            if (cachedInjector != null) {
+                RoboGuiceInjectors.put(application, cachedInjector);
+                context.injector = cachedInjector;
+                start(context, application, true);
+                prewarm(context, application);
+                return;
+            }
+        }
 
-        List<Class<? extends Module>> modulesToAdd = new ArrayList<>();
+        ModuleRegistry modules = resolveModules(application, currentConfig, moduleClasses);
+        List<Module> deferredModules = resolver.removeDeferredModules(modules);
+        if (context.incrementalReload) {
+            context.injector = createIncrementalInjector(application, applicationBinding, currentConfig, moduleClasses, modules);
+            // the Application is bound in the parent injector, which may have been built for an earlier load
+            if (applicationBinding != null && context.baseInjector != null)
+                applicationBinding = context.baseInjector.getApplicationBinding();
+        } else
+            context.injector = createFullInjector(application, applicationBinding, currentConfig, modules);
+        deferModules(application, context, currentConfig, deferredModules);
+        if (fingerprint != null)
+            cache.put(fingerprint, context.injector, applicationBinding);
+        start(context, application, true);
+        prewarm(context, application);
 
-        modulesToAdd.addAll(Arrays.asList(moduleClasses));
+    }
 
-        modulesToAdd.addAll(extraModuleClasses);
+    /**
+     * Prepares the injection of the activity and fragment of the context on the prewarm executor, if one is set
+     * and an activity is configured. Other processes than the main process don't show the activity, so they
+     * aren't prewarmed.
+     */
+    private static void prewarm(final WorkingOnContext context, Application application) {
+        Executor executor = prewarmExecutor;
+        if (executor == null || context.getActivity() == null || !isMainProcess(context, application))
+            return;
+        final Injector injector = context.injector;
+        final Class<?>[] types = {context.getActivity(), context.getFragmentClass()};
+        executor.execute(() -> {
+            for (Class<?> type: types)
+                if (type != null && injector == context.injector)
+                    try {
+                        InjectionPrewarmer.prewarm(injector, type);
+                    } catch (RuntimeException ignore) { /* injecting the type reports it on the main thread */ }
+        });
+    }
 
-        for (Class<? extends Module> moduleClass: modulesToAdd) {
-            String packageName = moduleClass.getPackage().getName();
+    /**
+     * @return true if the current process is the one the application runs in by default, or if that's unknown,
+     * which it also is when the name isn't the name of a process of the application
+     */
+    private static boolean isMainProcess(WorkingOnContext context, Application application) {
+        String processName = processNameResolver(context).getProcessName(application);
+        String packageName = application.getPackageName();
+        String mainProcessName = application.getApplicationInfo().processName;
+        if (mainProcessName == null)
+            mainProcessName = packageName;
+        if (processName == null || !(processName.equals(packageName) || processName.equals(mainProcessName)
+                || processName.startsWith(packageName + ":")))
+            return true;
+        return processName.equals(mainProcessName);
+    }
 
-                for (String task: tasks) {
-                    String fullPackageBaseModuleName = packageName + "." + task.toLowerCase() + "." + task;
-                    if (!loadedPackageBaseModules.contains(fullPackageBaseModuleName)) {
-                        addModule(application, modules, fullPackageBaseModuleName, null, null);
-                        loadedPackageBaseModules.add(fullPackageBaseModuleName);
-                    }
-                }
+    private static ProcessNameResolver processNameResolver(WorkingOnContext context) {
+        ProcessProfiles profiles = context.processProfiles;
+        return profiles == null ? defaultProcessNameResolver : profiles.getResolver();
+    }
 
-            String className = moduleClass.getSimpleName();
+    /**
+     * Replaces the injector of the context with one that builds the deferred modules when one of their keys is
+     * first requested, and makes RoboGuice use it for the application.
+     */
+    private static void deferModules(Application application, WorkingOnContext context, WorkingOnConfig config, List<Module> deferredModules) {
+        if (deferredModules.isEmpty())
+            return;
+        context.injector = resolver.createDeferringInjector(context.injector, config.getTasks(), deferredModules);
+        RoboGuiceInjectors.put(application, context.injector);
+    }
 
-            boolean addedAnyTask = false;
-            for (String task: tasks) {
+    /**
+     * Resolves the modules that loadModules passes to the injector, except for the extra module instances
+     * and the RoboGuice default module, with overrides based on the task field.
+     *
+     * @param application Your application, used for checking if it is in debug mode.
+     * @param moduleClasses Classes of the modules to override and/or load.
+     * @return The resolved modules, in the order they should be passed to the injector
+     */
+    protected static ModuleRegistry resolveModules(Application application, Class<? extends Module>... moduleClasses) throws IllegalAccessException, InvocationTargetException, InstantiationException {
+        return resolveModules(application, getConfig(), moduleClasses);
+    }
 
-                /*
+    /**
+     * Resolves the modules like resolveModules, for the tasks and extra modules of the supplied configuration.
+     */
+    protected static ModuleRegistry resolveModules(Application application, WorkingOnConfig config, Class<? extends Module>... moduleClasses) throws IllegalAccessException, InvocationTargetException, InstantiationException {
+        // the resolver and the debug flag it reads are shared by all contexts, so one resolves at a time
+        synchronized (resolver) {
+            resolvingContext = new WeakReference<Context>(application);
 
-                - create the potential class name that could replace or override our normal module
+            List<Class<? extends Module>> modulesToAdd = new ArrayList<>();
 
-                - see what the deepest module is that the module with this class name overrides
+            modulesToAdd.addAll(Arrays.asList(moduleClasses));
 
-                - if it's been overridden before, then pass the module stored in the rootModuleOverrides
-                  so that gets overridden instead of the actual root module. Else just create a new module.
+            modulesToAdd.addAll(config.getExtraModuleClasses());
 
-                - If a new merged overrides module wa created, remove the old module from the module set.
+            WorkingOnContext context = currentContext();
+            File planFile = context.persistResolutionPlan && !isUnderTest() ? resolutionPlanFile(context, application) : null;
+            String planKey = planFile == null ? null : resolutionPlanKey(application, config, moduleClasses);
+            ResolutionPlan plan = planKey == null ? null : ResolutionPlan.read(planFile, planKey);
+            List<Module> plannedModules = plan == null ? null : plan.instantiate(resolver);
 
-                - store the new or merged overridden module in the rootModuleOverrides map.
+            if (plannedModules != null) {
+                resolver.recordTaskModules(plannedModules, modulesToAdd);
+                ModuleRegistry modules = new ModuleRegistry();
+                modules.addAll(plannedModules);
+                return modules;
+            }
 
-                - if no module existed for the potential class name or it's alternate, just create the original module
-                 */
+            ModuleRegistry modules = resolver.resolve(config.getTasks(), modulesToAdd, config.getExtraModules());
+            if (planKey != null)
+                try {
+                    ResolutionPlan.of(planKey, modules).write(planFile);
+                } catch (IOException ignore) { /* the modules will be resolved again on the next start */ }
+            return modules;
+        }
+    }
 
-                String potentialClassName = packageName + "." + task.toLowerCase() + "." + className+task;
-                Class<? extends Module> rootClass = rootClassToOverrideFor(potentialClassName);
-                Module moduleToOverride = null;
-                if (rootClass != null)
-                    moduleToOverride = rootModuleOverrides.get(rootClass);
-                Module addedModule = addModule(application, modules, potentialClassName, moduleToOverride, rootClass);
+    /**
+     * @return The file the resolution plan is kept in, one for each process as they resolve their own modules
+     */
+    private static File resolutionPlanFile(WorkingOnContext context, Application application) {
+        String processName = processNameResolver(context).getProcessName(application);
+        String name = RESOLUTION_PLAN_FILE;
+        if (processName != null && !processName.equals(application.getPackageName()))
+            name += "-" + processName.replaceAll("[^\\w.-]", "_");
+        return new File(application.getCacheDir(), name);
+    }
 
-                if (addedModule == null) {
-                    // same as above but for the alternate class name case.
-                    potentialClassName = packageName + "." + task.toLowerCase() + "." + className;
-                    rootClass = rootClassToOverrideFor(potentialClassName);
-                    if (rootClass != null)
-                        moduleToOverride = rootModuleOverrides.get(rootClass);
+    /**
+     * Creates the RoboGuice base application injector, in the PRODUCTION stage or the stage chosen by the
+     * StagePolicy. With a StagePolicy that chooses PRODUCTION the injector is built in the DEVELOPMENT
+     * stage after which all singletons that are not lazy are created, which is the same as PRODUCTION
+     * except for the lazy singletons.
+     */
+    protected static Injector createInjector(final Application application, final WorkingOnConfig config, Module[] modules) {
+        final StagePolicy policy = currentContext().stagePolicy;
+        final Stage stage = stageFor(application, config, policy);
+        final boolean createEagerSingletons = StagePolicyInjectors.createsEagerSingletons(policy, stage, Arrays.asList(modules));
+        final SingletonStatsListener listener = policy == null ? null : new SingletonStatsListener();
+        return resolver.createInjector(resolvedModules -> createRoboGuiceInjector(application, policy, stage, createEagerSingletons, listener, resolvedModules), config.getTasks(), Arrays.asList(modules));
+    }
 
-                    addedModule = addModule(application, modules, potentialClassName, moduleToOverride, rootClass);
+    /**
+     * Creates the injector with the resolved modules, the extra modules of the configuration and the RoboGuice default module.
+     *
+     * @param applicationBinding The binding of the Application of an injector that is cached, or null
+     */
+    private static Injector createFullInjector(Application application, ApplicationBinding applicationBinding, WorkingOnConfig config, Collection<Module> modules) {
+        List<Module> allModules = new ArrayList<>(modules);
+        allModules.addAll(config.getExtraModules());
+        allModules.add(defaultRoboModule(application, applicationBinding));
+        return createInjector(application, config, allModules.toArray(new Module[allModules.size()]));
+    }
 
-                }
-                if (addedModule != null && rootClass != null) {
-                    if (moduleToOverride != null)
-                        modules.remove(moduleToOverride);
-                    rootModuleOverrides.put(rootClass, addedModule);
-                }
-                addedAnyTask |= addedModule != null;
-            }
-            if (!addedAnyTask) {
-
-                Class<? extends Module> rootClass = rootClassToOverrideFor(moduleClass);
-                if (rootClass != null) { // check if this module wants to override another module outside of a task
-                    Module currentlyOverriding = rootModuleOverrides.remove(rootClass);
-                    if (currentlyOverriding != null) {
-                        // there is already another module doing this so will will override that module and replace it
-                        modules.remove(currentlyOverriding);
-                        Module m = addModule(application, modules, moduleClass.getName(), currentlyOverriding, currentlyOverriding.getClass());
-                        rootModuleOverrides.put(rootClass, m);
-                    }
-                    else {
-                        // we are the first to attempt to override this module, find the module, then override it and replace it with ourselves
-                        Module moduleToOverride = null;
-                        for (Module m: modules) {
-                            if (m.getClass().equals(rootClass))
-                                moduleToOverride = m;
-                        }
-                        if (moduleToOverride != null) {
-                            modules.remove(moduleToOverride);
-                            Module m = addModule(application, modules, moduleClass.getName(), moduleToOverride, moduleToOverride.getClass());
-                            rootModuleOverrides.put(rootClass, m);
-                        }
-                        else throw new RuntimeException("Trying to override "+rootClass.getName()+" but that module was never loaded");
-                    }
-                } else // this module doesn't try to override anything, just add it
-                    addModule(application, modules, moduleClass.getName(), null, null);
-            }
+    /**
+     * @return The RoboGuice default module, binding the Application to the ApplicationBinding if there is one
+     */
+    private static Module defaultRoboModule(Application application, ApplicationBinding applicationBinding) {
+        Module module = RoboGuice.newDefaultRoboModule(application);
+        return applicationBinding == null ? module : applicationBinding.override(module);
+    }
 
+    /**
+     * Creates a child injector with the modules affected by the tasks and the extra modules, on a parent
+     * injector with the modules that are not. The parent injector of the previous load is reused if all
+     * of its modules are still unaffected, according to the plans the modules were resolved to, and the
+     * StagePolicy builds it the same.
+     *
+     * A new parent injector is only built if its modules depend on nothing the child modules bind, as a parent
+     * can't see the bindings of its children. Otherwise, or if building it fails, the whole injector is built.
+     */
+    private static Injector createIncrementalInjector(final Application application, ApplicationBinding applicationBinding, WorkingOnConfig config, Class<? extends Module>[] moduleClasses, ModuleRegistry modules) {
+        Set<String> declaredModuleClassNames = new HashSet<>();
+        for (Class<? extends Module> moduleClass: moduleClasses)
+            declaredModuleClassNames.add(moduleClass.getName());
+
+        // a module is unaffected if it's planned on its own, without overrides, and was passed to loadModules
+        Map<String, Module> unaffectedModules = new LinkedHashMap<>();
+        List<Module> affectedModules = new ArrayList<>();
+        Iterator<List<String>> entries = ResolutionPlan.of(null, modules).getEntries().iterator();
+        for (Module module: modules) {
+            List<String> entry = entries.next();
+            if (entry.size() == 1 && declaredModuleClassNames.contains(entry.get(0)) && !unaffectedModules.containsKey(entry.get(0)))
+                unaffectedModules.put(entry.get(0), module);
+            else
+                affectedModules.add(module);
         }
 
-        modules.addAll(extraModules);
-        modules.add(RoboGuice.newDefaultRoboModule(application));
-        RoboGuice.getOrCreateBaseApplicationInjector(application, Stage.PRODUCTION, modules.toArray(new Module[modules.size()]));
-        RoboGuice.getInjector(application).injectMembersWithoutViews(application);
-        if (application instanceof WorkingOnApplication)
-            ((WorkingOnApplication) application).startWorkingOn();
+        List<Module> childModules = new ArrayList<>(affectedModules);
+        childModules.addAll(config.getExtraModules());
+        List<Module> allModules = new ArrayList<>(modules);
+        allModules.addAll(config.getExtraModules());
+        final StagePolicy policy = currentContext().stagePolicy;
+        final Stage stage = stageFor(application, config, policy);
+        final boolean createEagerSingletons = StagePolicyInjectors.createsEagerSingletons(policy, stage, allModules);
+
+        WorkingOnContext context = currentContext();
+        BaseInjector base = context.baseInjector;
+        if (base != null && base.canBeReusedFor(application, unaffectedModules.keySet(), policy, stage, createEagerSingletons))
+            try {
+                return createChildInjector(application, config, base, unaffectedModules, affectedModules);
+            } catch (CreationException ignore) { /* build the parent again below */ }
+
+        context.baseInjector = null;
+        List<Module> baseModules = new ArrayList<>(unaffectedModules.values());
+        ApplicationBinding baseApplicationBinding = new ApplicationBinding(application);
+        baseModules.add(defaultRoboModule(application, baseApplicationBinding));
+        if (resolver.canBeParent(baseModules, childModules))
+            try {
+                final SingletonStatsListener listener = policy == null ? null : new SingletonStatsListener();
+                Injector injector = resolver.createInjector(resolvedModules -> createRoboGuiceInjector(application, policy, stage, createEagerSingletons, listener, resolvedModules), config.getTasks(), baseModules);
+                base = new BaseInjector(application, unaffectedModules.keySet(), injector, policy, stage, createEagerSingletons, listener, baseApplicationBinding);
+                Injector child = createChildInjector(application, config, base, unaffectedModules, affectedModules);
+                context.baseInjector = base;
+                return child;
+            } catch (CreationException ignore) { /* build the whole injector below */ }
+
+        return createFullInjector(application, applicationBinding, config, modules);
+    }
 
+    private static Injector createChildInjector(Application application, WorkingOnConfig config, final BaseInjector base, Map<String, Module> unaffectedModules, List<Module> affectedModules) {
+        List<Module> childModules = new ArrayList<>(affectedModules);
+        for (Map.Entry<String, Module> unaffected: unaffectedModules.entrySet())
+            if (!base.getModuleClassNames().contains(unaffected.getKey()))
+                childModules.add(unaffected.getValue());
+        childModules.addAll(config.getExtraModules());
+
+        // the child is built in the stage of its parent, and its singletons are counted by the listener it inherits
+        Injector child = resolver.createInjector(resolvedModules -> createWithStagePolicy(
+                childInjectorModules -> base.getInjector().createChildInjector(childInjectorModules), resolvedModules,
+                base.getStagePolicy(), base.createsEagerSingletons(), base.getSingletonStatsListener()), config.getTasks(), childModules, base.getInjector());
+        RoboGuiceInjectors.put(application, child);
+        return child;
     }
 
-    protected static Class<? extends Module> rootClassToOverrideFor(String fullClassName) {
-        try {
-            return rootClassToOverrideFor((Class<? extends Module>) Class.forName(fullClassName));
-        } catch (ClassNotFoundException e) {
-            return null;
-        }
+    private static Injector createRoboGuiceInjector(final Application application, StagePolicy policy, Stage stage, boolean createEagerSingletons, SingletonStatsListener listener, List<Module> modules) {
+        final Stage injectorStage = createEagerSingletons ? Stage.DEVELOPMENT : stage;
+        List<Module> injectorModules = new ArrayList<>(modules);
+        if (listener != null)
+            injectorModules.add(listener.module());
+        return createWithStagePolicy(
+                resolvedModules -> RoboGuice.getOrCreateBaseApplicationInjector(application, injectorStage, resolvedModules.toArray(new Module[resolvedModules.size()])),
+                injectorModules, policy, createEagerSingletons, listener);
     }
 
-    protected static Class<? extends Module> rootClassToOverrideFor(Class<? extends Module> moduleClass) {
-        Class<? extends Module> classToOverridesWithModuleClass = classToOverrideFor(moduleClass);
-        if (classToOverridesWithModuleClass != null) {
-            Class<? extends Module> rootClassOfClassToOverrideWithModuleClass = rootClassToOverrideFor(classToOverridesWithModuleClass);
-            return  rootClassOfClassToOverrideWithModuleClass == null ? classToOverridesWithModuleClass : rootClassOfClassToOverrideWithModuleClass;
-        }
-        return null;
+    private static Injector createWithStagePolicy(InjectorFactory factory, List<Module> modules, StagePolicy policy, boolean createEagerSingletons, SingletonStatsListener listener) {
+        return StagePolicyInjectors.create(currentContext(), factory, modules, policy, createEagerSingletons, listener, resolver.getClassResolutionCache());
     }
 
-    protected static Class<? extends Module> classToOverrideFor(Class<? extends Module> moduleClass) {
-        if (moduleClass.isAnnotationPresent(OverridesModule.class)) {
-            OverridesModule annotation = (OverridesModule) moduleClass.getAnnotation(OverridesModule.class); // android studio cast
-            Class<? extends Module> classThatOverrides = annotation.value();
-            if (classThatOverrides == Module.class) { // default value
-                return null; // TODO implement default behaviour of looking at the parent package
+    private static Stage stageFor(Application application, WorkingOnConfig config, StagePolicy policy) {
+        return StagePolicyInjectors.stageFor(policy, config.getTasks(), isInDebugMode(application));
+    }
+
+    /**
+     * Injects and starts the application, or leaves that to the main thread if the configuration is loaded
+     * with loadConfigurationAsync.
+     */
+    private static void start(WorkingOnContext context, Application application, boolean inject) {
+        synchronized (context) {
+            if (context.startOnMainThread) {
+                context.pendingStart = application;
+                context.pendingInject = inject;
+                return;
             }
-            return classThatOverrides;
         }
-        return null;
+        if (inject)
+            injectApplication(application);
+        startWorkingOn(application);
     }
 
+    /**
+     * Injects and starts the application the configuration was loaded for asynchronously, on the main thread.
+     */
+    static void startPending(WorkingOnContext context) {
+        Application application;
+        boolean inject;
+        synchronized (context) {
+            application = context.pendingStart;
+            inject = context.pendingInject;
+            context.pendingStart = null;
+        }
+        if (application == null)
+            return;
+        WorkingOnContext previous = boundContext.get();
+        bindContext(context);
+        try {
+            if (inject)
+                injectApplication(application);
+            startWorkingOn(application);
+        } finally {
+            bindContext(previous);
+        }
+    }
+
+    private static void injectApplication(Application application) {
+        long start = traceBegin(WorkingOnTracer.Phase.INJECT_APPLICATION, null);
+        RoboGuice.getInjector(application).injectMembersWithoutViews(application);
+        traceEnd(WorkingOnTracer.Phase.INJECT_APPLICATION, null, start);
+    }
+
+    private static void startWorkingOn(Application application) {
+        if (application instanceof WorkingOnApplication) {
+            long start = traceBegin(WorkingOnTracer.Phase.START_WORKING_ON, null);
+            ((WorkingOnApplication) application).startWorkingOn();
+            traceEnd(WorkingOnTracer.Phase.START_WORKING_ON, null, start);
+        }
+    }
 
     /**
      * Configure WorkingOn fields by reading the WorkingOnActivity, WorkingOnFragments,
-     * WorkingOnModules and WorkingOnTasks.
+     * WorkingOnModules, WorkingOnTasks and WorkingOnFreshInjector.
      *
-     * This resets any previous configuration that was set, and sets the isTesting field to true.
+     * This resets any previous configuration that was set. In the context of the process it sets the isTesting
+     * field and the activity and fragmentClass fields; a context bound to the current thread is marked as
+     * testing by the test class instead, so tests running in parallel don't change what the others see.
      *
      * @param testClass the testClass that will be scanned for annotations
      */
     public static void configureTestTasks(Class<?> testClass) {
-        isTesting = true;
+        WorkingOnContext context = currentContext();
+        if (context == defaultContext)
+            isTesting = true;
 
-        tasks.clear();
-        extraModules.clear();
-        extraModuleClasses.clear();
-        WorkingOn.fragmentClass = null;
-        WorkingOn.activity = null;
+        WorkingOnConfig.Builder testConfig = new WorkingOnConfig.Builder();
+        Class fragment = null;
+        Class<? extends Activity> activity = null;
 
         WorkingOnTasks annotatedTasks = testClass.getAnnotation(WorkingOnTasks.class);
         if (annotatedTasks != null)
             for (String task: annotatedTasks.value())
-                tasks.add(task);
+                testConfig.task(task);
 
 
         WorkingOnFragment annotatedFragment =testClass.getAnnotation(WorkingOnFragment.class);
         if (annotatedFragment != null)
-            WorkingOn.fragmentClass = annotatedFragment.value();
+            fragment = annotatedFragment.value();
 
         WorkingOnActivity annotatedActivity = testClass.getAnnotation(WorkingOnActivity.class);
         if (annotatedActivity != null)
             try {
-                WorkingOn.activity = annotatedActivity.value();
+                activity = annotatedActivity.value();
             } catch (Exception e) {
                 // ignore Activities with incorrect constructors
             }
 
         WorkingOnModules annotatedModules = testClass.getAnnotation(WorkingOnModules.class);
         if (annotatedModules != null) {
-            extraModuleClasses.addAll(Arrays.asList(annotatedModules.value()));
+            testConfig.extraModuleClasses(Arrays.asList(annotatedModules.value()));
+        }
+        context.setConfig(testConfig.build());
+        context.setFragmentClass(fragment);
+        context.setActivity(activity);
+        context.testClass = testClass;
+
+        synchronized (context) {
+            context.reuseInjector = !testClass.isAnnotationPresent(WorkingOnFreshInjector.class);
+            context.injector = null;
+            context.pendingLoad = null;
+            context.loadGeneration++;
+            context.configurationNeeded = true;
         }
-
-        configurationNeeded = true;
     }
 }
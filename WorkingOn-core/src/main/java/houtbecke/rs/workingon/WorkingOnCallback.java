@@ -0,0 +1,18 @@
+package houtbecke.rs.workingon;
+
+import com.google.inject.Injector;
+
+/**
+ *
+ * Callback for loading the configuration asynchronously with WorkingOn.loadConfigurationAsync.
+ *
+ * The callback is invoked on the main thread, after the application was injected and
+ * WorkingOnApplication.startWorkingOn has been called.
+ *
+ */
+public interface WorkingOnCallback {
+
+    void onWorkingOnStarted(Injector injector);
+    void onWorkingOnFailed(Throwable error);
+
+}
@@ -0,0 +1,122 @@
+package houtbecke.rs.workingon;
+
+import com.google.inject.Module;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ *
+ * The tasks, extra modules and extra module classes WorkingOn loads modules with.
+ *
+ * A configuration never changes once it's built, so it can be read from any thread without locking.
+ * WorkingOn publishes a new configuration as a whole with setConfig, and loadModules uses the
+ * configuration that was current when it started for everything it does.
+ *
+ * @see WorkingOn#tasks
+ * @see WorkingOn#extraModules
+ * @see WorkingOn#extraModuleClasses
+ */
+public final class WorkingOnConfig {
+
+    private final Set<String> tasks;
+    private final Set<Module> extraModules;
+    private final Set<Class<? extends Module>> extraModuleClasses;
+
+    private WorkingOnConfig(Builder builder) {
+        tasks = Collections.unmodifiableSet(new LinkedHashSet<>(builder.tasks));
+        extraModules = Collections.unmodifiableSet(new LinkedHashSet<>(builder.extraModules));
+        extraModuleClasses = Collections.unmodifiableSet(new LinkedHashSet<>(builder.extraModuleClasses));
+    }
+
+    /**
+     * @return The tasks you are currently working on, in order
+     */
+    public Set<String> getTasks() {
+        return tasks;
+    }
+
+    /**
+     * @return The extra modules that should be loaded in addition to the ones passed to loadModules
+     */
+    public Set<Module> getExtraModules() {
+        return extraModules;
+    }
+
+    /**
+     * @return The classes of extra modules that should be loaded in addition to the ones passed to loadModules
+     */
+    public Set<Class<? extends Module>> getExtraModuleClasses() {
+        return extraModuleClasses;
+    }
+
+    public static class Builder {
+
+        private final Set<String> tasks = new LinkedHashSet<>();
+        private final Set<Module> extraModules = new LinkedHashSet<>();
+        private final Set<Class<? extends Module>> extraModuleClasses = new LinkedHashSet<>();
+
+        public Builder() {
+        }
+
+        /**
+         * Starts with the values of an existing configuration.
+         */
+        public Builder(WorkingOnConfig config) {
+            tasks.addAll(config.tasks);
+            extraModules.addAll(config.extraModules);
+            extraModuleClasses.addAll(config.extraModuleClasses);
+        }
+
+        /**
+         * Adds a task after the tasks added before.
+         */
+        public Builder task(String task) {
+            tasks.add(task);
+            return this;
+        }
+
+        /**
+         * Replaces all tasks.
+         */
+        public Builder tasks(Collection<String> tasks) {
+            this.tasks.clear();
+            this.tasks.addAll(tasks);
+            return this;
+        }
+
+        public Builder extraModule(Module module) {
+            extraModules.add(module);
+            return this;
+        }
+
+        /**
+         * Replaces all extra modules.
+         */
+        public Builder extraModules(Collection<Module> modules) {
+            extraModules.clear();
+            extraModules.addAll(modules);
+            return this;
+        }
+
+        public Builder extraModuleClass(Class<? extends Module> moduleClass) {
+            extraModuleClasses.add(moduleClass);
+            return this;
+        }
+
+        /**
+         * Replaces all extra module classes.
+         */
+        public Builder extraModuleClasses(Collection<Class<? extends Module>> moduleClasses) {
+            extraModuleClasses.clear();
+            extraModuleClasses.addAll(moduleClasses);
+            return this;
+        }
+
+        public WorkingOnConfig build() {
+            return new WorkingOnConfig(this);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package houtbecke.rs.workingon;
+
+import android.app.Activity;
+import android.app.Application;
+
+import com.google.inject.Injector;
+import com.google.inject.Module;
+
+import java.io.File;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ *
+ * The configuration WorkingOn loads with and the injector it loaded.
+ *
+ * Normally there is a single context for the whole process. A context can be bound to a thread with
+ * WorkingOn.bindContext, after which all WorkingOn methods called on that thread use that context
+ * instead. WorkingOnRobolectricTestRunner binds a context for every test, so tests with different
+ * configurations can run in parallel in the same JVM.
+ *
+ * The static activity and fragmentClass fields of WorkingOn belong to the context of the process, and
+ * are shared by all threads. Code that runs in parallel tests should read getActivity and
+ * getFragmentClass of the current context instead.
+ *
+ * The tracer, binding profiler and injector cache are shared by all contexts of the process, the stage
+ * policy and the incremental reload and resolution plan settings belong to a context.
+ *
+ * A context only holds the Application weakly, so the Application of a finished test can be collected
+ * even when the context is kept.
+ *
+ */
+public final class WorkingOnContext {
+
+    private final boolean process;
+
+    final AtomicReference<WorkingOnConfig> config = new AtomicReference<>(new WorkingOnConfig.Builder().build());
+
+    private volatile Class<? extends Activity> activity;
+    private volatile Class fragmentClass;
+    volatile Class<?> testClass;
+
+    volatile boolean configurationNeeded = true;
+    String configurationConfigClassName;
+    WeakReference<Application> configurationApplication = new WeakReference<>(null);
+    boolean configurationOnlyOverrideWhenInDebugMode;
+    Class<? extends Module>[] configurationModuleClasses;
+    File configFile;
+    ConfigFile loadedConfigFile;
+    WorkingOnConfig configWithoutFile;
+    WorkingOnConfig configFromFile;
+    Class<? extends Activity> activityWithoutFile;
+    Class fragmentClassWithoutFile;
+    ConfigFileWatcher configFileWatcher;
+    volatile ProcessProfiles processProfiles;
+    volatile StagePolicy stagePolicy;
+    volatile boolean incrementalReload;
+    volatile boolean persistResolutionPlan;
+
+    volatile Injector injector;
+    WeakReference<Application> loadedApplication = new WeakReference<>(null);
+    InjectorFuture pendingLoad;
+    boolean loading;
+    int loadGeneration;
+    boolean startOnMainThread;
+    Application pendingStart;
+    boolean pendingInject;
+    boolean reuseInjector = true;
+    BaseInjector baseInjector;
+    volatile SingletonStats singletonStats;
+
+    public WorkingOnContext() {
+        this(false);
+    }
+
+    /**
+     * @param process true for the context of the process, which keeps the activity and fragment in the static fields of WorkingOn
+     */
+    WorkingOnContext(boolean process) {
+        this.process = process;
+    }
+
+    public WorkingOnConfig getConfig() {
+        return config.get();
+    }
+
+    public void setConfig(WorkingOnConfig workingOnConfig) {
+        if (workingOnConfig == null)
+            throw new NullPointerException("workingOnConfig");
+        config.set(workingOnConfig);
+    }
+
+    /**
+     * @return The Activity you're working on in this context
+     */
+    public Class<? extends Activity> getActivity() {
+        return process ? WorkingOn.activity : activity;
+    }
+
+    public void setActivity(Class<? extends Activity> activity) {
+        if (process)
+            WorkingOn.activity = activity;
+        else
+            this.activity = activity;
+    }
+
+    /**
+     * @return The class of the Fragment you're working on in this context
+     */
+    public Class getFragmentClass() {
+        return process ? WorkingOn.fragmentClass : fragmentClass;
+    }
+
+    public void setFragmentClass(Class fragmentClass) {
+        if (process)
+            WorkingOn.fragmentClass = fragmentClass;
+        else
+            this.fragmentClass = fragmentClass;
+    }
+
+    /**
+     * @return The test class this context was configured from, or null if it was not configured by a test
+     */
+    public Class<?> getTestClass() {
+        return testClass;
+    }
+
+    /**
+     * @return The injector loaded in this context, or null if it was not loaded yet
+     */
+    public Injector getInjector() {
+        return injector;
+    }
+}
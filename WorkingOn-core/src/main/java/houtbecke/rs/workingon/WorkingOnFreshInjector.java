@@ -0,0 +1,16 @@
+package houtbecke.rs.workingon;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+/**
+ * Indicates that a test always needs a newly built injector, for example because it changes the state of
+ * singletons, even if an injector for the same configuration is cached.
+ */
+@Retention(RUNTIME)
+@Target({ ElementType.TYPE })
+public @interface WorkingOnFreshInjector {
+}
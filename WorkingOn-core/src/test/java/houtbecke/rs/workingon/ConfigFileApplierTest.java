@@ -0,0 +1,138 @@
+package houtbecke.rs.workingon;
+
+import android.app.Activity;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Module;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import houtbecke.rs.workingon.test.WorkingOnRobolectricTestRunner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+@RunWith(WorkingOnRobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class ConfigFileApplierTest {
+
+    public static class ClassModule extends AbstractModule {
+        @Override
+        protected void configure() {
+        }
+    }
+
+    public static class FileModule extends AbstractModule {
+        @Override
+        protected void configure() {
+        }
+    }
+
+    public static class ChangedFileModule extends AbstractModule {
+        @Override
+        protected void configure() {
+        }
+    }
+
+    public static class ClassActivity extends Activity {
+    }
+
+    public static class FileActivity extends Activity {
+    }
+
+    private WorkingOnContext context;
+    private ClassResolutionCache classes;
+    private WorkingOnConfig configWithoutFile;
+
+    @Before
+    public void setUp() {
+        context = new WorkingOnContext();
+        classes = new ClassResolutionCache();
+        configWithoutFile = new WorkingOnConfig.Builder()
+                .task("Class")
+                .extraModuleClass(ClassModule.class)
+                .build();
+        context.setConfig(configWithoutFile);
+        context.setActivity(ClassActivity.class);
+    }
+
+    @Test
+    public void fileIsAppliedOnTopOfTheConfiguration() {
+        ConfigFileApplier.apply(context, file(FileModule.class, FileActivity.class, "File"), classes);
+
+        assertEquals(Collections.singletonList("File"), tasks());
+        assertEquals(Arrays.<Class<? extends Module>>asList(ClassModule.class, FileModule.class), extraModuleClasses());
+        assertSame(FileActivity.class, context.getActivity());
+        assertSame(configWithoutFile, context.configWithoutFile);
+        assertSame(context.configFromFile, context.getConfig());
+    }
+
+    @Test
+    public void changedFileReplacesThePreviousFile() {
+        ConfigFileApplier.apply(context, file(FileModule.class, FileActivity.class, "File"), classes);
+        ConfigFileApplier.apply(context, file(ChangedFileModule.class, null, "Changed"), classes);
+
+        assertEquals(Collections.singletonList("Changed"), tasks());
+        assertEquals(Arrays.<Class<? extends Module>>asList(ClassModule.class, ChangedFileModule.class), extraModuleClasses());
+        assertSame(ClassActivity.class, context.getActivity());
+    }
+
+    @Test
+    public void removedFileRestoresTheConfiguration() {
+        ConfigFileApplier.apply(context, file(FileModule.class, FileActivity.class, "File"), classes);
+        ConfigFileApplier.apply(context, null, classes);
+
+        assertSame(configWithoutFile, context.getConfig());
+        assertSame(ClassActivity.class, context.getActivity());
+        assertNull(context.configFromFile);
+        assertNull(context.loadedConfigFile);
+    }
+
+    @Test
+    public void changesOfTheConfigurationClassAreKeptWithoutTheModulesOfThePreviousFile() {
+        ConfigFileApplier.apply(context, file(FileModule.class, FileActivity.class, "File"), classes);
+        // the configuration class adds to the configuration when it's loaded again
+        context.setConfig(new WorkingOnConfig.Builder(context.getConfig()).task("Added").build());
+        context.setActivity(ClassActivity.class);
+
+        ConfigFileApplier.apply(context, file(ChangedFileModule.class, null, "Changed"), classes);
+
+        assertEquals(Collections.singletonList("Changed"), tasks());
+        assertEquals(Arrays.<Class<? extends Module>>asList(ClassModule.class, ChangedFileModule.class), extraModuleClasses());
+        assertSame(ClassActivity.class, context.getActivity());
+
+        ConfigFileApplier.apply(context, null, classes);
+
+        assertEquals(Collections.<Class<? extends Module>>singletonList(ClassModule.class), extraModuleClasses());
+    }
+
+    @Test
+    public void moduleTheConfigurationAlsoHasIsKept() {
+        ConfigFileApplier.apply(context, file(ClassModule.class, null, "File"), classes);
+        ConfigFileApplier.apply(context, null, classes);
+
+        assertEquals(Collections.<Class<? extends Module>>singletonList(ClassModule.class), extraModuleClasses());
+    }
+
+    private static ConfigFile file(Class<? extends Module> moduleClass, Class<? extends Activity> activity, String task) {
+        return new ConfigFile(Collections.singletonList(task), Collections.singletonList(moduleClass.getName()),
+                activity == null ? null : activity.getName(), null);
+    }
+
+    private List<String> tasks() {
+        return new ArrayList<>(context.getConfig().getTasks());
+    }
+
+    private List<Class<? extends Module>> extraModuleClasses() {
+        return new ArrayList<>(context.getConfig().getExtraModuleClasses());
+    }
+}
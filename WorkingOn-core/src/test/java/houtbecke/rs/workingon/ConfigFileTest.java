@@ -0,0 +1,106 @@
+package houtbecke.rs.workingon;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.Collections;
+
+import houtbecke.rs.workingon.test.WorkingOnRobolectricTestRunner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+
+@RunWith(WorkingOnRobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class ConfigFileTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void propertiesAreSplitOnCommas() throws IOException {
+        ConfigFile file = ConfigFile.parseProperties(new StringReader(
+                "tasks=Login, MockServer,,\n"
+                        + "extraModuleClasses=com.example.dev.DevModule\n"
+                        + "activity= com.example.LoginActivity \n"
+                        + "fragment=\n"));
+
+        assertEquals(Arrays.asList("Login", "MockServer"), file.getTasks());
+        assertEquals(Collections.singletonList("com.example.dev.DevModule"), file.getExtraModuleClassNames());
+        assertEquals("com.example.LoginActivity", file.getActivityClassName());
+        assertNull(file.getFragmentClassName());
+    }
+
+    @Test
+    public void missingPropertiesConfigureNothing() throws IOException {
+        ConfigFile file = ConfigFile.parseProperties(new StringReader(""));
+
+        assertEquals(Collections.emptyList(), file.getTasks());
+        assertEquals(Collections.emptyList(), file.getExtraModuleClassNames());
+        assertNull(file.getActivityClassName());
+        assertNull(file.getFragmentClassName());
+    }
+
+    @Test
+    public void jsonTakesArraysAndCommaSeparatedStrings() throws IOException {
+        ConfigFile file = ConfigFile.parseJson("{\"tasks\": [\"Login\", \" \", \"MockServer\"],"
+                + " \"extraModuleClasses\": \"com.example.dev.DevModule, com.example.dev.MockModule\","
+                + " \"fragment\": \"com.example.LoginFragment\"}");
+
+        assertEquals(Arrays.asList("Login", "MockServer"), file.getTasks());
+        assertEquals(Arrays.asList("com.example.dev.DevModule", "com.example.dev.MockModule"), file.getExtraModuleClassNames());
+        assertNull(file.getActivityClassName());
+        assertEquals("com.example.LoginFragment", file.getFragmentClassName());
+    }
+
+    @Test(expected = IOException.class)
+    public void invalidJsonCantBeParsed() throws IOException {
+        ConfigFile.parseJson("{\"tasks\": [");
+    }
+
+    @Test
+    public void filesAreEqualIfTheyConfigureTheSame() throws IOException {
+        ConfigFile properties = ConfigFile.parseProperties(new StringReader("tasks=Login,MockServer\nactivity=com.example.LoginActivity"));
+        ConfigFile json = ConfigFile.parseJson("{\"tasks\": [\"Login\", \"MockServer\"], \"activity\": \"com.example.LoginActivity\"}");
+        ConfigFile otherOrder = ConfigFile.parseProperties(new StringReader("tasks=MockServer,Login\nactivity=com.example.LoginActivity"));
+
+        assertEquals(properties, json);
+        assertEquals(properties.hashCode(), json.hashCode());
+        assertNotEquals(properties, otherOrder);
+    }
+
+    @Test
+    public void fileIsParsedByItsExtension() throws IOException {
+        File properties = write("workingon.properties", "tasks=Login");
+        File json = write("workingon.json", "{\"tasks\": \"Login\"}");
+
+        assertEquals(Collections.singletonList("Login"), ConfigFile.read(properties).getTasks());
+        assertEquals(Collections.singletonList("Login"), ConfigFile.read(json).getTasks());
+    }
+
+    @Test
+    public void missingFileIsNull() throws IOException {
+        assertNull(ConfigFile.read(new File(folder.getRoot(), "workingon.properties")));
+    }
+
+    private File write(String name, String content) throws IOException {
+        File file = folder.newFile(name);
+        OutputStream out = new FileOutputStream(file);
+        try {
+            out.write(content.getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+}
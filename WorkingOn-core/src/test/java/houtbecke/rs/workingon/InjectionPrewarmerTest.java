@@ -0,0 +1,108 @@
+package houtbecke.rs.workingon;
+
+import android.content.Context;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.Inject;
+import com.google.inject.Injector;
+import com.google.inject.Key;
+import com.google.inject.Provider;
+import com.google.inject.Scope;
+import com.google.inject.ScopeAnnotation;
+import com.google.inject.Singleton;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+
+public class InjectionPrewarmerTest {
+
+    private static final AtomicInteger created = new AtomicInteger();
+
+    @Target(ElementType.TYPE)
+    @Retention(RetentionPolicy.RUNTIME)
+    @ScopeAnnotation
+    public @interface ThreadBound {
+    }
+
+    @ThreadBound
+    public static class ThreadBoundService {
+    }
+
+    @Singleton
+    public static class PlainSingleton {
+        @Inject
+        PlainSingleton() {
+            created.incrementAndGet();
+        }
+    }
+
+    @Singleton
+    public static class ContextDependentSingleton {
+        @Inject
+        ContextDependentSingleton(Provider<Context> context) {
+            created.incrementAndGet();
+        }
+    }
+
+    @Singleton
+    public static class ScopedDependencySingleton {
+        @Inject
+        ScopedDependencySingleton(ThreadBoundService service) {
+            created.incrementAndGet();
+        }
+    }
+
+    public static class Screen {
+        @Inject PlainSingleton plain;
+    }
+
+    public static class ContextScreen {
+        @Inject ContextDependentSingleton context;
+        @Inject ScopedDependencySingleton scoped;
+    }
+
+    private Injector injector;
+
+    @Before
+    public void setUp() {
+        created.set(0);
+        injector = Guice.createInjector(new AbstractModule() {
+            @Override
+            protected void configure() {
+                bindScope(ThreadBound.class, new Scope() {
+                    @Override
+                    public <T> Provider<T> scope(Key<T> key, Provider<T> unscoped) {
+                        return unscoped;
+                    }
+                });
+                bind(Context.class).toProvider(new Provider<Context>() {
+                    @Override
+                    public Context get() {
+                        throw new IllegalStateException("no Context off the main thread");
+                    }
+                });
+            }
+        });
+    }
+
+    @Test
+    public void singletonIsCreated() {
+        assertEquals(1, InjectionPrewarmer.prewarm(injector, Screen.class));
+        assertEquals(1, created.get());
+    }
+
+    @Test
+    public void singletonsDependingOnContextOrOtherScopeAreLeftAlone() {
+        assertEquals(0, InjectionPrewarmer.prewarm(injector, ContextScreen.class));
+        assertEquals(0, created.get());
+    }
+}
@@ -0,0 +1,154 @@
+package houtbecke.rs.workingon;
+
+import android.app.Application;
+import android.content.Context;
+import android.content.pm.ApplicationInfo;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.Key;
+import com.google.inject.name.Names;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import houtbecke.rs.workingon.test.WorkingOnRobolectricTestRunner;
+import roboguice.RoboGuice;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(WorkingOnRobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class InjectorCacheTest {
+
+    private static final Key<String> GREETING = Key.get(String.class, Names.named("greeting"));
+
+    public static class TestApplication extends Application {
+        TestApplication(Context base) {
+            attachBaseContext(base);
+        }
+
+        // Robolectric only knows the package of the Application it created
+
+        @Override
+        public String getPackageName() {
+            return RuntimeEnvironment.application.getPackageName();
+        }
+
+        @Override
+        public ApplicationInfo getApplicationInfo() {
+            return RuntimeEnvironment.application.getApplicationInfo();
+        }
+    }
+
+    public static class GreetingModule extends AbstractModule {
+        @Override
+        protected void configure() {
+            bind(String.class).annotatedWith(Names.named("greeting")).toInstance("hello");
+        }
+    }
+
+    @Before
+    public void setUp() {
+        RoboGuice.setUseAnnotationDatabases(false); // the tests are not processed by RoboBlender
+        WorkingOn.setInjectorCacheSize(2);
+    }
+
+    @After
+    public void tearDown() {
+        WorkingOn.setInjectorCacheSize(0);
+        WorkingOn.setIncrementalReload(false);
+    }
+
+    @Test
+    public void robolectricKeepsInjectorsTheWayTheCacheChangesThem() {
+        assertTrue(RoboGuiceInjectors.isSupported());
+    }
+
+    @Test
+    public void injectorIsReusedAndReboundForAnotherApplication() {
+        assertReusedAndRebound();
+    }
+
+    @Test
+    public void incrementalInjectorIsReusedAndReboundForAnotherApplication() {
+        WorkingOn.setIncrementalReload(true);
+        assertReusedAndRebound();
+    }
+
+    private static void assertReusedAndRebound() {
+        Application first = newApplication();
+        Injector built = load(first);
+        Application second = newApplication();
+        Injector reused = load(second);
+
+        assertSame(built, reused);
+        assertEquals(1, WorkingOn.getInjectorCache().getHits());
+        assertEquals(1, WorkingOn.getInjectorCache().getMisses());
+        assertSame(second, reused.getInstance(Application.class));
+        assertSame(second, RoboGuice.getInjector(second).getInstance(Application.class));
+        assertEquals("hello", RoboGuice.getInjector(second).getInstance(GREETING));
+    }
+
+    @Test
+    public void injectorIsBuiltAgainForAnotherConfiguration() {
+        Injector built = load(newApplication());
+        WorkingOn.setConfig(new WorkingOnConfig.Builder().task("Other").build());
+        Injector other = load(newApplication());
+
+        assertNotSame(built, other);
+        assertEquals(0, WorkingOn.getInjectorCache().getHits());
+        assertEquals(2, WorkingOn.getInjectorCache().getMisses());
+    }
+
+    @Test
+    public void leastRecentlyUsedInjectorIsDropped() {
+        InjectorCache cache = new InjectorCache(2);
+        Application application = newApplication();
+        Injector a = Guice.createInjector();
+        Injector b = Guice.createInjector();
+        Injector c = Guice.createInjector();
+        cache.put("a", a, new ApplicationBinding(application));
+        cache.put("b", b, new ApplicationBinding(application));
+        assertSame(a, cache.get("a", application));
+        cache.put("c", c, new ApplicationBinding(application));
+
+        assertEquals(2, cache.size());
+        assertNull(cache.get("b", application));
+        assertSame(a, cache.get("a", application));
+        assertSame(c, cache.get("c", application));
+    }
+
+    @Test
+    public void getRebindsTheApplication() {
+        InjectorCache cache = new InjectorCache(1);
+        Application first = newApplication();
+        Application second = newApplication();
+        ApplicationBinding binding = new ApplicationBinding(first);
+        cache.put("a", Guice.createInjector(), binding);
+
+        cache.get("a", second);
+
+        assertSame(second, binding.get());
+    }
+
+    private static Application newApplication() {
+        return new TestApplication(RuntimeEnvironment.application.getBaseContext());
+    }
+
+    private static Injector load(Application application) {
+        WorkingOn.prepareApplicationConfigurationRestart();
+        WorkingOn.configuration(null, application, false, GreetingModule.class);
+        WorkingOn.loadConfigurationIfNeeded();
+        return WorkingOn.currentContext().getInjector();
+    }
+}
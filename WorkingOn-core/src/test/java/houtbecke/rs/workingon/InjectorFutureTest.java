@@ -0,0 +1,216 @@
+package houtbecke.rs.workingon;
+
+import android.app.Application;
+import android.content.Context;
+import android.content.pm.ApplicationInfo;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Injector;
+import com.google.inject.Key;
+import com.google.inject.name.Names;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import houtbecke.rs.workingon.test.WorkingOnRobolectricTestRunner;
+import roboguice.RoboGuice;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+@RunWith(WorkingOnRobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class InjectorFutureTest {
+
+    private static final Key<String> GREETING = Key.get(String.class, Names.named("greeting"));
+
+    private static CountDownLatch configuring;
+    private static CountDownLatch mayConfigure;
+
+    public static class StartedApplication extends Application implements WorkingOnApplication {
+        int started;
+
+        StartedApplication(Context base) {
+            attachBaseContext(base);
+        }
+
+        // Robolectric only knows the package of the Application it created
+
+        @Override
+        public String getPackageName() {
+            return RuntimeEnvironment.application.getPackageName();
+        }
+
+        @Override
+        public ApplicationInfo getApplicationInfo() {
+            return RuntimeEnvironment.application.getApplicationInfo();
+        }
+
+        @Override
+        public void startWorkingOn() {
+            started++;
+        }
+
+        @Override
+        public void stopWorkingOn() {
+        }
+    }
+
+    public static class GreetingModule extends AbstractModule {
+        @Override
+        protected void configure() {
+            bind(String.class).annotatedWith(Names.named("greeting")).toInstance("hello");
+        }
+    }
+
+    public static class SlowGreetingModule extends GreetingModule {
+        @Override
+        protected void configure() {
+            configuring.countDown();
+            try {
+                mayConfigure.await();
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            super.configure();
+        }
+    }
+
+    private static class RecordingCallback implements WorkingOnCallback {
+        final List<Object> results = new ArrayList<>();
+
+        @Override
+        public void onWorkingOnStarted(Injector injector) {
+            results.add(injector);
+        }
+
+        @Override
+        public void onWorkingOnFailed(Throwable error) {
+            results.add(error);
+        }
+    }
+
+    private StartedApplication application;
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() {
+        RoboGuice.setUseAnnotationDatabases(false); // the tests are not processed by RoboBlender
+        application = new StartedApplication(RuntimeEnvironment.application.getBaseContext());
+        executor = Executors.newSingleThreadExecutor();
+        configuring = new CountDownLatch(1);
+        mayConfigure = new CountDownLatch(1);
+    }
+
+    @After
+    public void tearDown() {
+        mayConfigure.countDown();
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void awaitInjectorOnMainThreadStartsApplication() {
+        WorkingOn.configuration(null, application, false, GreetingModule.class);
+        InjectorFuture load = WorkingOn.loadConfigurationAsync(executor);
+
+        Injector injector = load.awaitInjector();
+
+        assertEquals("hello", injector.getInstance(GREETING));
+        assertSame(injector, WorkingOn.currentContext().getInjector());
+        assertEquals(1, application.started);
+        ShadowLooper.idleMainLooper();
+        assertEquals(1, application.started);
+    }
+
+    @Test
+    public void callbacksAreNotifiedAfterStartAndWhenAddedLater() {
+        RecordingCallback before = new RecordingCallback();
+        WorkingOn.configuration(null, application, false, GreetingModule.class);
+        InjectorFuture load = WorkingOn.loadConfigurationAsync(executor, before);
+
+        Injector injector = load.awaitInjector();
+        assertEquals(1, application.started);
+        assertEquals(1, before.results.size());
+        assertSame(injector, before.results.get(0));
+
+        RecordingCallback after = new RecordingCallback();
+        load.addCallback(after);
+        assertEquals(1, after.results.size());
+        assertSame(injector, after.results.get(0));
+    }
+
+    @Test
+    public void failureIsReportedToAwaitAndCallbacks() {
+        RecordingCallback callback = new RecordingCallback();
+        WorkingOn.configuration(null, null, false, GreetingModule.class);
+        InjectorFuture load = WorkingOn.loadConfigurationAsync(executor, callback);
+
+        try {
+            load.awaitInjector();
+            fail("there is no Application to load for");
+        } catch (RuntimeException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("No Application"));
+            assertEquals(1, callback.results.size());
+            assertSame(e, callback.results.get(0));
+        }
+    }
+
+    @Test
+    public void startedLoadIsReturnedUntilRestart() {
+        WorkingOn.configuration(null, application, false, GreetingModule.class);
+        InjectorFuture load = WorkingOn.loadConfigurationAsync(executor);
+        assertSame(load, WorkingOn.loadConfigurationAsync(executor));
+        load.awaitInjector();
+
+        WorkingOn.prepareApplicationConfigurationRestart();
+        InjectorFuture reload = WorkingOn.loadConfigurationAsync(executor);
+
+        assertNotSame(load, reload);
+        assertEquals("hello", reload.awaitInjector().getInstance(GREETING));
+    }
+
+    @Test
+    public void contextCanBeConfiguredAndRestartedWhileLoading() throws Exception {
+        WorkingOn.configuration(null, application, false, SlowGreetingModule.class);
+        InjectorFuture load = WorkingOn.loadConfigurationAsync(executor);
+        assertTrue(configuring.await(5, TimeUnit.SECONDS));
+
+        // these only take the lock of the context briefly, so they don't wait for the load
+        final WorkingOnContext context = WorkingOn.currentContext();
+        Thread restart = new Thread(() -> {
+            WorkingOn.bindContext(context);
+            WorkingOn.configuration(null, application, false, GreetingModule.class);
+            WorkingOn.prepareApplicationConfigurationRestart();
+        });
+        restart.start();
+        restart.join(5000);
+        assertFalse("restarting waited for the load", restart.isAlive());
+        assertFalse(load.isDone());
+
+        mayConfigure.countDown();
+        assertEquals("hello", load.awaitInjector().getInstance(GREETING));
+        assertNull("a load that was restarted is not published", WorkingOn.currentContext().getInjector());
+        assertEquals(0, application.started);
+
+        Injector reloaded = WorkingOn.awaitInjector();
+        assertSame(reloaded, WorkingOn.currentContext().getInjector());
+        assertEquals(1, application.started);
+    }
+}
@@ -0,0 +1,71 @@
+package houtbecke.rs.workingon;
+
+import android.app.Activity;
+
+import org.junit.Test;
+import org.junit.experimental.ParallelComputer;
+import org.junit.runner.JUnitCore;
+import org.junit.runner.Result;
+import org.junit.runner.RunWith;
+import org.junit.runner.notification.Failure;
+import org.robolectric.annotation.Config;
+
+import java.util.Collections;
+
+import houtbecke.rs.workingon.test.WorkingOnRobolectricTestRunner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ParallelTestContextsTest {
+
+    public static class FirstActivity extends Activity {
+    }
+
+    public static class SecondActivity extends Activity {
+    }
+
+    private static void assertConfiguredFrom(Class<?> testClass, String task, Class<? extends Activity> activity) throws InterruptedException {
+        for (int k = 0; k < 50; k++) {
+            WorkingOnContext context = WorkingOn.currentContext();
+            assertSame(testClass, context.getTestClass());
+            assertEquals(Collections.singleton(task), WorkingOn.getConfig().getTasks());
+            assertSame(activity, context.getActivity());
+            assertNull(WorkingOn.activity);
+            Thread.sleep(2);
+        }
+    }
+
+    @RunWith(WorkingOnRobolectricTestRunner.class)
+    @Config(constants = BuildConfig.class, sdk = 21)
+    @WorkingOnTasks("First")
+    @WorkingOnActivity(FirstActivity.class)
+    public static class First {
+        @Test
+        public void configuredFromFirst() throws InterruptedException {
+            assertConfiguredFrom(First.class, "First", FirstActivity.class);
+        }
+    }
+
+    @RunWith(WorkingOnRobolectricTestRunner.class)
+    @Config(constants = BuildConfig.class, sdk = 21)
+    @WorkingOnTasks("Second")
+    @WorkingOnActivity(SecondActivity.class)
+    public static class Second {
+        @Test
+        public void configuredFromSecond() throws InterruptedException {
+            assertConfiguredFrom(Second.class, "Second", SecondActivity.class);
+        }
+    }
+
+    @Test
+    public void testClassesRunInParallelWithTheirOwnContext() {
+        Result result = JUnitCore.runClasses(ParallelComputer.classes(), First.class, Second.class);
+        for (Failure failure: result.getFailures())
+            throw new AssertionError(failure.getTestHeader() + ": " + failure.getMessage(), failure.getException());
+        assertEquals(2, result.getRunCount());
+        assertTrue(result.wasSuccessful());
+    }
+}
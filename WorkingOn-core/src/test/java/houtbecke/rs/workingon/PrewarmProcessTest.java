@@ -0,0 +1,88 @@
+package houtbecke.rs.workingon;
+
+import android.app.Activity;
+import android.app.Application;
+import android.content.Context;
+
+import com.google.inject.AbstractModule;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import houtbecke.rs.workingon.test.WorkingOnRobolectricTestRunner;
+import roboguice.RoboGuice;
+
+import static org.junit.Assert.assertEquals;
+
+@RunWith(WorkingOnRobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class PrewarmProcessTest {
+
+    public static class EmptyModule extends AbstractModule {
+        @Override
+        protected void configure() {
+        }
+    }
+
+    private final AtomicInteger prewarmed = new AtomicInteger();
+
+    @Before
+    public void setUp() {
+        RoboGuice.setUseAnnotationDatabases(false); // the tests are not processed by RoboBlender
+        WorkingOn.setPrewarmExecutor(command -> prewarmed.incrementAndGet());
+    }
+
+    @After
+    public void tearDown() {
+        WorkingOn.setPrewarmExecutor(null);
+    }
+
+    @Test
+    public void mainProcessIsPrewarmed() {
+        load(RuntimeEnvironment.application.getPackageName());
+
+        assertEquals(1, prewarmed.get());
+    }
+
+    @Test
+    public void otherProcessOfTheApplicationIsNotPrewarmed() {
+        load(RuntimeEnvironment.application.getPackageName() + ":sync");
+
+        assertEquals(0, prewarmed.get());
+    }
+
+    @Test
+    public void unknownProcessIsPrewarmed() {
+        load(null);
+
+        assertEquals(1, prewarmed.get());
+    }
+
+    @Test
+    public void nameThatIsNotAProcessOfTheApplicationIsUnknown() {
+        load("/usr/lib/jvm/bin/java");
+
+        assertEquals(1, prewarmed.get());
+    }
+
+    private static void load(final String processName) {
+        Application application = RuntimeEnvironment.application;
+        ProcessProfiles profiles = new ProcessProfiles.Builder()
+                .resolver(new ProcessNameResolver() {
+                    @Override
+                    public String getProcessName(Context context) {
+                        return processName;
+                    }
+                })
+                .build();
+        WorkingOn.configuration(null, application, false, profiles, EmptyModule.class);
+        WorkingOn.currentContext().setActivity(Activity.class);
+        WorkingOn.loadConfigurationIfNeeded();
+    }
+}
@@ -0,0 +1,96 @@
+package houtbecke.rs.workingon;
+
+import android.content.Context;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Module;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import houtbecke.rs.workingon.test.WorkingOnRobolectricTestRunner;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertSame;
+
+@RunWith(WorkingOnRobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class ProcessProfilesTest {
+
+    public static class AppModule extends AbstractModule {
+        @Override
+        protected void configure() {
+        }
+    }
+
+    public static class SyncModule extends AbstractModule {
+        @Override
+        protected void configure() {
+        }
+    }
+
+    public static class PushModule extends AbstractModule {
+        @Override
+        protected void configure() {
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static final Class<? extends Module>[] DEFAULT_MODULE_CLASSES = new Class[] {AppModule.class, SyncModule.class, PushModule.class};
+
+    @Test
+    public void profileIsSelectedByTheFullName() {
+        ProcessProfiles profiles = profiles("com.example.remote");
+
+        assertArrayEquals(new Class<?>[] {PushModule.class}, moduleClasses(profiles));
+    }
+
+    @Test
+    public void profileStartingWithAColonIsRelativeToThePackageName() {
+        ProcessProfiles profiles = profiles(RuntimeEnvironment.application.getPackageName() + ":sync");
+
+        assertArrayEquals(new Class<?>[] {SyncModule.class}, moduleClasses(profiles));
+    }
+
+    @Test
+    public void processWithoutAProfileLoadsTheDefaultModuleClasses() {
+        ProcessProfiles profiles = profiles(RuntimeEnvironment.application.getPackageName());
+
+        assertSame(DEFAULT_MODULE_CLASSES, profiles.moduleClassesFor(RuntimeEnvironment.application, DEFAULT_MODULE_CLASSES));
+    }
+
+    @Test
+    public void unknownProcessLoadsTheDefaultModuleClasses() {
+        ProcessProfiles profiles = profiles(null);
+
+        assertSame(DEFAULT_MODULE_CLASSES, profiles.moduleClassesFor(RuntimeEnvironment.application, DEFAULT_MODULE_CLASSES));
+    }
+
+    @Test
+    public void profileIsACopy() {
+        ProcessProfiles profiles = profiles("com.example.remote");
+
+        moduleClasses(profiles)[0] = AppModule.class;
+
+        assertArrayEquals(new Class<?>[] {PushModule.class}, moduleClasses(profiles));
+    }
+
+    private static Class<? extends Module>[] moduleClasses(ProcessProfiles profiles) {
+        return profiles.moduleClassesFor(RuntimeEnvironment.application, DEFAULT_MODULE_CLASSES);
+    }
+
+    private static ProcessProfiles profiles(final String processName) {
+        return new ProcessProfiles.Builder()
+                .process(":sync", SyncModule.class)
+                .process("com.example.remote", PushModule.class)
+                .resolver(new ProcessNameResolver() {
+                    @Override
+                    public String getProcessName(Context context) {
+                        return processName;
+                    }
+                })
+                .build();
+    }
+}
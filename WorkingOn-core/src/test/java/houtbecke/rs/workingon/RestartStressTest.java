@@ -0,0 +1,110 @@
+package houtbecke.rs.workingon;
+
+import android.app.Application;
+import android.content.Context;
+import android.content.pm.ApplicationInfo;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Key;
+import com.google.inject.name.Names;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+
+import houtbecke.rs.workingon.test.WorkingOnRobolectricTestRunner;
+import roboguice.RoboGuice;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+@RunWith(WorkingOnRobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class RestartStressTest {
+
+    private static final int RESTARTS = 20;
+
+    public static class RestartedApplication extends Application {
+        RestartedApplication(Context base) {
+            attachBaseContext(base);
+        }
+
+        // Robolectric only knows the package of the Application it created
+
+        @Override
+        public String getPackageName() {
+            return RuntimeEnvironment.application.getPackageName();
+        }
+
+        @Override
+        public ApplicationInfo getApplicationInfo() {
+            return RuntimeEnvironment.application.getApplicationInfo();
+        }
+    }
+
+    public static class GreetingModule extends AbstractModule {
+        @Override
+        protected void configure() {
+            bind(String.class).annotatedWith(Names.named("greeting")).toInstance("hello");
+        }
+    }
+
+    @Before
+    public void setUp() {
+        RoboGuice.setUseAnnotationDatabases(false); // the tests are not processed by RoboBlender
+    }
+
+    @After
+    public void tearDown() {
+        WorkingOn.setIncrementalReload(false);
+        WorkingOn.setInjectorCacheSize(0);
+    }
+
+    @Test
+    public void restartsReleaseEarlierApplications() {
+        assertEarlierApplicationsReleased(0);
+    }
+
+    @Test
+    public void incrementalRestartsReleaseEarlierApplications() {
+        WorkingOn.setIncrementalReload(true);
+        assertEarlierApplicationsReleased(0);
+    }
+
+    @Test
+    public void cachedRestartsReleaseEarlierApplications() {
+        WorkingOn.setInjectorCacheSize(4);
+        // the cached injector keeps the Application it was built for, and is rebound to the others
+        assertEarlierApplicationsReleased(1);
+        assertEquals(RESTARTS - 1, WorkingOn.getInjectorCache().getHits());
+    }
+
+    /**
+     * @param kept The number of Applications of the first restarts that may stay reachable
+     */
+    private static void assertEarlierApplicationsReleased(int kept) {
+        List<WeakReference<Application>> applications = new ArrayList<>();
+        for (int k = 0; k < RESTARTS; k++) {
+            Application application = new RestartedApplication(RuntimeEnvironment.application.getBaseContext());
+            applications.add(new WeakReference<>(application));
+            WorkingOn.prepareApplicationConfigurationRestart();
+            WorkingOn.configuration(null, application, false, GreetingModule.class);
+            WorkingOn.loadConfigurationIfNeeded();
+            assertEquals("hello", RoboGuice.getInjector(application).getInstance(Key.get(String.class, Names.named("greeting"))));
+        }
+
+        for (int k = 0; k < 10 && applications.get(kept).get() != null; k++) {
+            System.gc();
+            System.runFinalization();
+        }
+        for (int k = kept; k < RESTARTS - 1; k++)
+            assertNull("the Application of restart " + k + " is still reachable", applications.get(k).get());
+    }
+}
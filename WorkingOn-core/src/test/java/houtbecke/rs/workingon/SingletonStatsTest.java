@@ -0,0 +1,103 @@
+package houtbecke.rs.workingon;
+
+import android.app.Application;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Injector;
+import com.google.inject.Singleton;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import houtbecke.rs.workingon.test.WorkingOnRobolectricTestRunner;
+import roboguice.RoboGuice;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(WorkingOnRobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class SingletonStatsTest {
+
+    @Singleton
+    public static class Eager {
+    }
+
+    @Singleton
+    public static class Lazy {
+    }
+
+    public static class SingletonsModule extends AbstractModule {
+        @Override
+        protected void configure() {
+            bind(Eager.class);
+            bind(Lazy.class);
+        }
+    }
+
+    @Before
+    public void setUp() {
+        RoboGuice.setUseAnnotationDatabases(false); // the tests are not processed by RoboBlender
+    }
+
+    @Test
+    public void singletonsCreatedAfterTheInjectorAreCountedAsLazy() {
+        WorkingOn.setStagePolicy(new StagePolicy.Builder().lazy(Lazy.class).build());
+        Injector injector = load();
+
+        SingletonStats stats = WorkingOn.getSingletonStats();
+        assertNotNull(stats);
+        int eager = stats.getEagerCount();
+        assertTrue(eager > 0);
+        assertEquals(0, stats.getLazyCount());
+
+        injector.getInstance(Eager.class);
+        injector.getInstance(Lazy.class);
+        injector.getInstance(Lazy.class);
+
+        assertEquals(eager, stats.getEagerCount());
+        assertEquals(1, stats.getLazyCount());
+    }
+
+    @Test
+    public void statsAreOnlyKeptWithAStagePolicy() {
+        load();
+
+        assertNull(WorkingOn.getSingletonStats());
+    }
+
+    @Test
+    public void settingsOfOneContextDoNotLeakIntoAnother() {
+        WorkingOnContext context = WorkingOn.currentContext();
+        StagePolicy policy = new StagePolicy.Builder().lazy(Lazy.class).build();
+        WorkingOn.setStagePolicy(policy);
+        WorkingOn.setIncrementalReload(true);
+        WorkingOn.setPersistResolutionPlan(true);
+
+        WorkingOn.bindContext(new WorkingOnContext());
+        try {
+            WorkingOnContext other = WorkingOn.currentContext();
+            assertNull(other.stagePolicy);
+            assertEquals(false, other.incrementalReload);
+            assertEquals(false, other.persistResolutionPlan);
+        } finally {
+            WorkingOn.bindContext(context);
+        }
+        assertSame(policy, context.stagePolicy);
+        assertTrue(context.incrementalReload);
+        assertTrue(context.persistResolutionPlan);
+    }
+
+    private static Injector load() {
+        Application application = RuntimeEnvironment.application;
+        WorkingOn.configuration(null, application, false, SingletonsModule.class);
+        WorkingOn.loadConfigurationIfNeeded();
+        return WorkingOn.currentContext().getInjector();
+    }
+}
@@ -0,0 +1,87 @@
+package houtbecke.rs.workingon;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Key;
+import com.google.inject.Stage;
+import com.google.inject.name.Names;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class StagePolicyTest {
+
+    public static class LazyModule extends AbstractModule {
+        @Override
+        protected void configure() {
+        }
+    }
+
+    @Test
+    public void firstTaskWithAStageWins() {
+        StagePolicy policy = new StagePolicy.Builder()
+                .task("Second", Stage.DEVELOPMENT)
+                .task("Third", Stage.TOOL)
+                .build();
+
+        assertEquals(Stage.DEVELOPMENT, policy.stageFor(Arrays.asList("First", "Second", "Third"), false));
+        assertEquals(Stage.TOOL, policy.stageFor(Arrays.asList("Third", "Second"), false));
+    }
+
+    @Test
+    public void buildTypeDecidesWithoutATaskStage() {
+        StagePolicy policy = new StagePolicy.Builder()
+                .task("Other", Stage.TOOL)
+                .debug(Stage.DEVELOPMENT)
+                .build();
+
+        assertEquals(Stage.DEVELOPMENT, policy.stageFor(Collections.singletonList("First"), true));
+        assertEquals(Stage.PRODUCTION, policy.stageFor(Collections.<String>emptyList(), false));
+    }
+
+    @Test
+    public void keysAndModulesCanBeMarkedLazy() {
+        Key<String> named = Key.get(String.class, Names.named("lazy"));
+        StagePolicy policy = new StagePolicy.Builder()
+                .lazy(named)
+                .lazy(Integer.class)
+                .lazyModule(LazyModule.class)
+                .build();
+
+        assertTrue(policy.hasLazySingletons());
+        assertTrue(policy.isLazy(named));
+        assertTrue(policy.isLazy(Key.get(Integer.class)));
+        assertFalse(policy.isLazy(Key.get(String.class)));
+        assertTrue(policy.isLazy(LazyModule.class.getName()));
+        assertFalse(policy.isLazy(StagePolicyTest.class.getName()));
+        assertFalse(new StagePolicy.Builder().build().hasLazySingletons());
+    }
+
+    @Test
+    public void policiesThatDecideTheSameDescribeTheSame() {
+        StagePolicy policy = new StagePolicy.Builder()
+                .debug(Stage.DEVELOPMENT)
+                .lazy(Integer.class)
+                .lazy(String.class)
+                .lazyModule(LazyModule.class)
+                .build();
+        StagePolicy same = new StagePolicy.Builder()
+                .lazyModule(LazyModule.class)
+                .lazy(String.class)
+                .lazy(Integer.class)
+                .debug(Stage.DEVELOPMENT)
+                .build();
+        StagePolicy other = new StagePolicy.Builder()
+                .lazy(Integer.class)
+                .build();
+
+        assertEquals(policy.toString(), same.toString());
+        assertNotEquals(policy.toString(), other.toString());
+    }
+}
@@ -0,0 +1,149 @@
+package houtbecke.rs.workingon;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Module;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import houtbecke.rs.workingon.test.WorkingOnRobolectricTestRunner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(WorkingOnRobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+@SuppressWarnings("deprecation")
+public class WorkingOnConfigTest {
+
+    private static final int THREADS = 8;
+    private static final int TASKS_PER_THREAD = 50;
+
+    public static class ExtraModule extends AbstractModule {
+        @Override
+        protected void configure() {
+        }
+    }
+
+    @Test
+    public void builderStartsFromAnExistingConfiguration() {
+        Module module = new ExtraModule();
+        WorkingOnConfig config = new WorkingOnConfig.Builder()
+                .task("First")
+                .task("Second")
+                .extraModule(module)
+                .extraModuleClass(ExtraModule.class)
+                .build();
+
+        WorkingOnConfig changed = new WorkingOnConfig.Builder(config).tasks(Collections.singletonList("Other")).build();
+
+        assertEquals(Arrays.asList("First", "Second"), new ArrayList<>(config.getTasks()));
+        assertEquals(Collections.singletonList("Other"), new ArrayList<>(changed.getTasks()));
+        assertEquals(Collections.singleton(module), changed.getExtraModules());
+        assertEquals(Collections.<Class<? extends Module>>singleton(ExtraModule.class), changed.getExtraModuleClasses());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void configurationCanNotBeChanged() {
+        new WorkingOnConfig.Builder().task("First").build().getTasks().add("Second");
+    }
+
+    @Test
+    public void viewsWriteThroughToTheConfigurationOfTheContext() {
+        WorkingOnConfig before = WorkingOn.getConfig();
+
+        assertTrue(WorkingOn.tasks.add("First"));
+        assertFalse(WorkingOn.tasks.add("First"));
+        WorkingOn.tasks.addAll(Arrays.asList("Second", "Third"));
+        WorkingOn.extraModuleClasses.add(ExtraModule.class);
+
+        WorkingOnConfig after = WorkingOn.getConfig();
+        assertNotSame(before, after);
+        assertEquals(Arrays.asList("First", "Second", "Third"), new ArrayList<>(after.getTasks()));
+        assertEquals(Collections.<Class<? extends Module>>singleton(ExtraModule.class), after.getExtraModuleClasses());
+        assertTrue(before.getTasks().isEmpty());
+
+        assertTrue(WorkingOn.tasks.remove("Second"));
+        assertFalse(WorkingOn.tasks.remove("Second"));
+        assertEquals(Arrays.asList("First", "Third"), new ArrayList<>(WorkingOn.getConfig().getTasks()));
+
+        for (Iterator<String> it = WorkingOn.tasks.iterator(); it.hasNext();)
+            if (it.next().equals("First"))
+                it.remove();
+        assertEquals(Collections.singletonList("Third"), new ArrayList<>(WorkingOn.getConfig().getTasks()));
+
+        WorkingOn.tasks.clear();
+        assertTrue(WorkingOn.getConfig().getTasks().isEmpty());
+        assertEquals(after.getExtraModuleClasses(), WorkingOn.getConfig().getExtraModuleClasses());
+    }
+
+    @Test
+    public void viewsReadTheConfigurationSetAsAWhole() {
+        WorkingOnConfig config = new WorkingOnConfig.Builder().task("Set").build();
+        WorkingOn.setConfig(config);
+
+        assertSame(config, WorkingOn.getConfig());
+        assertEquals(1, WorkingOn.tasks.size());
+        assertTrue(WorkingOn.tasks.contains("Set"));
+        assertTrue(WorkingOn.extraModules.isEmpty());
+    }
+
+    @Test
+    public void viewsBelongToTheContextOfTheThread() throws InterruptedException {
+        WorkingOn.tasks.add("Mine");
+        final List<Boolean> seen = new ArrayList<>();
+        Thread other = new Thread(() -> {
+            WorkingOn.bindContext(new WorkingOnContext());
+            seen.add(WorkingOn.tasks.contains("Mine"));
+        });
+        other.start();
+        other.join(5000);
+
+        assertEquals(Collections.singletonList(false), seen);
+        assertTrue(WorkingOn.tasks.contains("Mine"));
+    }
+
+    @Test
+    public void concurrentChangesAreNotLost() throws InterruptedException {
+        final WorkingOnContext context = WorkingOn.currentContext();
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            final int thread = t;
+            Thread adder = new Thread(() -> {
+                WorkingOn.bindContext(context);
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < TASKS_PER_THREAD; i++) {
+                    WorkingOn.tasks.add("T" + thread + "-" + i);
+                    if (i % 2 == 1)
+                        WorkingOn.tasks.remove("T" + thread + "-" + (i - 1));
+                }
+            });
+            threads.add(adder);
+            adder.start();
+        }
+        start.countDown();
+        for (Thread thread: threads)
+            thread.join(10000);
+
+        assertEquals(THREADS * TASKS_PER_THREAD / 2, context.getConfig().getTasks().size());
+        for (int t = 0; t < THREADS; t++)
+            for (int i = 1; i < TASKS_PER_THREAD; i += 2)
+                assertTrue(context.getConfig().getTasks().contains("T" + t + "-" + i));
+    }
+}
@@ -0,0 +1,185 @@
+package houtbecke.rs.workingon.gradle;
+
+import com.android.build.api.transform.DirectoryInput;
+import com.android.build.api.transform.Format;
+import com.android.build.api.transform.JarInput;
+import com.android.build.api.transform.QualifiedContent;
+import com.android.build.api.transform.Status;
+import com.android.build.api.transform.Transform;
+import com.android.build.api.transform.TransformException;
+import com.android.build.api.transform.TransformInput;
+import com.android.build.api.transform.TransformInvocation;
+import com.android.build.api.transform.TransformOutputProvider;
+
+import org.gradle.api.Project;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ *
+ * Copies the classes of the application to the output of the transform, stripping the task modules from
+ * the copy for variants that are not debuggable when stripTaskModules is enabled.
+ *
+ * The classes javac wrote are never changed, so the compile task stays up to date and other tasks using
+ * its output see every module. Only the classes in directories are stripped, classes in jars are copied
+ * as they are and are not scanned for references to modules.
+ *
+ * A transform runs for every variant. When a variant is not stripped only the classes that changed are
+ * copied. Stripping depends on the references between all classes, so a variant that is stripped is
+ * copied and stripped as a whole.
+ *
+ * @see TaskModuleStripper
+ */
+final class StripTaskModulesTransform extends Transform {
+
+    private final Project project;
+    private final WorkingOnExtension extension;
+    private final Map<String, Boolean> debuggableVariants;
+
+    /**
+     * @param debuggableVariants The names of the variants of the application, and if they are debuggable
+     */
+    StripTaskModulesTransform(Project project, WorkingOnExtension extension, Map<String, Boolean> debuggableVariants) {
+        this.project = project;
+        this.extension = extension;
+        this.debuggableVariants = debuggableVariants;
+    }
+
+    @Override
+    public String getName() {
+        return "workingOnStripTaskModules";
+    }
+
+    @Override
+    public Set<QualifiedContent.ContentType> getInputTypes() {
+        return Collections.<QualifiedContent.ContentType>singleton(QualifiedContent.DefaultContentType.CLASSES);
+    }
+
+    @Override
+    public Set<? super QualifiedContent.Scope> getScopes() {
+        return Collections.singleton(QualifiedContent.Scope.PROJECT);
+    }
+
+    @Override
+    public boolean isIncremental() {
+        return true;
+    }
+
+    /**
+     * @return The settings the output depends on, a change of which makes the transform run as a whole
+     */
+    @Override
+    public Map<String, Object> getParameterInputs() {
+        Map<String, Object> inputs = new HashMap<>();
+        inputs.put("stripTaskModules", extension.isStripTaskModules());
+        inputs.put("keep", new ArrayList<>(extension.getKeep()));
+        return inputs;
+    }
+
+    @Override
+    public void transform(TransformInvocation invocation) throws TransformException, InterruptedException, IOException {
+        String variantName = invocation.getContext().getVariantName();
+        boolean strip = extension.isStripTaskModules() && Boolean.FALSE.equals(debuggableVariants.get(variantName));
+
+        // stripping depends on all classes, so only copying can be incremental
+        boolean incremental = invocation.isIncremental() && !strip;
+
+        TransformOutputProvider outputProvider = invocation.getOutputProvider();
+        if (!incremental)
+            outputProvider.deleteAll();
+        boolean listed = false;
+        Set<String> stripped = new TreeSet<>();
+        for (TransformInput input: invocation.getInputs()) {
+            for (JarInput jarInput: input.getJarInputs()) {
+                File jar = outputProvider.getContentLocation(jarInput.getName(), jarInput.getContentTypes(), jarInput.getScopes(), Format.JAR);
+                if (incremental && jarInput.getStatus() == Status.NOTCHANGED)
+                    continue;
+                if (incremental && jarInput.getStatus() == Status.REMOVED) {
+                    Files.deleteIfExists(jar.toPath());
+                    continue;
+                }
+                jar.getParentFile().mkdirs();
+                Files.copy(jarInput.getFile().toPath(), jar.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            for (DirectoryInput directoryInput: input.getDirectoryInputs()) {
+                File directory = outputProvider.getContentLocation(directoryInput.getName(), directoryInput.getContentTypes(), directoryInput.getScopes(), Format.DIRECTORY);
+                if (incremental) {
+                    copyChangedFiles(directoryInput.getFile().toPath(), directory.toPath(), directoryInput.getChangedFiles());
+                    continue;
+                }
+                copyDirectory(directoryInput.getFile().toPath(), directory.toPath());
+                if (!strip)
+                    continue;
+                TaskModuleStripper stripper = new TaskModuleStripper(directory, extension.getKeep());
+                if (stripper.hasModuleList()) {
+                    listed = true;
+                    stripped.addAll(stripper.strip());
+                }
+            }
+        }
+        if (!strip)
+            return;
+        if (!listed) {
+            project.getLogger().warn("WorkingOn: no list of modules found for " + variantName + ", add WorkingOn-compiler as annotation processor to strip task modules");
+            return;
+        }
+
+        File report = new File(project.getBuildDir(), "outputs/workingon/" + variantName + "/stripped-modules.txt");
+        report.getParentFile().mkdirs();
+        Files.write(report.toPath(), stripped, StandardCharsets.UTF_8);
+        project.getLogger().info("WorkingOn: stripped " + stripped.size() + " task modules from " + variantName);
+    }
+
+    private static void copyChangedFiles(Path from, Path to, Map<File, Status> changedFiles) throws IOException {
+        for (Map.Entry<File, Status> changed: changedFiles.entrySet()) {
+            Path file = changed.getKey().toPath();
+            Path target = to.resolve(from.relativize(file));
+            switch (changed.getValue()) {
+                case ADDED:
+                case CHANGED:
+                    if (Files.isRegularFile(file)) {
+                        Files.createDirectories(target.getParent());
+                        Files.copy(file, target, StandardCopyOption.REPLACE_EXISTING);
+                    }
+                    break;
+                case REMOVED:
+                    Files.deleteIfExists(target);
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    private static void copyDirectory(final Path from, final Path to) throws IOException {
+        if (!Files.isDirectory(from))
+            return;
+        Files.walkFileTree(from, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                Files.createDirectories(to.resolve(from.relativize(dir)));
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.copy(file, to.resolve(from.relativize(file)), StandardCopyOption.REPLACE_EXISTING);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+}
@@ -0,0 +1,252 @@
+package houtbecke.rs.workingon.gradle;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ *
+ * Removes the class files of task modules from a copy of the compiled classes of a variant in which
+ * they can never be resolved.
+ *
+ * When modules are loaded with the onlyOverrideWhenInDebugMode flag and the application is not
+ * debuggable, only the modules passed to loadModules are loaded. Modules in task subpackages and modules
+ * annotated with OverridesModule are never looked for. The modules and what they override are read from
+ * the lists WorkingOn-compiler writes next to its registries, the task subpackages are recognized by the
+ * same naming convention the tasks are resolved with:
+ *
+ * my.app.module.dev.Dev
+ * my.app.module.dev.MyModuleDev
+ * my.app.module.dev.MyModule
+ *
+ * A module that's still referenced from a class that's not stripped is kept, so modules used directly,
+ * for example the ones passed to loadModules, are never removed. The generated registry refers to every
+ * module, but only by name in the variants that are stripped.
+ *
+ */
+final class TaskModuleStripper {
+
+    static final String SERVICES = "META-INF/services/houtbecke.rs.workingon.ModuleFactories";
+    static final String MODULE_LIST_SUFFIX = ".modules";
+
+    private final File classesDir;
+    private final Set<String> keep;
+    private List<String> registries;
+
+    /**
+     * @param classesDir A copy of the directory the variant was compiled to, which is changed in place
+     * @param keep The binary names of modules that should never be stripped
+     */
+    TaskModuleStripper(File classesDir, Collection<String> keep) {
+        this.classesDir = classesDir;
+        this.keep = new HashSet<>(keep);
+    }
+
+    /**
+     * @return true if WorkingOn-compiler wrote its list of modules for these classes
+     */
+    boolean hasModuleList() throws IOException {
+        return !registries().isEmpty();
+    }
+
+    /**
+     * @return The internal names of the registries WorkingOn-compiler generated for these classes and
+     *         listed in META-INF/services, for which it wrote a list of modules
+     */
+    private List<String> registries() throws IOException {
+        if (registries != null)
+            return registries;
+        registries = new ArrayList<>();
+        File services = new File(classesDir, SERVICES);
+        if (!services.isFile())
+            return registries;
+        for (String line: Files.readAllLines(services.toPath(), StandardCharsets.UTF_8)) {
+            int comment = line.indexOf('#');
+            String registry = (comment == -1 ? line : line.substring(0, comment)).trim().replace('.', '/');
+            if (!registry.isEmpty() && new File(classesDir, registry + MODULE_LIST_SUFFIX).isFile())
+                registries.add(registry);
+        }
+        return registries;
+    }
+
+    /**
+     * Strips the task modules and removes the module lists.
+     *
+     * @return The binary names of the stripped modules
+     */
+    Set<String> strip() throws IOException {
+        Map<String, Boolean> modules = readModuleList();
+        Set<String> candidates = taskModules(modules);
+        candidates.removeAll(keep);
+
+        Map<String, List<File>> candidateFiles = new HashMap<>();
+        for (String candidate: candidates)
+            candidateFiles.put(candidate, classFilesOf(candidate));
+
+        List<File> remaining = new ArrayList<>();
+        collectClassFiles(classesDir, remaining);
+        for (List<File> files: candidateFiles.values())
+            remaining.removeAll(files);
+
+        // keep every candidate that a remaining class refers to, until no more candidates are kept
+        List<File> toScan = remaining;
+        while (!toScan.isEmpty() && !candidates.isEmpty()) {
+            List<File> kept = new ArrayList<>();
+            for (File file: toScan) {
+                if (isRegistry(file))
+                    continue;
+                byte[] bytes = Files.readAllBytes(file.toPath());
+                for (String candidate: new ArrayList<>(candidates)) {
+                    if (refersTo(bytes, candidate.replace('.', '/'))) {
+                        candidates.remove(candidate);
+                        kept.addAll(candidateFiles.get(candidate));
+                    }
+                }
+            }
+            toScan = kept;
+        }
+
+        for (String candidate: candidates)
+            for (File file: candidateFiles.get(candidate))
+                if (file.exists() && !file.delete())
+                    throw new IOException("Could not delete " + file);
+        for (String registry: registries())
+            Files.delete(new File(classesDir, registry + MODULE_LIST_SUFFIX).toPath());
+        return candidates;
+    }
+
+    /**
+     * @return The binary names of the modules, and if they're annotated with OverridesModule
+     */
+    private Map<String, Boolean> readModuleList() throws IOException {
+        Map<String, Boolean> modules = new TreeMap<>();
+        for (String registry: registries()) {
+            for (String line: Files.readAllLines(new File(classesDir, registry + MODULE_LIST_SUFFIX).toPath(), StandardCharsets.UTF_8)) {
+                if (line.isEmpty())
+                    continue;
+                int tab = line.indexOf('\t');
+                modules.put(tab == -1 ? line : line.substring(0, tab), tab != -1);
+            }
+        }
+        return modules;
+    }
+
+    /**
+     * A module named after its own package, like my.app.module.dev.Dev, is only a task module if the package
+     * also has modules replacing or overriding modules of the parent package, as my.app.network.Network next
+     * to my.app.AppModule can just as well be a base module.
+     *
+     * @param modules The binary names of the modules, and if they're annotated with OverridesModule
+     * @return The modules that are only loaded for a task or as an override
+     */
+    static Set<String> taskModules(Map<String, Boolean> modules) {
+        Set<String> taskModules = new TreeSet<>();
+        Set<String> taskPackages = new HashSet<>();
+        List<String> namedAfterPackage = new ArrayList<>();
+        for (Map.Entry<String, Boolean> entry: modules.entrySet()) {
+            String module = entry.getKey();
+            if (entry.getValue()) {
+                taskModules.add(module);
+                continue;
+            }
+            String packageName = packageOf(module);
+            int lastDot = packageName.lastIndexOf('.');
+            if (lastDot == -1)
+                continue;
+            String subPackageName = packageName.substring(lastDot + 1);
+            String parentPackageName = packageName.substring(0, lastDot);
+            String className = module.substring(module.lastIndexOf('$') > packageName.length() ? module.lastIndexOf('$') + 1 : packageName.length() + 1);
+
+            if (modules.containsKey(parentPackageName + "." + className)) { // my.app.module.dev.MyModule
+                taskModules.add(module);
+                taskPackages.add(packageName);
+            } else if (className.length() > subPackageName.length() && className.toLowerCase().endsWith(subPackageName)
+                    && modules.containsKey(parentPackageName + "." + className.substring(0, className.length() - subPackageName.length()))) { // my.app.module.dev.MyModuleDev
+                taskModules.add(module);
+                taskPackages.add(packageName);
+            } else if (className.toLowerCase().equals(subPackageName)) // my.app.module.dev.Dev
+                namedAfterPackage.add(module);
+        }
+        for (String module: namedAfterPackage)
+            if (taskPackages.contains(packageOf(module)))
+                taskModules.add(module);
+        return taskModules;
+    }
+
+    private static String packageOf(String binaryName) {
+        int lastDot = binaryName.lastIndexOf('.');
+        return lastDot == -1 ? "" : binaryName.substring(0, lastDot);
+    }
+
+    /**
+     * @return The class file of a module and the class files of the classes nested in it
+     */
+    private List<File> classFilesOf(String binaryName) {
+        String internalName = binaryName.replace('.', '/');
+        File classFile = new File(classesDir, internalName + ".class");
+        String nestedPrefix = classFile.getName().substring(0, classFile.getName().length() - ".class".length()) + "$";
+
+        List<File> files = new ArrayList<>();
+        if (classFile.isFile())
+            files.add(classFile);
+        File[] siblings = classFile.getParentFile().listFiles();
+        if (siblings != null)
+            for (File sibling: siblings)
+                if (sibling.getName().startsWith(nestedPrefix) && sibling.getName().endsWith(".class"))
+                    files.add(sibling);
+        return files;
+    }
+
+    private static void collectClassFiles(File dir, List<File> files) {
+        File[] children = dir.listFiles();
+        if (children == null)
+            return;
+        for (File child: children) {
+            if (child.isDirectory())
+                collectClassFiles(child, files);
+            else if (child.getName().endsWith(".class"))
+                files.add(child);
+        }
+    }
+
+    private boolean isRegistry(File file) throws IOException {
+        String path = classesDir.toPath().relativize(file.toPath()).toString().replace(File.separatorChar, '/');
+        for (String registry: registries())
+            if (path.equals(registry + ".class") || path.startsWith(registry + "$"))
+                return true;
+        return false;
+    }
+
+    /**
+     * Looks for the internal name of a class in the constant pool of a class file, as a class constant
+     * or in a descriptor. A name that's only a prefix of a longer class name doesn't count, a nested
+     * class does.
+     */
+    static boolean refersTo(byte[] classFile, String internalName) {
+        byte[] name = internalName.getBytes(StandardCharsets.UTF_8);
+        outer:
+        for (int i = 0; i <= classFile.length - name.length; i++) {
+            for (int j = 0; j < name.length; j++)
+                if (classFile[i + j] != name[j])
+                    continue outer;
+            int next = i + name.length;
+            if (next == classFile.length || !isNamePart(classFile[next]))
+                return true;
+        }
+        return false;
+    }
+
+    private static boolean isNamePart(byte b) {
+        return b >= 'a' && b <= 'z' || b >= 'A' && b <= 'Z' || b >= '0' && b <= '9' || b == '_';
+    }
+}
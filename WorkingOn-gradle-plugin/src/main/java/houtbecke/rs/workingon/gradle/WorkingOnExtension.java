@@ -0,0 +1,49 @@
+package houtbecke.rs.workingon.gradle;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ *
+ * The workingOn block of the WorkingOn Gradle plugin.
+ *
+ *     workingOn {
+ *         stripTaskModules = true
+ *         keep 'my.app.module.dev.MyModuleDev'
+ *     }
+ *
+ */
+public class WorkingOnExtension {
+
+    private boolean stripTaskModules;
+    private final Set<String> keep = new LinkedHashSet<>();
+
+    /**
+     * @return true if task modules are stripped from variants that are not debuggable, false by default
+     */
+    public boolean isStripTaskModules() {
+        return stripTaskModules;
+    }
+
+    /**
+     * Only strip task modules if the application loads its modules with the onlyOverrideWhenInDebugMode
+     * flag, otherwise tasks are still resolved in builds that are not debuggable.
+     */
+    public void setStripTaskModules(boolean stripTaskModules) {
+        this.stripTaskModules = stripTaskModules;
+    }
+
+    public Set<String> getKeep() {
+        return Collections.unmodifiableSet(keep);
+    }
+
+    /**
+     * Never strip these modules, for example because they're loaded by name.
+     *
+     * @param moduleClassNames The binary names of the module classes to keep
+     */
+    public void keep(String... moduleClassNames) {
+        Collections.addAll(keep, moduleClassNames);
+    }
+}
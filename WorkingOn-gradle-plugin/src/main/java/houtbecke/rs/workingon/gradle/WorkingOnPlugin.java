@@ -0,0 +1,91 @@
+package houtbecke.rs.workingon.gradle;
+
+import com.android.build.gradle.AppExtension;
+import com.android.build.gradle.api.ApplicationVariant;
+import com.android.build.gradle.internal.dsl.BuildType;
+
+import org.gradle.api.Action;
+import org.gradle.api.GradleException;
+import org.gradle.api.Plugin;
+import org.gradle.api.Project;
+import org.gradle.api.Task;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ *
+ * Strips the task modules from the variants of an application that are not debuggable, as they can
+ * never be resolved there when modules are loaded with the onlyOverrideWhenInDebugMode flag. Stripping
+ * is enabled with stripTaskModules in the workingOn block.
+ *
+ * Requires WorkingOn-compiler as annotation processor, which lists the modules of the application. The
+ * classes are stripped in a transform, so the output of javac is left as it is. The stripped modules of
+ * a variant are listed in build/outputs/workingon/[variant]/stripped-modules.txt.
+ *
+ * @see TaskModuleStripper
+ */
+public class WorkingOnPlugin implements Plugin<Project> {
+
+    static final String EXTENSION = "workingOn";
+
+    /**
+     * The generated registries are only created through META-INF/services, and still create the stripped
+     * modules by name, which ProGuard would warn about
+     */
+    static final String PROGUARD_RULES = "-keep class * implements houtbecke.rs.workingon.ModuleFactories { <init>(); }\n"
+            + "-dontwarn **.WorkingOnModuleFactories";
+
+    @Override
+    public void apply(final Project project) {
+        final WorkingOnExtension extension = project.getExtensions().create(EXTENSION, WorkingOnExtension.class);
+        final File rulesFile = new File(project.getBuildDir(), "intermediates/workingon/proguard-rules.pro");
+
+        project.getPlugins().withId("com.android.application", new Action<Plugin>() {
+            @Override
+            public void execute(Plugin plugin) {
+                AppExtension android = project.getExtensions().getByType(AppExtension.class);
+                final Map<String, Boolean> debuggableVariants = new ConcurrentHashMap<>();
+                android.registerTransform(new StripTaskModulesTransform(project, extension, debuggableVariants));
+                android.getBuildTypes().all(new Action<BuildType>() {
+                    @Override
+                    public void execute(BuildType buildType) {
+                        buildType.proguardFile(rulesFile);
+                    }
+                });
+                android.getApplicationVariants().all(new Action<ApplicationVariant>() {
+                    @Override
+                    public void execute(ApplicationVariant variant) {
+                        debuggableVariants.put(variant.getName(), variant.getBuildType().isDebuggable());
+                        configure(variant, rulesFile);
+                    }
+                });
+            }
+        });
+    }
+
+    private void configure(final ApplicationVariant variant, final File rulesFile) {
+        variant.getJavaCompile().doLast(new Action<Task>() {
+            @Override
+            public void execute(Task task) {
+                try {
+                    writeProguardRules(rulesFile);
+                } catch (IOException e) {
+                    throw new GradleException("WorkingOn: could not write the ProGuard rules for " + variant.getName(), e);
+                }
+            }
+        });
+    }
+
+    private static void writeProguardRules(File rulesFile) throws IOException {
+        if (rulesFile.isFile())
+            return;
+        rulesFile.getParentFile().mkdirs();
+        Files.write(rulesFile.toPath(), Collections.singleton(PROGUARD_RULES), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,134 @@
+package houtbecke.rs.workingon.gradle;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TaskModuleStripperTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static Set<String> set(String... values) {
+        return new HashSet<>(Arrays.asList(values));
+    }
+
+    private static Map<String, Boolean> modules(String... names) {
+        Map<String, Boolean> modules = new LinkedHashMap<>();
+        for (String name: names)
+            modules.put(name, false);
+        return modules;
+    }
+
+    private static byte[] bytes(String content) {
+        return content.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void taskModulesByNamingConvention() {
+        Map<String, Boolean> modules = modules(
+                "my.app.module.MyModule",
+                "my.app.module.dev.Dev",
+                "my.app.module.dev.MyModuleDev",
+                "my.app.module.dev.MyModule",
+                "my.app.module.dev.Helper",
+                "my.app.other.Dev");
+
+        assertEquals(set("my.app.module.dev.Dev", "my.app.module.dev.MyModuleDev", "my.app.module.dev.MyModule"),
+                TaskModuleStripper.taskModules(modules));
+    }
+
+    @Test
+    public void moduleNamedAfterItsPackageIsOnlyATaskModuleInATaskPackage() {
+        Map<String, Boolean> modules = modules(
+                "my.app.AppModule",
+                "my.app.network.Network",
+                "my.app.module.MyModule",
+                "my.app.module.dev.Dev",
+                "my.app.module.dev.MyModuleDev");
+
+        assertEquals(set("my.app.module.dev.Dev", "my.app.module.dev.MyModuleDev"), TaskModuleStripper.taskModules(modules));
+    }
+
+    @Test
+    public void overridingModulesAreTaskModules() {
+        Map<String, Boolean> modules = modules("my.app.module.MyModule");
+        modules.put("my.app.module.MyModuleOverride", true);
+
+        assertEquals(set("my.app.module.MyModuleOverride"), TaskModuleStripper.taskModules(modules));
+    }
+
+    @Test
+    public void nestedTaskModules() {
+        Map<String, Boolean> modules = modules("my.app.module.MyModule", "my.app.module.dev.Modules$MyModule");
+
+        assertEquals(set("my.app.module.dev.Modules$MyModule"), TaskModuleStripper.taskModules(modules));
+    }
+
+    @Test
+    public void refersToWholeNames() {
+        byte[] classFile = bytes("\u0001Lmy/app/module/dev/MyModule;\u0001my/app/Other");
+
+        assertTrue(TaskModuleStripper.refersTo(classFile, "my/app/module/dev/MyModule"));
+        assertTrue(TaskModuleStripper.refersTo(classFile, "my/app/Other"));
+        assertFalse(TaskModuleStripper.refersTo(classFile, "my/app/module/dev/My"));
+        assertFalse(TaskModuleStripper.refersTo(classFile, "my/app/module/dev/MyModuleDev"));
+    }
+
+    @Test
+    public void refersToNestedClasses() {
+        assertTrue(TaskModuleStripper.refersTo(bytes("my/app/module/dev/MyModule$1"), "my/app/module/dev/MyModule"));
+    }
+
+    private void write(File classesDir, String path, String content) throws IOException {
+        File file = new File(classesDir, path);
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), bytes(content));
+    }
+
+    @Test
+    public void keepsReferencedModules() throws IOException {
+        File classesDir = folder.newFolder("classes");
+        write(classesDir, TaskModuleStripper.SERVICES, "my.app.WorkingOnModuleFactories\n");
+        write(classesDir, "my/app/WorkingOnModuleFactories" + TaskModuleStripper.MODULE_LIST_SUFFIX,
+                "my.app.module.MyModule\nmy.app.module.dev.Dev\nmy.app.module.dev.MyModuleDev\nmy.app.module.dev.MyModule\n");
+        write(classesDir, "my/app/WorkingOnModuleFactories.class", "my/app/module/dev/Dev my/app/module/dev/MyModuleDev my/app/module/dev/MyModule");
+        write(classesDir, "my/app/MyApplication.class", "my/app/module/MyModule my/app/module/dev/MyModuleDev");
+        write(classesDir, "my/app/module/MyModule.class", "");
+        write(classesDir, "my/app/module/dev/Dev.class", "");
+        write(classesDir, "my/app/module/dev/Dev$1.class", "");
+        write(classesDir, "my/app/module/dev/MyModuleDev.class", "");
+        write(classesDir, "my/app/module/dev/MyModule.class", "");
+
+        TaskModuleStripper stripper = new TaskModuleStripper(classesDir, Collections.singleton("my.app.module.dev.MyModule"));
+        assertTrue(stripper.hasModuleList());
+        assertEquals(set("my.app.module.dev.Dev"), stripper.strip());
+
+        assertFalse(new File(classesDir, "my/app/module/dev/Dev.class").exists());
+        assertFalse(new File(classesDir, "my/app/module/dev/Dev$1.class").exists());
+        assertTrue(new File(classesDir, "my/app/module/dev/MyModuleDev.class").exists()); // referenced by MyApplication
+        assertTrue(new File(classesDir, "my/app/module/dev/MyModule.class").exists()); // kept
+        assertTrue(new File(classesDir, "my/app/WorkingOnModuleFactories.class").exists());
+        assertFalse(new File(classesDir, "my/app/WorkingOnModuleFactories" + TaskModuleStripper.MODULE_LIST_SUFFIX).exists());
+    }
+
+    @Test
+    public void withoutModuleList() throws IOException {
+        assertFalse(new TaskModuleStripper(folder.newFolder("empty"), Collections.<String>emptySet()).hasModuleList());
+    }
+}
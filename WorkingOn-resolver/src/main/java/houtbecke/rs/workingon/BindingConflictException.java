@@ -0,0 +1,38 @@
+package houtbecke.rs.workingon;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ *
+ * Thrown before an injector is built when some keys are bound by more than one of its modules.
+ *
+ */
+public class BindingConflictException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Not serialized, as keys and binding sources aren't serializable; the message lists the conflicts
+     */
+    private final transient List<BindingConflicts.Conflict> conflicts;
+
+    public BindingConflictException(List<BindingConflicts.Conflict> conflicts) {
+        super(message(conflicts));
+        this.conflicts = Collections.unmodifiableList(conflicts);
+    }
+
+    /**
+     * @return The conflicts, or an empty list if this exception was deserialized
+     */
+    public List<BindingConflicts.Conflict> getConflicts() {
+        return conflicts == null ? Collections.<BindingConflicts.Conflict>emptyList() : conflicts;
+    }
+
+    private static String message(List<BindingConflicts.Conflict> conflicts) {
+        StringBuilder sb = new StringBuilder(conflicts.size() + " keys are bound more than once:");
+        for (BindingConflicts.Conflict conflict: conflicts)
+            sb.append('\n').append(conflict);
+        return sb.toString();
+    }
+}
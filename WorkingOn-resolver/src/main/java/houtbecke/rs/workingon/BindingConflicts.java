@@ -0,0 +1,257 @@
+package houtbecke.rs.workingon;
+
+import com.google.inject.Binding;
+import com.google.inject.Injector;
+import com.google.inject.Key;
+import com.google.inject.Module;
+import com.google.inject.Stage;
+import com.google.inject.spi.DefaultElementVisitor;
+import com.google.inject.spi.Element;
+import com.google.inject.spi.ElementSource;
+import com.google.inject.spi.Elements;
+import com.google.inject.spi.PrivateElements;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ *
+ * Finds keys that are bound by more than one of the modules an injector would be built from, without
+ * building the injector.
+ *
+ * The elements of every module are recorded with the Guice SPI, which is much cheaper than creating the
+ * injector and failing on the double bindings. Bindings that are exactly the same, as created by
+ * multibinders, are not a conflict, the same as in Guice. Recording the elements calls the configure
+ * method of every module once more.
+ *
+ * @see ModuleResolver#checkConflicts(Iterable, Collection, Collection)
+ */
+public final class BindingConflicts {
+
+    /**
+     * A module binding a key that another module binds too.
+     */
+    public static class Contribution {
+        private final String moduleClassName;
+        private final String task;
+        private final Object source;
+
+        Contribution(String moduleClassName, String task, Object source) {
+            this.moduleClassName = moduleClassName;
+            this.task = task;
+            this.source = source;
+        }
+
+        /**
+         * @return The class of the module that declared the binding, or null for a just-in-time binding of a parent injector
+         */
+        public String getModuleClassName() {
+            return moduleClassName;
+        }
+
+        /**
+         * @return The task the module was loaded for, or null if it was not loaded for a task
+         */
+        public String getTask() {
+            return task;
+        }
+
+        /**
+         * @return Where the binding was declared, as reported by Guice
+         */
+        public Object getSource() {
+            return source;
+        }
+
+        @Override
+        public String toString() {
+            return (moduleClassName == null ? "just-in-time binding" : moduleClassName) + (task == null ? "" : " (task " + task + ")") + " at " + source;
+        }
+    }
+
+    /**
+     * A key bound by more than one module.
+     */
+    public static class Conflict {
+        private final Key<?> key;
+        private final List<Contribution> contributions;
+
+        Conflict(Key<?> key, List<Contribution> contributions) {
+            this.key = key;
+            this.contributions = Collections.unmodifiableList(contributions);
+        }
+
+        public Key<?> getKey() {
+            return key;
+        }
+
+        /**
+         * @return The bindings of the key, in the order of the modules
+         */
+        public List<Contribution> getContributions() {
+            return contributions;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder(key.toString()).append(" is bound by:");
+            for (Contribution contribution: contributions)
+                sb.append("\n  ").append(contribution);
+            return sb.toString();
+        }
+    }
+
+    private BindingConflicts() {
+    }
+
+    /**
+     * @param tasks The tasks the modules were resolved for, to tell which task introduced a binding
+     * @param modules The modules as they would be passed to the injector
+     * @return The keys bound by more than one module, in the order they were first bound
+     */
+    public static List<Conflict> check(Iterable<String> tasks, Collection<Module> modules) {
+        return check(tasks, modules, null);
+    }
+
+    /**
+     * Finds the keys bound by more than one module of a child injector, or bound by the modules and by the
+     * parent injector or one of its ancestors, as a child injector can't bind a key its parent binds. A
+     * key the parent bound just in time counts as bound by the parent.
+     *
+     * @param tasks The tasks the modules were resolved for, to tell which task introduced a binding
+     * @param modules The modules as they would be passed to the child injector
+     * @param parent The injector the child injector would be created on, or null to only check the modules
+     * @return The conflicting keys, in the order they were first bound by the modules, with the binding of the parent first
+     */
+    public static List<Conflict> check(Iterable<String> tasks, Collection<Module> modules, Injector parent) {
+        Set<String> moduleClassNames = new HashSet<>();
+        for (Module module: modules) {
+            moduleClassNames.add(module.getClass().getName());
+            if (module instanceof OverrideChain) {
+                moduleClassNames.add(((OverrideChain) module).getModule().getClass().getName());
+                for (Module overridingModule: ((OverrideChain) module).getOverridingModules())
+                    moduleClassNames.add(overridingModule.getClass().getName());
+            }
+        }
+
+        final Map<Key<?>, List<Object>> bindingsByKey = new LinkedHashMap<>();
+        final Map<Key<?>, List<Contribution>> contributionsByKey = new LinkedHashMap<>();
+        for (Module module: modules) {
+            for (Element element: Elements.getElements(Stage.TOOL, module)) {
+                List<Key<?>> keys = element.acceptVisitor(new DefaultElementVisitor<List<Key<?>>>() {
+                    @Override
+                    protected List<Key<?>> visitOther(Element element) {
+                        return Collections.emptyList();
+                    }
+
+                    @Override
+                    public <T> List<Key<?>> visit(Binding<T> binding) {
+                        return Collections.<Key<?>>singletonList(binding.getKey());
+                    }
+
+                    @Override
+                    public List<Key<?>> visit(PrivateElements privateElements) {
+                        return new ArrayList<Key<?>>(privateElements.getExposedKeys());
+                    }
+                });
+                for (Key<?> key: keys) {
+                    List<Object> bindings = bindingsByKey.get(key);
+                    if (bindings == null) {
+                        bindings = new ArrayList<>(1);
+                        bindingsByKey.put(key, bindings);
+                        contributionsByKey.put(key, new ArrayList<Contribution>(1));
+                    }
+                    Object binding = element instanceof Binding ? element : null;
+                    if (binding != null && bindings.contains(binding))
+                        continue; // exactly the same binding, Guice allows this
+                    bindings.add(binding);
+                    String moduleClassName = declaringModule(element, moduleClassNames, module);
+                    contributionsByKey.get(key).add(new Contribution(moduleClassName, taskOf(moduleClassName, tasks), element.getSource()));
+                }
+            }
+        }
+
+        for (Injector injector = parent; injector != null; injector = injector.getParent()) {
+            Map<Key<?>, Binding<?>> parentBindings = injector.getAllBindings();
+            for (Map.Entry<Key<?>, List<Contribution>> entry: contributionsByKey.entrySet()) {
+                Binding<?> binding = parentBindings.get(entry.getKey());
+                if (binding != null) {
+                    String moduleClassName = parentModule(binding);
+                    entry.getValue().add(0, new Contribution(moduleClassName, moduleClassName == null ? null : taskOf(moduleClassName, tasks), binding.getSource()));
+                }
+            }
+        }
+
+        List<Conflict> conflicts = new ArrayList<>();
+        for (Map.Entry<Key<?>, List<Contribution>> entry: contributionsByKey.entrySet())
+            if (entry.getValue().size() > 1)
+                conflicts.add(new Conflict(entry.getKey(), entry.getValue()));
+        return conflicts;
+    }
+
+    /**
+     * @throws BindingConflictException If any key is bound by more than one module
+     * @see #check(Iterable, Collection)
+     */
+    public static void verify(Iterable<String> tasks, Collection<Module> modules) {
+        verify(tasks, modules, null);
+    }
+
+    /**
+     * @throws BindingConflictException If any key is bound by more than one module, or by a module and the parent injector
+     * @see #check(Iterable, Collection, Injector)
+     */
+    public static void verify(Iterable<String> tasks, Collection<Module> modules, Injector parent) {
+        List<Conflict> conflicts = check(tasks, modules, parent);
+        if (!conflicts.isEmpty())
+            throw new BindingConflictException(conflicts);
+    }
+
+    /**
+     * @return The innermost module that declared a binding of a parent injector, or null if it was bound just in time
+     */
+    private static String parentModule(Binding<?> binding) {
+        if (!(binding.getSource() instanceof ElementSource))
+            return null;
+        ElementSource source = (ElementSource) binding.getSource();
+        while (source.getOriginalElementSource() != null)
+            source = source.getOriginalElementSource();
+        List<String> moduleClassNames = source.getModuleClassNames();
+        return moduleClassNames.isEmpty() ? null : moduleClassNames.get(0);
+    }
+
+    /**
+     * @return The innermost of the modules that declared the element, from the element source it was recorded
+     *         with before it was overridden
+     */
+    private static String declaringModule(Element element, Set<String> moduleClassNames, Module module) {
+        if (element.getSource() instanceof ElementSource) {
+            ElementSource source = (ElementSource) element.getSource();
+            while (source.getOriginalElementSource() != null)
+                source = source.getOriginalElementSource();
+            for (String moduleClassName: source.getModuleClassNames())
+                if (moduleClassNames.contains(moduleClassName))
+                    return moduleClassName;
+        }
+        return module instanceof OverrideChain ? ((OverrideChain) module).getModule().getClass().getName() : module.getClass().getName();
+    }
+
+    /**
+     * @return The task whose subpackage the module is in, or null if it's not in the subpackage of a task
+     */
+    private static String taskOf(String moduleClassName, Iterable<String> tasks) {
+        int lastDot = moduleClassName.lastIndexOf('.');
+        String packageName = lastDot == -1 ? "" : moduleClassName.substring(0, lastDot);
+        String subPackageName = packageName.substring(packageName.lastIndexOf('.') + 1);
+        for (String task: tasks)
+            if (task.toLowerCase().equals(subPackageName))
+                return task;
+        return null;
+    }
+}
@@ -0,0 +1,290 @@
+package houtbecke.rs.workingon;
+
+import com.google.inject.Binding;
+import com.google.inject.Injector;
+import com.google.inject.Key;
+import com.google.inject.Module;
+import com.google.inject.spi.ElementSource;
+import com.google.inject.spi.ProvisionListener;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ *
+ * Counts how often every binding is provisioned and how long it takes, with the module that contributed
+ * the binding.
+ *
+ * Set it with WorkingOn.setBindingProfiler or ModuleResolver.setBindingProfiler, after which a listener is
+ * installed in every root injector that is built. Child injectors inherit the listener of their parent, and
+ * the modules they're built from are added to it. The time of a binding includes the time of provisioning
+ * the bindings it depends on.
+ *
+ * Statistics are kept by key and contributing module, so the provisions of a key in injectors built one
+ * after another are added up until clear is called, as long as the same module contributes it.
+ *
+ */
+public class BindingProfiler {
+
+    /**
+     * What the module that contributed a binding was loaded as.
+     */
+    public enum Role {
+        /**
+         * A module passed to loadModules or an extra module
+         */
+        BASE,
+        /**
+         * A module that was only loaded for a task, replacing a module or for the task itself
+         */
+        TASK,
+        /**
+         * A module overriding another module
+         */
+        OVERRIDE
+    }
+
+    public static class BindingStats {
+        private final Key<?> key;
+        private final String moduleClassName;
+        private final Role role;
+        private final AtomicInteger count = new AtomicInteger();
+        private final AtomicLong totalNanos = new AtomicLong();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        BindingStats(Key<?> key, String moduleClassName, Role role) {
+            this.key = key;
+            this.moduleClassName = moduleClassName;
+            this.role = role;
+        }
+
+        void record(long nanos) {
+            count.incrementAndGet();
+            totalNanos.addAndGet(nanos);
+            long max = maxNanos.get();
+            while (nanos > max && !maxNanos.compareAndSet(max, nanos))
+                max = maxNanos.get();
+        }
+
+        public Key<?> getKey() {
+            return key;
+        }
+
+        /**
+         * @return The class of the module that contributed the binding, or null for just-in-time bindings
+         *         and bindings from modules WorkingOn did not load
+         */
+        public String getModuleClassName() {
+            return moduleClassName;
+        }
+
+        /**
+         * @return What the contributing module was loaded as, or null if getModuleClassName is null
+         */
+        public Role getRole() {
+            return role;
+        }
+
+        public int getCount() {
+            return count.get();
+        }
+
+        public long getTotalNanos() {
+            return totalNanos.get();
+        }
+
+        public long getMaxNanos() {
+            return maxNanos.get();
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s %d x %.3f ms (max %.3f ms) from %s %s", key, getCount(), getTotalNanos() / 1000000.0,
+                    getMaxNanos() / 1000000.0, role, moduleClassName);
+        }
+    }
+
+    /**
+     * What a binding is attributed to: its key, the module that contributed it and what that module was loaded as.
+     */
+    private static final class Attribution {
+        private final Key<?> key;
+        private final String moduleClassName;
+        private final Role role;
+
+        Attribution(Key<?> key, String moduleClassName, Role role) {
+            this.key = key;
+            this.moduleClassName = moduleClassName;
+            this.role = role;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Attribution))
+                return false;
+            Attribution other = (Attribution) o;
+            return key.equals(other.key) && (moduleClassName == null ? other.moduleClassName == null : moduleClassName.equals(other.moduleClassName))
+                    && role == other.role;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * key.hashCode() + (moduleClassName == null ? 0 : moduleClassName.hashCode())) + (role == null ? 0 : role.hashCode());
+        }
+    }
+
+    /**
+     * The listener installed in a root injector, which knows what the modules of that injector and its
+     * child injectors were loaded as.
+     */
+    final class InjectorListener implements ProvisionListener {
+
+        private final Map<String, Role> roles = new ConcurrentHashMap<>();
+
+        @Override
+        public <T> void onProvision(ProvisionInvocation<T> provision) {
+            long start = System.nanoTime();
+            provision.provision();
+            long nanos = System.nanoTime() - start;
+
+            Binding<T> binding = provision.getBinding();
+            String moduleClassName = contributingModule(binding);
+            Attribution attribution = new Attribution(binding.getKey(), moduleClassName, moduleClassName == null ? null : roles.get(moduleClassName));
+            BindingStats bindingStats = stats.get(attribution);
+            if (bindingStats == null) {
+                bindingStats = new BindingStats(attribution.key, attribution.moduleClassName, attribution.role);
+                BindingStats existing = stats.putIfAbsent(attribution, bindingStats);
+                if (existing != null)
+                    bindingStats = existing;
+            }
+            bindingStats.record(nanos);
+            lastProvisioned.put(binding.getKey(), bindingStats);
+        }
+
+        /**
+         * Remembers what the modules an injector is built from were resolved as.
+         *
+         * @param resolver The resolver the modules were resolved by
+         * @param modules The modules the injector is built from
+         */
+        void addModules(ModuleResolver resolver, Collection<Module> modules) {
+            for (Module module: modules) {
+                if (module instanceof OverrideChain) {
+                    OverrideChain chain = (OverrideChain) module;
+                    roles.put(chain.getModule().getClass().getName(), roleOf(resolver, chain.getModule()));
+                    for (Module overridingModule: chain.getOverridingModules())
+                        roles.put(overridingModule.getClass().getName(), Role.OVERRIDE);
+                } else
+                    roles.put(module.getClass().getName(), roleOf(resolver, module));
+            }
+        }
+
+        /**
+         * @return The innermost module WorkingOn loaded that declared the binding, from the element source the
+         *         binding was recorded with before it was overridden
+         */
+        private String contributingModule(Binding<?> binding) {
+            if (!(binding.getSource() instanceof ElementSource))
+                return null;
+            ElementSource source = (ElementSource) binding.getSource();
+            while (source.getOriginalElementSource() != null)
+                source = source.getOriginalElementSource();
+            for (String moduleClassName: source.getModuleClassNames())
+                if (roles.containsKey(moduleClassName))
+                    return moduleClassName;
+            return null;
+        }
+    }
+
+    private final ConcurrentHashMap<Attribution, BindingStats> stats = new ConcurrentHashMap<>();
+    private final Map<Key<?>, BindingStats> lastProvisioned = new ConcurrentHashMap<>();
+    private final Map<Injector, InjectorListener> listeners = Collections.synchronizedMap(new WeakHashMap<Injector, InjectorListener>());
+
+    /**
+     * @return A new listener to install in a root injector built from the modules
+     */
+    InjectorListener newListener(ModuleResolver resolver, Collection<Module> modules) {
+        InjectorListener listener = new InjectorListener();
+        listener.addModules(resolver, modules);
+        return listener;
+    }
+
+    /**
+     * @return The listener an injector was built with or inherited, or null if it was not profiled
+     */
+    InjectorListener listenerOf(Injector injector) {
+        return listeners.get(injector);
+    }
+
+    /**
+     * Remembers the listener an injector was built with or inherited, for its child injectors.
+     */
+    void built(Injector injector, InjectorListener listener) {
+        listeners.put(injector, listener);
+    }
+
+    private static Role roleOf(ModuleResolver resolver, Module module) {
+        return resolver.isTaskModule(module) ? Role.TASK : Role.BASE;
+    }
+
+    /**
+     * @return The statistics of a binding, from the module that contributed it when it was provisioned last,
+     *         or null if it was never provisioned
+     */
+    public BindingStats get(Key<?> key) {
+        return lastProvisioned.get(key);
+    }
+
+    /**
+     * @return The statistics of all provisioned bindings, the most time spent first
+     */
+    public List<BindingStats> getStats() {
+        List<BindingStats> all = new ArrayList<>(stats.values());
+        Collections.sort(all, new Comparator<BindingStats>() {
+            @Override
+            public int compare(BindingStats a, BindingStats b) {
+                long difference = b.getTotalNanos() - a.getTotalNanos();
+                return difference < 0 ? -1 : difference > 0 ? 1 : 0;
+            }
+        });
+        return all;
+    }
+
+    /**
+     * @return The statistics of the provisioned bindings contributed by modules loaded as role, the most time spent first
+     */
+    public List<BindingStats> getStats(Role role) {
+        List<BindingStats> withRole = new ArrayList<>();
+        for (BindingStats bindingStats: getStats())
+            if (bindingStats.getRole() == role)
+                withRole.add(bindingStats);
+        return withRole;
+    }
+
+    /**
+     * Forgets the statistics, but keeps what the modules of the profiled injectors were loaded as.
+     */
+    public void clear() {
+        stats.clear();
+        lastProvisioned.clear();
+    }
+
+    /**
+     * @return A line for every provisioned binding, the most time spent first
+     */
+    public String dump() {
+        StringBuilder sb = new StringBuilder("WorkingOn binding provisions:\n");
+        for (BindingStats bindingStats: getStats())
+            sb.append(String.format("%-8s %6d x %10.3f ms max %8.3f ms  %s  (%s)%n", bindingStats.getRole(), bindingStats.getCount(),
+                    bindingStats.getTotalNanos() / 1000000.0, bindingStats.getMaxNanos() / 1000000.0, bindingStats.getKey(), bindingStats.getModuleClassName()));
+        return sb.toString();
+    }
+}
@@ -0,0 +1,23 @@
+package houtbecke.rs.workingon;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ *
+ * This annotation indicates that the bindings of this Module only depend on the debug flag passed to its
+ * constructor, so WorkingOn can record them once and replay the recording in every injector built after.
+ *
+ * The instances bound with toInstance or toProvider are then shared by all those injectors, as the
+ * module is configured only once. Recordings with provider methods, private modules, multibinders,
+ * provider lookups or requestInjection depend on the injector they're in, as do instances and providers
+ * with injectable members, which every injector would inject again, so these modules are configured every
+ * time as usual.
+ *
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface CacheableModule {
+}
@@ -0,0 +1,93 @@
+package houtbecke.rs.workingon;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ *
+ * Remembers the result of looking up classes by name, both when they are found and when they are not.
+ *
+ * WorkingOn probes a lot of class names that usually don't exist when looking for task modules.
+ * Each failed Class.forName throws a ClassNotFoundException, so this cache makes sure every name
+ * is only looked up once until it's cleared.
+ *
+ */
+public class ClassResolutionCache {
+
+    private final ConcurrentMap<String, Resolution> classes = new ConcurrentHashMap<>();
+    private final AtomicInteger hits = new AtomicInteger();
+    private final AtomicInteger misses = new AtomicInteger();
+
+    /**
+     * The result of looking up one name, resolved by the first thread asking for it while the others
+     * wait for it. This works like ConcurrentHashMap.computeIfAbsent, which needs API level 24.
+     */
+    private class Resolution {
+        private final String name;
+        private boolean resolved;
+        private Class<?> type;
+
+        Resolution(String name) {
+            this.name = name;
+        }
+
+        synchronized Class<?> get() {
+            if (resolved) {
+                hits.incrementAndGet();
+                return type;
+            }
+            misses.incrementAndGet();
+            try {
+                type = Class.forName(name);
+            } catch (ClassNotFoundException e) {
+                type = null;
+            }
+            resolved = true;
+            return type;
+        }
+    }
+
+    /**
+     * @param name The fully qualified name of the class
+     * @return The class, or null if it does not exist
+     */
+    public Class<?> forName(String name) {
+        Resolution resolution = classes.get(name);
+        if (resolution == null) {
+            Resolution created = new Resolution(name);
+            resolution = classes.putIfAbsent(name, created);
+            if (resolution == null)
+                resolution = created;
+        }
+        return resolution.get();
+    }
+
+    /**
+     * @return The number of lookups that were answered from the cache
+     */
+    public int getHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return The number of lookups that needed a call to Class.forName
+     */
+    public int getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Forgets all resolved classes and resets the hit and miss counts.
+     */
+    public void clear() {
+        classes.clear();
+        hits.set(0);
+        misses.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return "ClassResolutionCache{size=" + classes.size() + ", hits=" + hits + ", misses=" + misses + "}";
+    }
+}
@@ -0,0 +1,14 @@
+package houtbecke.rs.workingon;
+
+/**
+ *
+ * Tells the ModuleResolver whether the application is built for debugging. Modules with a single
+ * boolean constructor argument are created with this value.
+ *
+ * On Android WorkingOn reads it from the flags of the application, elsewhere it can simply be a constant.
+ *
+ */
+public interface DebugFlagSource {
+
+    boolean isInDebugMode();
+}
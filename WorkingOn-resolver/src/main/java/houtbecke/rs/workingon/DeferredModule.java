@@ -0,0 +1,33 @@
+package houtbecke.rs.workingon;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ *
+ * This annotation indicates that this Module should only be built into an injector the first time one
+ * of its keys is requested.
+ *
+ * Task modules overriding a deferred Module are deferred with it. A task module that replaces a deferred
+ * Module should be annotated as well. The bindings of a deferred Module can depend on the bindings of
+ * the modules that are not deferred, but not on those of other deferred modules, and only the injector
+ * loadModules creates can provide them, not the bindings of modules that are not deferred.
+ *
+ * A deferred Module is built into a child injector, so it can't bind a key the other modules bind, and
+ * can't contribute to a Multibinder, MapBinder or OptionalBinder. Type listeners, provision listeners and
+ * scopes would only apply to its own injector, so a deferred Module with any of these is rejected as well.
+ *
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface DeferredModule {
+
+    /**
+     * The types the Module binds, without a binding annotation. If they're given the Module is not configured
+     * until one of them is requested, otherwise it's configured when the injector is built to find its keys.
+     * The types bound by task modules overriding the Module should be given as well.
+     */
+    Class<?>[] value() default {};
+}
@@ -0,0 +1,278 @@
+package houtbecke.rs.workingon;
+
+import com.google.inject.Binder;
+import com.google.inject.Binding;
+import com.google.inject.Injector;
+import com.google.inject.Key;
+import com.google.inject.Module;
+import com.google.inject.Provider;
+import com.google.inject.Stage;
+import com.google.inject.spi.DefaultElementVisitor;
+import com.google.inject.spi.Element;
+import com.google.inject.spi.Elements;
+import com.google.inject.spi.PrivateElements;
+import com.google.inject.spi.ProvisionListenerBinding;
+import com.google.inject.spi.ScopeBinding;
+import com.google.inject.spi.TypeListenerBinding;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ *
+ * Builds the modules annotated with DeferredModule into injectors the first time one of their keys is
+ * requested.
+ *
+ * Every deferred module gets its own child injector of the injector with the other modules. The
+ * injector that is used instead is another child of it, binding every key of the deferred modules to a
+ * provider that builds the injector of that module once, and gets the key from it. As the injectors
+ * are siblings they can bind the same keys.
+ *
+ * The keys of a module are the types its DeferredModule annotation lists, or else the keys it binds when
+ * it's recorded as the injector is built. That recording is then used to build its injector, so the module
+ * is configured only once either way. Elements that can't work from a sibling injector are rejected, see
+ * DeferredModule.
+ *
+ */
+final class DeferredModules {
+
+    /**
+     * The package of the annotations Multibinder, MapBinder and OptionalBinder bind their entries with.
+     */
+    private static final String MULTIBINDINGS_PACKAGE = "com.google.inject.multibindings.";
+
+    /**
+     * The injector of a deferred module, built the first time it's needed.
+     */
+    private static final class DeferredInjector {
+        private final ModuleResolver resolver;
+        private final Injector parent;
+        private final Iterable<String> tasks;
+        private final Module module;
+        private final Stage stage;
+        private List<Element> elements;
+        private volatile Injector injector;
+
+        /**
+         * @param elements The elements recorded from the module, or null to record them when the injector is built
+         */
+        DeferredInjector(ModuleResolver resolver, Injector parent, Iterable<String> tasks, Module module, Stage stage, List<Element> elements) {
+            this.resolver = resolver;
+            this.parent = parent;
+            this.tasks = tasks;
+            this.module = module;
+            this.stage = stage;
+            this.elements = elements;
+        }
+
+        Injector get() {
+            Injector result = injector;
+            if (result == null) {
+                synchronized (this) {
+                    result = injector;
+                    if (result == null) {
+                        result = resolver.createInjector(new InjectorFactory() {
+                            @Override
+                            public Injector createInjector(List<Module> modules) {
+                                // the first module is the deferred module, possibly replaying its recording
+                                List<Element> moduleElements = elements;
+                                if (moduleElements == null) {
+                                    moduleElements = Elements.getElements(stage, modules.get(0));
+                                    check(module, moduleElements, parent);
+                                }
+                                List<Module> injectorModules = new ArrayList<>(modules);
+                                injectorModules.set(0, Elements.getModule(moduleElements));
+                                return parent.createChildInjector(injectorModules);
+                            }
+                        }, tasks, Collections.singletonList(module), parent);
+                        injector = result;
+                        elements = null;
+                    }
+                }
+            }
+            return result;
+        }
+    }
+
+    private DeferredModules() {
+    }
+
+    /**
+     * @return true if the module, or the module it overrides, is annotated with DeferredModule
+     */
+    static boolean isDeferred(Module module) {
+        return annotationOf(module) != null;
+    }
+
+    private static DeferredModule annotationOf(Module module) {
+        if (module instanceof OverrideChain) {
+            DeferredModule annotation = ((OverrideChain) module).getModule().getClass().getAnnotation(DeferredModule.class);
+            if (annotation != null)
+                return annotation;
+        }
+        return module.getClass().getAnnotation(DeferredModule.class);
+    }
+
+    /**
+     * Removes the deferred modules.
+     *
+     * @return The removed modules, in order
+     */
+    static List<Module> remove(Collection<Module> modules) {
+        List<Module> deferred = new ArrayList<>();
+        for (Iterator<Module> it = modules.iterator(); it.hasNext();) {
+            Module module = it.next();
+            if (isDeferred(module)) {
+                deferred.add(module);
+                it.remove();
+            }
+        }
+        return deferred;
+    }
+
+    /**
+     * @param parent The injector with the modules that are not deferred
+     * @return A child injector of parent that provides the keys of the deferred modules
+     * @throws IllegalStateException If a deferred module binds a key of parent, or has elements that can't be deferred
+     */
+    static Injector createInjector(final ModuleResolver resolver, final Injector parent, final Iterable<String> tasks, List<Module> deferredModules) {
+        Stage stage = parent.getInstance(Stage.class);
+        final List<DeferredInjector> injectors = new ArrayList<>(deferredModules.size());
+        final List<Set<Key<?>>> keys = new ArrayList<>(deferredModules.size());
+        for (Module module: deferredModules) {
+            Class<?>[] types = annotationOf(module).value();
+            if (types.length > 0) {
+                Set<Key<?>> moduleKeys = new LinkedHashSet<>();
+                for (Class<?> type: types)
+                    moduleKeys.add(Key.get(type));
+                checkParentKeys(module, moduleKeys, parent);
+                injectors.add(new DeferredInjector(resolver, parent, tasks, module, stage, null));
+                keys.add(moduleKeys);
+            } else {
+                List<Element> elements = Elements.getElements(stage, module);
+                check(module, elements, parent);
+                injectors.add(new DeferredInjector(resolver, parent, tasks, module, stage, elements));
+                keys.add(keysOf(elements));
+            }
+        }
+
+        return resolver.createInjector(new InjectorFactory() {
+            @Override
+            public Injector createInjector(List<Module> modules) {
+                return parent.createChildInjector(modules);
+            }
+        }, tasks, Collections.<Module>singletonList(new Module() {
+            @Override
+            public void configure(Binder binder) {
+                for (int k = 0; k < injectors.size(); k++)
+                    for (Key<?> key: keys.get(k))
+                        bindDeferred(binder, key, injectors.get(k));
+            }
+        }));
+    }
+
+    private static <T> void bindDeferred(Binder binder, final Key<T> key, final DeferredInjector injector) {
+        binder.bind(key).toProvider(new Provider<T>() {
+            @Override
+            public T get() {
+                return injector.get().getInstance(key);
+            }
+        });
+    }
+
+    /**
+     * @return The keys bound by the elements, including the keys exposed by private modules
+     */
+    private static Set<Key<?>> keysOf(List<Element> elements) {
+        final Set<Key<?>> keys = new LinkedHashSet<>();
+        for (Element element: elements) {
+            element.acceptVisitor(new DefaultElementVisitor<Void>() {
+                @Override
+                public <T> Void visit(Binding<T> binding) {
+                    keys.add(binding.getKey());
+                    return null;
+                }
+
+                @Override
+                public Void visit(PrivateElements privateElements) {
+                    keys.addAll(privateElements.getExposedKeys());
+                    return null;
+                }
+            });
+        }
+        return keys;
+    }
+
+    /**
+     * @throws IllegalStateException If the elements contribute to a multibinding, bind a key of parent, or
+     *         register listeners or scopes that would only apply to the injector of the module
+     */
+    private static void check(Module module, List<Element> elements, Injector parent) {
+        final Set<String> problems = new LinkedHashSet<>();
+        for (Element element: elements) {
+            element.acceptVisitor(new DefaultElementVisitor<Void>() {
+                @Override
+                public <T> Void visit(Binding<T> binding) {
+                    Class<?> annotationType = binding.getKey().getAnnotationType();
+                    if (annotationType != null && annotationType.getName().startsWith(MULTIBINDINGS_PACKAGE))
+                        problems.add("contributes to a Multibinder, MapBinder or OptionalBinder at " + binding.getSource());
+                    return null;
+                }
+
+                @Override
+                public Void visit(TypeListenerBinding binding) {
+                    problems.add("registers a type listener at " + binding.getSource());
+                    return null;
+                }
+
+                @Override
+                public Void visit(ProvisionListenerBinding binding) {
+                    problems.add("registers a provision listener at " + binding.getSource());
+                    return null;
+                }
+
+                @Override
+                public Void visit(ScopeBinding binding) {
+                    problems.add("binds the scope " + binding.getAnnotationType().getName() + " at " + binding.getSource());
+                    return null;
+                }
+            });
+        }
+        if (!problems.isEmpty())
+            throw new IllegalStateException(describe(module) + " can't be deferred, it " + join(problems));
+        checkParentKeys(module, keysOf(elements), parent);
+    }
+
+    /**
+     * @throws IllegalStateException If parent or one of its ancestors binds one of the keys
+     */
+    private static void checkParentKeys(Module module, Set<Key<?>> keys, Injector parent) {
+        Map<Key<?>, Binding<?>> parentBindings = new HashMap<>();
+        for (Injector injector = parent; injector != null; injector = injector.getParent())
+            parentBindings.putAll(injector.getAllBindings());
+        Set<String> problems = new LinkedHashSet<>();
+        for (Key<?> key: keys)
+            if (parentBindings.containsKey(key))
+                problems.add("binds " + key + ", which the injector it's deferred from binds at " + parentBindings.get(key).getSource());
+        if (!problems.isEmpty())
+            throw new IllegalStateException(describe(module) + " can't be deferred, it " + join(problems));
+    }
+
+    private static String describe(Module module) {
+        return (module instanceof OverrideChain ? ((OverrideChain) module).getModule() : module).getClass().getName();
+    }
+
+    private static String join(Set<String> problems) {
+        StringBuilder sb = new StringBuilder();
+        for (String problem: problems)
+            sb.append(sb.length() == 0 ? "" : ", and ").append(problem);
+        return sb.toString();
+    }
+}
@@ -0,0 +1,158 @@
+package houtbecke.rs.workingon;
+
+import com.google.inject.Binder;
+import com.google.inject.Binding;
+import com.google.inject.Module;
+import com.google.inject.spi.DefaultElementVisitor;
+import com.google.inject.spi.Element;
+import com.google.inject.spi.Elements;
+import com.google.inject.spi.HasDependencies;
+import com.google.inject.spi.InjectionRequest;
+import com.google.inject.spi.InstanceBinding;
+import com.google.inject.spi.MembersInjectorLookup;
+import com.google.inject.spi.PrivateElements;
+import com.google.inject.spi.ProviderInstanceBinding;
+import com.google.inject.spi.ProviderLookup;
+import com.google.inject.spi.ProviderWithExtensionVisitor;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ *
+ * The elements recorded from modules annotated with CacheableModule, by module class, debug flag and Stage.
+ *
+ * Before an injector is built every cacheable module is replaced by a module that replays the recording,
+ * so its configure method only runs the first time. Recordings with elements that are bound to the
+ * injector they're used in are not kept, so those modules are configured every time. That includes
+ * instances and provider instances with injectable members, as every injector would inject them again.
+ *
+ */
+final class ElementRecordings {
+
+    private final Map<String, List<Element>> recordings = new ConcurrentHashMap<>();
+    private final Set<String> notReplayable = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private final Map<Module, Boolean> debugFlags = Collections.synchronizedMap(new WeakHashMap<Module, Boolean>());
+
+    /**
+     * Remembers the debug flag a module was created with, if it's cacheable.
+     */
+    void created(Module module, boolean debugMode) {
+        if (module.getClass().isAnnotationPresent(CacheableModule.class))
+            debugFlags.put(module, debugMode);
+    }
+
+    /**
+     * @return The modules with every cacheable module replaced by a module replaying its recording,
+     *         including the ones in an OverrideChain
+     */
+    List<Module> replaying(Collection<Module> modules) {
+        if (debugFlags.isEmpty())
+            return new ArrayList<>(modules);
+        List<Module> result = new ArrayList<>(modules.size());
+        for (Module module: modules)
+            result.add(replaying(module));
+        return result;
+    }
+
+    private Module replaying(Module module) {
+        if (module instanceof OverrideChain) {
+            OverrideChain chain = (OverrideChain) module;
+            Module result = replaying(chain.getModule());
+            for (Module overridingModule: chain.getOverridingModules())
+                result = OverrideChain.override(result, replaying(overridingModule));
+            return result;
+        }
+        Boolean debugMode = debugFlags.get(module);
+        return debugMode == null ? module : new ReplayingModule(module, module.getClass().getName() + "|" + debugMode);
+    }
+
+    void clear() {
+        recordings.clear();
+        notReplayable.clear();
+    }
+
+    private final class ReplayingModule implements Module {
+        private final Module module;
+        private final String key;
+
+        ReplayingModule(Module module, String key) {
+            this.module = module;
+            this.key = key;
+        }
+
+        @Override
+        public void configure(Binder binder) {
+            String stageKey = key + "|" + binder.currentStage();
+            List<Element> elements = recordings.get(stageKey);
+            if (elements == null) {
+                if (notReplayable.contains(stageKey)) {
+                    binder.install(module);
+                    return;
+                }
+                elements = Elements.getElements(binder.currentStage(), module);
+                if (isReplayable(elements))
+                    recordings.put(stageKey, elements);
+                else
+                    notReplayable.add(stageKey);
+            }
+            for (Element element: elements)
+                element.applyTo(binder);
+        }
+    }
+
+    /**
+     * @return false if any element holds state of the injector it's applied to, so it can't be applied
+     *         to another injector
+     */
+    private static boolean isReplayable(List<Element> elements) {
+        DefaultElementVisitor<Boolean> visitor = new DefaultElementVisitor<Boolean>() {
+            @Override
+            protected Boolean visitOther(Element element) {
+                return true;
+            }
+
+            @Override
+            public <T> Boolean visit(Binding<T> binding) {
+                if (binding instanceof InstanceBinding)
+                    return ((InstanceBinding<T>) binding).getInjectionPoints().isEmpty();
+                if (!(binding instanceof ProviderInstanceBinding))
+                    return true;
+                ProviderInstanceBinding<T> providerInstanceBinding = (ProviderInstanceBinding<T>) binding;
+                Object provider = providerInstanceBinding.getUserSuppliedProvider();
+                return !(provider instanceof ProviderWithExtensionVisitor || provider instanceof HasDependencies)
+                        && providerInstanceBinding.getInjectionPoints().isEmpty();
+            }
+
+            @Override
+            public Boolean visit(InjectionRequest<?> injectionRequest) {
+                return false;
+            }
+
+            @Override
+            public Boolean visit(PrivateElements privateElements) {
+                return false;
+            }
+
+            @Override
+            public <T> Boolean visit(ProviderLookup<T> lookup) {
+                return false;
+            }
+
+            @Override
+            public <T> Boolean visit(MembersInjectorLookup<T> lookup) {
+                return false;
+            }
+        };
+        for (Element element: elements)
+            if (!element.acceptVisitor(visitor))
+                return false;
+        return true;
+    }
+}
@@ -0,0 +1,22 @@
+package houtbecke.rs.workingon;
+
+import com.google.inject.Injector;
+import com.google.inject.Module;
+
+import java.util.List;
+
+/**
+ *
+ * Builds the injector from the modules resolved by the ModuleResolver.
+ *
+ * On Android WorkingOn builds the RoboGuice base application injector, on the plain JVM this can be
+ * as simple as Guice.createInjector.
+ *
+ */
+public interface InjectorFactory {
+
+    /**
+     * @param modules The resolved modules, in the order they should be passed to the injector
+     */
+    Injector createInjector(List<Module> modules);
+}
@@ -0,0 +1,45 @@
+package houtbecke.rs.workingon;
+
+import com.google.inject.Module;
+
+/**
+ *
+ * A registry of Module factories and their OverridesModule relations, generated at compile time
+ * by the WorkingOn-compiler annotation processor.
+ *
+ * When a generated registry is present WorkingOn uses it to create modules with a direct constructor
+ * call and to find the module they override, instead of doing so reflectively. Modules not known to
+ * the registry are still created using reflection.
+ *
+ * The processor generates a registry for every compilation that contains modules, and lists it in
+ * META-INF/services, so the registries of the application and its libraries are all used.
+ *
+ */
+public interface ModuleFactories {
+
+    /**
+     * The fully qualified name of the registry generated by the annotation processor for modules that
+     * share no package. It's only looked up by name if no registry is listed in META-INF/services.
+     */
+    String GENERATED_CLASS_NAME = "houtbecke.rs.workingon.generated.WorkingOnModuleFactories";
+
+    /**
+     * @param moduleClassName The binary name of a Module class
+     * @return true if this registry can create and describe the Module
+     */
+    boolean contains(String moduleClassName);
+
+    /**
+     * @param moduleClassName The binary name of a Module class
+     * @param debugMode Passed to the Module if it has a single boolean argument constructor
+     * @return A new instance of the Module, or null if it is not contained in this registry
+     */
+    Module create(String moduleClassName, boolean debugMode);
+
+    /**
+     * @param moduleClassName The binary name of a Module class
+     * @return The value of the OverridesModule annotation of the Module, or null if it is not annotated
+     *         or not contained in this registry
+     */
+    Class<? extends Module> overrides(String moduleClassName);
+}
@@ -0,0 +1,57 @@
+package houtbecke.rs.workingon;
+
+import com.google.inject.Module;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ *
+ * The registries generated for the application and each of its libraries as one, which asks them in
+ * turn for a module.
+ *
+ */
+final class ModuleFactoriesList implements ModuleFactories {
+
+    private final List<ModuleFactories> registries;
+
+    private ModuleFactoriesList(List<ModuleFactories> registries) {
+        this.registries = Collections.unmodifiableList(new ArrayList<>(registries));
+    }
+
+    /**
+     * @return null if there are no registries, the registry if there's one, or else a list of them
+     */
+    static ModuleFactories of(List<ModuleFactories> registries) {
+        if (registries.isEmpty())
+            return null;
+        if (registries.size() == 1)
+            return registries.get(0);
+        return new ModuleFactoriesList(registries);
+    }
+
+    @Override
+    public boolean contains(String moduleClassName) {
+        return registryOf(moduleClassName) != null;
+    }
+
+    @Override
+    public Module create(String moduleClassName, boolean debugMode) {
+        ModuleFactories registry = registryOf(moduleClassName);
+        return registry == null ? null : registry.create(moduleClassName, debugMode);
+    }
+
+    @Override
+    public Class<? extends Module> overrides(String moduleClassName) {
+        ModuleFactories registry = registryOf(moduleClassName);
+        return registry == null ? null : registry.overrides(moduleClassName);
+    }
+
+    private ModuleFactories registryOf(String moduleClassName) {
+        for (ModuleFactories registry: registries)
+            if (registry.contains(moduleClassName))
+                return registry;
+        return null;
+    }
+}
@@ -0,0 +1,148 @@
+package houtbecke.rs.workingon;
+
+import com.google.inject.Module;
+
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ *
+ * The modules resolved by the ModuleResolver, in the order they were added.
+ *
+ * Besides keeping the order the modules are passed to Guice in, modules are indexed by their class, and
+ * by the root class of the modules they override, so they can be found, replaced and removed without
+ * going through all modules.
+ *
+ */
+public class ModuleRegistry extends AbstractSet<Module> {
+
+    private final Set<Module> modules = new LinkedHashSet<>();
+    private final Map<Class<?>, List<Module>> modulesByClass = new HashMap<>();
+    private final Map<Class<? extends Module>, Module> overridesByRootClass = new HashMap<>();
+    private final Map<Module, Class<? extends Module>> rootClassesByOverride = new IdentityHashMap<>();
+
+    @Override
+    public boolean add(Module module) {
+        if (!modules.add(module))
+            return false;
+        List<Module> sameClass = modulesByClass.get(module.getClass());
+        if (sameClass == null) {
+            sameClass = new ArrayList<>(1);
+            modulesByClass.put(module.getClass(), sameClass);
+        }
+        sameClass.add(module);
+        return true;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        if (!modules.remove(o))
+            return false;
+        unindex((Module) o);
+        return true;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return modules.contains(o);
+    }
+
+    @Override
+    public int size() {
+        return modules.size();
+    }
+
+    @Override
+    public Iterator<Module> iterator() {
+        final Iterator<Module> it = modules.iterator();
+        return new Iterator<Module>() {
+            private Module current;
+
+            @Override
+            public boolean hasNext() {
+                return it.hasNext();
+            }
+
+            @Override
+            public Module next() {
+                current = it.next();
+                return current;
+            }
+
+            @Override
+            public void remove() {
+                it.remove();
+                unindex(current);
+            }
+        };
+    }
+
+    /**
+     * @return The module of exactly this class that was added last, or null if there is none
+     */
+    public Module find(Class<?> moduleClass) {
+        List<Module> sameClass = modulesByClass.get(moduleClass);
+        return sameClass == null || sameClass.isEmpty() ? null : sameClass.get(sameClass.size() - 1);
+    }
+
+    /**
+     * Removes all modules of exactly this class.
+     *
+     * @return The module of this class that was added last, or null if there was none
+     */
+    public Module removeAllOfClass(Class<?> moduleClass) {
+        List<Module> sameClass = modulesByClass.get(moduleClass);
+        if (sameClass == null || sameClass.isEmpty())
+            return null;
+        Module last = sameClass.get(sameClass.size() - 1);
+        for (Module module: new ArrayList<>(sameClass))
+            remove(module);
+        return last;
+    }
+
+    /**
+     * @return The module overriding the root module class, or null if it's not overridden
+     */
+    public Module getOverride(Class<? extends Module> rootClass) {
+        return overridesByRootClass.get(rootClass);
+    }
+
+    /**
+     * Registers the module that overrides the root module class, replacing any module registered before.
+     */
+    public void putOverride(Class<? extends Module> rootClass, Module module) {
+        Module previous = overridesByRootClass.put(rootClass, module);
+        if (previous != null)
+            rootClassesByOverride.remove(previous);
+        if (module != null)
+            rootClassesByOverride.put(module, rootClass);
+    }
+
+    /**
+     * Unregisters the module overriding the root module class, without removing it from the modules.
+     *
+     * @return The module that overrode the root module class, or null if it was not overridden
+     */
+    public Module removeOverride(Class<? extends Module> rootClass) {
+        Module previous = overridesByRootClass.remove(rootClass);
+        if (previous != null)
+            rootClassesByOverride.remove(previous);
+        return previous;
+    }
+
+    private void unindex(Module module) {
+        List<Module> sameClass = modulesByClass.get(module.getClass());
+        if (sameClass != null)
+            sameClass.remove(module);
+        Class<? extends Module> rootClass = rootClassesByOverride.remove(module);
+        if (rootClass != null)
+            overridesByRootClass.remove(rootClass);
+    }
+}
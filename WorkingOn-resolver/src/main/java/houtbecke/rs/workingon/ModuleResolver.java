@@ -0,0 +1,789 @@
+package houtbecke.rs.workingon;
+
+import com.google.inject.Injector;
+import com.google.inject.Module;
+import com.google.inject.matcher.Matchers;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ *
+ * Resolves the modules to build an injector from, with overrides and replacements based on tasks.
+ *
+ * This is the part of WorkingOn that does not depend on Android, so it can be used and tested on the
+ * plain JVM. See the tasks field of WorkingOn for how task modules are looked up. WorkingOn uses a
+ * single resolver, which keeps the class names it resolved until reset is called. A resolver resolves
+ * modules for one caller at a time.
+ *
+ */
+public class ModuleResolver {
+
+    private DebugFlagSource debugFlagSource;
+
+    private ModuleFactories moduleFactories;
+    private boolean moduleFactoriesLookedUp = false;
+
+    private final ClassResolutionCache classResolutionCache = new ClassResolutionCache();
+
+    private final ElementRecordings elementRecordings = new ElementRecordings();
+
+    /**
+     * The resolved modules that were only loaded for a task, for the BindingProfiler
+     */
+    private final Set<Module> taskModules = Collections.newSetFromMap(Collections.synchronizedMap(new WeakHashMap<Module, Boolean>()));
+
+    private OverrideGraph overrideGraph;
+
+    private volatile WorkingOnTracer tracer;
+
+    private volatile BindingProfiler bindingProfiler;
+    private volatile boolean conflictCheck;
+
+    private ExecutorService moduleInstantiationExecutor;
+    private Map<String, Module> preparedModules;
+
+    /**
+     * @param debugFlagSource Tells whether modules should be created for debugging
+     */
+    public ModuleResolver(DebugFlagSource debugFlagSource) {
+        this.debugFlagSource = debugFlagSource;
+    }
+
+    public void setDebugFlagSource(DebugFlagSource debugFlagSource) {
+        this.debugFlagSource = debugFlagSource;
+    }
+
+    public boolean isInDebugMode() {
+        return debugFlagSource.isInDebugMode();
+    }
+
+    /**
+     * Forgets the resolved class names and override graph, so modules are resolved from scratch.
+     */
+    public synchronized void reset() {
+        classResolutionCache.clear();
+        overrideGraph = null;
+    }
+
+    /**
+     * Forgets the elements recorded from modules annotated with CacheableModule, which are kept when
+     * reset is called. Call this when the bindings of those modules are expected to change.
+     */
+    public void clearElementRecordings() {
+        elementRecordings.clear();
+    }
+
+    /**
+     * Sets the tracer that is notified of the phases of resolving modules, for example a TraceRecorder.
+     *
+     * @param workingOnTracer The tracer, or null to stop tracing
+     */
+    public void setTracer(WorkingOnTracer workingOnTracer) {
+        tracer = workingOnTracer;
+    }
+
+    public WorkingOnTracer getTracer() {
+        return tracer;
+    }
+
+    /**
+     * Notifies the tracer of the begin of a phase, if there is one.
+     *
+     * @return The start of the phase to pass to traceEnd
+     */
+    public long traceBegin(WorkingOnTracer.Phase phase, String detail) {
+        WorkingOnTracer t = tracer;
+        if (t == null)
+            return 0;
+        long start = System.nanoTime();
+        t.begin(phase, detail, start);
+        return start;
+    }
+
+    public void traceEnd(WorkingOnTracer.Phase phase, String detail, long start) {
+        WorkingOnTracer t = tracer;
+        if (t != null)
+            t.end(phase, detail, start, System.nanoTime());
+    }
+
+    /**
+     * Sets the profiler that is installed in every injector built after this, which records how often
+     * and how long every binding is provisioned.
+     *
+     * @param profiler The profiler, or null to stop profiling
+     */
+    public void setBindingProfiler(BindingProfiler profiler) {
+        bindingProfiler = profiler;
+    }
+
+    public BindingProfiler getBindingProfiler() {
+        return bindingProfiler;
+    }
+
+    /**
+     * Enables checking the modules for keys bound by more than one module before every injector is built,
+     * which fails with a BindingConflictException naming the modules and tasks that bind them, instead of
+     * failing while building the injector.
+     *
+     * @see BindingConflicts
+     */
+    public void setConflictCheck(boolean check) {
+        conflictCheck = check;
+    }
+
+    public boolean isConflictCheck() {
+        return conflictCheck;
+    }
+
+    /**
+     * Enables parallel instantiation of modules in resolve. Modules that don't override each
+     * other are then created concurrently on the supplied executor, before they are merged in the same
+     * order as without it. Only enable this if the constructors of your modules are thread safe.
+     *
+     * @param executor A bounded executor to create the modules on, or null to create them sequentially
+     */
+    public void setModuleInstantiationExecutor(ExecutorService executor) {
+        moduleInstantiationExecutor = executor;
+    }
+
+    /**
+     * @return The cache used to resolve module class names, which can be used to check its hit and miss counts.
+     */
+    public ClassResolutionCache getClassResolutionCache() {
+        return classResolutionCache;
+    }
+
+    /**
+     * Sets the registry used to create modules and look up their overrides without reflection.
+     *
+     * Normally this is not needed, as the registry generated by the WorkingOn-compiler annotation
+     * processor is picked up automatically. Pass null to always use reflection.
+     *
+     * @param factories The registry to use
+     */
+    public void setModuleFactories(ModuleFactories factories) {
+        moduleFactories = factories;
+        moduleFactoriesLookedUp = true;
+    }
+
+    /**
+     * @return The registry set with setModuleFactories, or else the ones generated by the annotation
+     *         processor for the application and its libraries combined, or null if neither exists.
+     */
+    public ModuleFactories getModuleFactories() {
+        if (!moduleFactoriesLookedUp) {
+            moduleFactoriesLookedUp = true;
+            moduleFactories = ModuleFactoriesList.of(generatedModuleFactories());
+        }
+        return moduleFactories;
+    }
+
+    /**
+     * @return The registries listed in META-INF/services, or the one generated by an earlier version of
+     *         the annotation processor
+     */
+    private static List<ModuleFactories> generatedModuleFactories() {
+        List<ModuleFactories> registries = new ArrayList<>();
+        try {
+            for (ModuleFactories registry: ServiceLoader.load(ModuleFactories.class, ModuleResolver.class.getClassLoader()))
+                registries.add(registry);
+        } catch (ServiceConfigurationError ignore) { /* the registries found so far are used, reflection does the rest */ }
+        if (registries.isEmpty()) {
+            try {
+                registries.add((ModuleFactories) Class.forName(ModuleFactories.GENERATED_CLASS_NAME).newInstance());
+            } catch (Exception ignore) { /* no generated registry, we'll use reflection */ }
+        }
+        return registries;
+    }
+
+    /**
+     * Resolves the modules and builds an injector from them, followed by the extra module instances.
+     * Deferred modules are built into their own injector when they're first needed.
+     *
+     * @see #resolve(Iterable, Collection, Collection)
+     */
+    public Injector load(InjectorFactory injectorFactory, Iterable<String> tasks, Collection<Class<? extends Module>> moduleClasses, Collection<Module> extraModules) throws IllegalAccessException, InvocationTargetException, InstantiationException {
+        ModuleRegistry modules = resolve(tasks, moduleClasses, extraModules);
+        modules.addAll(extraModules);
+        List<Module> deferredModules = removeDeferredModules(modules);
+        Injector injector = createInjector(injectorFactory, tasks, modules);
+        return deferredModules.isEmpty() ? injector : createDeferringInjector(injector, tasks, deferredModules);
+    }
+
+    /**
+     * Removes the modules annotated with DeferredModule, or overriding a Module annotated with it.
+     *
+     * @return The removed modules, in order, to pass to createDeferringInjector
+     */
+    public List<Module> removeDeferredModules(Collection<Module> modules) {
+        return DeferredModules.remove(modules);
+    }
+
+    /**
+     * Creates a child injector of the injector built from the modules that are not deferred, which builds
+     * every deferred module into its own child injector of parent the first time one of its keys is requested.
+     * Each deferred module is built only once, also when its keys are requested from several threads.
+     *
+     * @param parent The injector built from the modules that are not deferred
+     * @param tasks The tasks the modules were resolved for
+     * @param deferredModules The modules removed by removeDeferredModules
+     * @return The injector to use instead of parent
+     * @throws IllegalStateException If a deferred module binds a key of parent, or has elements that can't be deferred, see DeferredModule
+     */
+    public Injector createDeferringInjector(Injector parent, Iterable<String> tasks, List<Module> deferredModules) {
+        return DeferredModules.createInjector(this, parent, tasks, deferredModules);
+    }
+
+    /**
+     * Checks if the parent modules can be built into an injector on their own, with the child modules in a
+     * child injector of it: nothing the parent modules depend on may be bound by the child modules, also not
+     * through just-in-time bindings, and the child modules may not bind a key the parent modules bind.
+     *
+     * @return true if the parent modules form a closed set with respect to the child modules
+     */
+    public boolean canBeParent(Collection<Module> parentModules, Collection<Module> childModules) {
+        return ParentModules.canBeParent(parentModules, childModules);
+    }
+
+    /**
+     * Builds an injector from the modules with the InjectorFactory, tracing it as CREATE_INJECTOR.
+     */
+    public Injector createInjector(InjectorFactory injectorFactory, Collection<Module> modules) {
+        return createInjector(injectorFactory, Collections.<String>emptyList(), modules);
+    }
+
+    /**
+     * Builds an injector from the modules resolved for the tasks with the InjectorFactory, tracing it as
+     * CREATE_INJECTOR. If a BindingProfiler is set it's installed in the injector. Modules annotated with
+     * CacheableModule replay the elements recorded the first time they were built, see CacheableModule.
+     */
+    public Injector createInjector(InjectorFactory injectorFactory, Iterable<String> tasks, Collection<Module> modules) {
+        return createInjector(injectorFactory, tasks, modules, null);
+    }
+
+    /**
+     * Builds a child injector of parent like createInjector. If the conflict check is enabled the modules
+     * are also checked against the bindings of parent and its ancestors. A child of an injector the
+     * BindingProfiler is installed in inherits its listener, so it's not installed again.
+     *
+     * @param injectorFactory Creates the child injector on parent
+     * @param parent The injector the child injector is created on, or null if the factory creates a root injector
+     */
+    public Injector createInjector(InjectorFactory injectorFactory, Iterable<String> tasks, Collection<Module> modules, Injector parent) {
+        if (conflictCheck) {
+            long checkStart = traceBegin(WorkingOnTracer.Phase.CHECK_CONFLICTS, null);
+            BindingConflicts.verify(tasks, modules, parent);
+            traceEnd(WorkingOnTracer.Phase.CHECK_CONFLICTS, null, checkStart);
+        }
+        long start = traceBegin(WorkingOnTracer.Phase.CREATE_INJECTOR, null);
+        List<Module> injectorModules = elementRecordings.replaying(modules);
+        BindingProfiler profiler = bindingProfiler;
+        BindingProfiler.InjectorListener listener = profiler == null || parent == null ? null : profiler.listenerOf(parent);
+        if (listener != null)
+            listener.addModules(this, modules); // a child injector inherits the listener of its parent
+        else if (profiler != null) {
+            final BindingProfiler.InjectorListener rootListener = profiler.newListener(this, modules);
+            injectorModules.add(binder -> binder.bindListener(Matchers.any(), rootListener));
+            listener = rootListener;
+        }
+        Injector injector = injectorFactory.createInjector(injectorModules);
+        if (listener != null)
+            profiler.built(injector, listener);
+        traceEnd(WorkingOnTracer.Phase.CREATE_INJECTOR, null, start);
+        return injector;
+    }
+
+    /**
+     * Resolves the modules and checks them for keys bound by more than one module, without building an
+     * injector. This can be used in a test to check every combination of tasks quickly.
+     *
+     * @return The keys bound by more than one module, empty if an injector can be built without double bindings
+     * @see BindingConflicts
+     */
+    public List<BindingConflicts.Conflict> checkConflicts(Iterable<String> tasks, Collection<Class<? extends Module>> moduleClasses, Collection<Module> extraModules) throws IllegalAccessException, InvocationTargetException, InstantiationException {
+        ModuleRegistry modules = resolve(tasks, moduleClasses, extraModules);
+        modules.addAll(extraModules);
+        return BindingConflicts.check(tasks, modules);
+    }
+
+    /**
+     * Resolves the modules with overrides based on the tasks, except for the extra module instances.
+     *
+     * @param tasks The tasks to resolve the modules for, in order
+     * @param moduleClasses Classes of the modules to override and/or load, followed by the extra module classes
+     * @param extraModules Module instances that will be added after the resolved modules
+     * @return The resolved modules, in the order they should be passed to the injector
+     */
+    public synchronized ModuleRegistry resolve(Iterable<String> tasks, Collection<Class<? extends Module>> moduleClasses, Collection<Module> extraModules) throws IllegalAccessException, InvocationTargetException, InstantiationException {
+        ModuleRegistry modules = new ModuleRegistry();
+
+        long probeStart = traceBegin(WorkingOnTracer.Phase.PROBE, null);
+        overrideGraph = buildOverrideGraph(tasks, moduleClasses, extraModules);
+        traceEnd(WorkingOnTracer.Phase.PROBE, null, probeStart);
+
+        if (moduleInstantiationExecutor != null)
+            preparedModules = instantiateInParallel(overrideGraph, moduleInstantiationExecutor, tasks, moduleClasses);
+        try {
+            resolveModuleClasses(tasks, modules, new HashSet<String>(), moduleClasses);
+        } finally {
+            preparedModules = null;
+        }
+        recordTaskModules(modules, moduleClasses);
+        return modules;
+    }
+
+    /**
+     * Remembers which of the resolved modules were only loaded for a task: the modules, and the modules
+     * overridden in an OverrideChain, of which the class is not one of the classes the modules were resolved from.
+     *
+     * @param modules The resolved modules
+     * @param moduleClasses The classes the modules were resolved from, including the extra module classes
+     */
+    void recordTaskModules(Collection<Module> modules, Collection<Class<? extends Module>> moduleClasses) {
+        for (Module module: modules) {
+            Module resolvedModule = module instanceof OverrideChain ? ((OverrideChain) module).getModule() : module;
+            if (!moduleClasses.contains(resolvedModule.getClass()))
+                taskModules.add(resolvedModule);
+        }
+    }
+
+    /**
+     * Forgets which modules were only loaded for a task, for instance between benchmark iterations.
+     */
+    void clearTaskModules() {
+        taskModules.clear();
+    }
+
+    /**
+     * @return true if the module was resolved, and only loaded for a task
+     */
+    boolean isTaskModule(Module module) {
+        return taskModules.contains(module);
+    }
+
+    protected Module getModule(String fullName, Module rootModuleToOverride, Class<? extends Module> rootModuleClass, Set<Module> existingModules) throws ClassNotFoundException, IllegalAccessException, InvocationTargetException, InstantiationException {
+        ModuleFactories factories = getModuleFactories();
+        if (factories != null && factories.contains(fullName)) {
+            Module module = preparedModule(fullName);
+            if (module == null) {
+                long start = traceBegin(WorkingOnTracer.Phase.INSTANTIATE, fullName);
+                boolean debugMode = isInDebugMode();
+                module = factories.create(fullName, debugMode);
+                if (module != null)
+                    elementRecordings.created(module, debugMode);
+                traceEnd(WorkingOnTracer.Phase.INSTANTIATE, fullName, start);
+            }
+            if (module != null)
+                return getModule(module, module.getClass(), rootModuleToOverride, rootModuleClass, existingModules);
+        }
+        Class moduleClass = classResolutionCache.forName(fullName);
+        if (moduleClass == null)
+            throw new ClassNotFoundException(fullName);
+        return getModule(moduleClass, rootModuleToOverride, rootModuleClass, existingModules);
+    }
+
+    protected Module getModule(Class moduleClass, Module moduleToOverride, Class<? extends Module> rootModuleClass, Set<Module> existingModules) throws InstantiationException, IllegalAccessException, InvocationTargetException {
+        return getModule(newModule(moduleClass), moduleClass, moduleToOverride, rootModuleClass, existingModules);
+    }
+
+    /**
+     * Creates a new instance of a Module, using the generated registry if it contains the Module.
+     *
+     * @param moduleClass The class of the Module to create.
+     */
+    protected Module newModule(Class moduleClass) throws InstantiationException, IllegalAccessException, InvocationTargetException {
+        Module preparedModule = preparedModule(moduleClass.getName());
+        if (preparedModule != null)
+            return preparedModule;
+
+        long start = traceBegin(WorkingOnTracer.Phase.INSTANTIATE, moduleClass.getName());
+        boolean debugMode = isInDebugMode();
+        Module module = null;
+        ModuleFactories factories = getModuleFactories();
+        if (factories != null && factories.contains(moduleClass.getName()))
+            module = factories.create(moduleClass.getName(), debugMode);
+
+        if (module == null)
+            for (Constructor constructor: moduleClass.getConstructors()) {
+                Class[] parameterTypes = constructor.getParameterTypes();
+                if (parameterTypes.length == 1 && (parameterTypes[0].equals(boolean.class) || parameterTypes[0].equals(Boolean.class))) {
+                    module = (Module) constructor.newInstance(debugMode);
+                    break;
+                }
+            }
+        if (module == null)
+            module = (Module) moduleClass.newInstance();
+        elementRecordings.created(module, debugMode);
+        traceEnd(WorkingOnTracer.Phase.INSTANTIATE, moduleClass.getName(), start);
+        return module;
+    }
+
+    private Module preparedModule(String moduleClassName) {
+        Map<String, Module> prepared = preparedModules;
+        return prepared == null ? null : prepared.remove(moduleClassName);
+    }
+
+    private Module override(Module moduleToOverride, Module module) {
+        String detail = module.getClass().getName();
+        long start = traceBegin(WorkingOnTracer.Phase.OVERRIDE, detail);
+        Module overridden = OverrideChain.override(moduleToOverride, module);
+        traceEnd(WorkingOnTracer.Phase.OVERRIDE, detail, start);
+        return overridden;
+    }
+
+    private Module getModule(Module module, Class moduleClass, Module moduleToOverride, Class<? extends Module> rootModuleClass, Set<Module> existingModules) throws InstantiationException, IllegalAccessException, InvocationTargetException {
+        Class<? extends Module> classToOverrideWithModuleClass = classToOverrideFor(moduleClass);
+        if (moduleToOverride != null && classToOverrideWithModuleClass != null && classToOverrideWithModuleClass == rootModuleClass)
+            return override(moduleToOverride, module);
+
+        if (classToOverrideWithModuleClass != null) {
+            Module overrideModule = null;
+            if (existingModules instanceof ModuleRegistry)
+                overrideModule = ((ModuleRegistry) existingModules).removeAllOfClass(classToOverrideWithModuleClass);
+            else if (existingModules != null) {
+                Iterator<Module> it = existingModules.iterator();
+                while (it.hasNext()) {
+                    Module existingModule = it.next();
+                    if (existingModule.getClass().equals(classToOverrideWithModuleClass)) {
+                        it.remove();
+                        overrideModule = existingModule;
+                    }
+                }
+            }
+            if (overrideModule == null)
+                overrideModule = getModule(classToOverrideWithModuleClass, null, null, existingModules);
+
+            return override(overrideModule, module);
+        }
+        return module;
+    }
+
+    /**
+     * Add a Module to the supplied list.
+     *
+     * if moduleFullClassName points to a non-existing class this method will do nothing.
+     *
+     * @param moduleSet Set the Module should be added to or replace the last entry from, if a
+     *                   module can be created.
+     * @param moduleFullClassName The fully qualified name of the Class
+     * @return true if a module was added, false if no module was added
+     * @throws IllegalAccessException Thrown if a Class was found but could not be loaded.
+     * @throws InstantiationException Thrown if a Class was found but could not instantiated.
+     *                                Make sure you have a no-args or single boolean arg constructor.
+     * @throws InvocationTargetException Thrown if a Class was found but could not instantiated.
+     *                                   Make sure you have a no-args or single boolean arg constructor.
+     */
+    protected Module addModule(Set<Module> moduleSet, String moduleFullClassName, Module moduleToOverride, Class<? extends Module> rootModuleClass) throws IllegalAccessException, InstantiationException, InvocationTargetException {
+        ModuleFactories factories = getModuleFactories();
+        if ((factories == null || !factories.contains(moduleFullClassName)) && classResolutionCache.forName(moduleFullClassName) == null)
+            return null; // we simply do not add this class if it's not found
+        try {
+            Module m = getModule(moduleFullClassName, moduleToOverride, rootModuleClass, moduleSet);
+            if (m != null) {
+                moduleSet.add(m);
+                return m;
+            }
+        } catch (ClassNotFoundException ignore) { /* we simply do not add this class if it's not found */}
+        return null;
+    }
+
+    /**
+     * Builds the graph of overrides for the supplied module classes, the extra modules and all modules
+     * that exist for them in the subpackages of the tasks.
+     *
+     * @param moduleClasses Classes of the modules to override and/or load.
+     * @throws IllegalStateException If any of the modules has a cyclic chain of overrides
+     */
+    protected OverrideGraph buildOverrideGraph(Iterable<String> tasks, Collection<Class<? extends Module>> moduleClasses, Collection<Module> extraModules) {
+        OverrideGraph.Builder builder = new OverrideGraph.Builder(this);
+        for (Class<? extends Module> moduleClass: moduleClasses) {
+            builder.add(moduleClass);
+            String packageName = moduleClass.getPackage().getName();
+            for (String task: tasks) {
+                String taskPackageName = packageName + "." + task.toLowerCase() + ".";
+                for (String name: new String[] {taskPackageName + task, taskPackageName + moduleClass.getSimpleName() + task, taskPackageName + moduleClass.getSimpleName()}) {
+                    Class<? extends Module> taskModuleClass = moduleClassForName(name);
+                    if (taskModuleClass != null)
+                        builder.add(taskModuleClass);
+                }
+            }
+        }
+        for (Module module: extraModules)
+            builder.add(module.getClass());
+        return builder.build();
+    }
+
+    private void resolveModuleClasses(Iterable<String> tasks, ModuleRegistry modules, Set<String> loadedPackageBaseModules, Collection<Class<? extends Module>> modulesToAdd) throws IllegalAccessException, InvocationTargetException, InstantiationException {
+        for (Class<? extends Module> moduleClass: modulesToAdd) {
+            long moduleStart = traceBegin(WorkingOnTracer.Phase.RESOLVE_MODULE, moduleClass.getName());
+            String packageName = moduleClass.getPackage().getName();
+
+                for (String task: tasks) {
+                    String fullPackageBaseModuleName = packageName + "." + task.toLowerCase() + "." + task;
+                    if (!loadedPackageBaseModules.contains(fullPackageBaseModuleName)) {
+                        addModule(modules, fullPackageBaseModuleName, null, null);
+                        loadedPackageBaseModules.add(fullPackageBaseModuleName);
+                    }
+                }
+
+            String className = moduleClass.getSimpleName();
+
+            boolean addedAnyTask = false;
+            for (String task: tasks) {
+                String taskDetail = tracer == null ? null : task + " " + moduleClass.getName();
+                long taskStart = traceBegin(WorkingOnTracer.Phase.RESOLVE_TASK, taskDetail);
+
+                /*
+
+                - create the potential class name that could replace or override our normal module
+
+                - see what the deepest module is that the module with this class name overrides
+
+                - if it's been overridden before, then pass the override module stored in the registry
+                  so that gets overridden instead of the actual root module. Else just create a new module.
+
+                - If a new merged overrides module wa created, remove the old module from the module set.
+
+                - store the new or merged overridden module as the override of the root class in the registry.
+
+                - if no module existed for the potential class name or it's alternate, just create the original module
+                 */
+
+                String potentialClassName = packageName + "." + task.toLowerCase() + "." + className+task;
+                Class<? extends Module> rootClass = rootClassToOverrideFor(potentialClassName);
+                Module moduleToOverride = null;
+                if (rootClass != null)
+                    moduleToOverride = modules.getOverride(rootClass);
+                Module addedModule = addModule(modules, potentialClassName, moduleToOverride, rootClass);
+
+                if (addedModule == null) {
+                    // same as above but for the alternate class name case.
+                    potentialClassName = packageName + "." + task.toLowerCase() + "." + className;
+                    rootClass = rootClassToOverrideFor(potentialClassName);
+                    if (rootClass != null)
+                        moduleToOverride = modules.getOverride(rootClass);
+
+                    addedModule = addModule(modules, potentialClassName, moduleToOverride, rootClass);
+
+                }
+                if (addedModule != null && rootClass != null) {
+                    if (moduleToOverride != null)
+                        modules.remove(moduleToOverride);
+                    modules.putOverride(rootClass, addedModule);
+                }
+                addedAnyTask |= addedModule != null;
+                traceEnd(WorkingOnTracer.Phase.RESOLVE_TASK, taskDetail, taskStart);
+            }
+            if (!addedAnyTask) {
+
+                Class<? extends Module> rootClass = rootClassToOverrideFor(moduleClass);
+                if (rootClass != null) { // check if this module wants to override another module outside of a task
+                    Module currentlyOverriding = modules.removeOverride(rootClass);
+                    if (currentlyOverriding != null) {
+                        // there is already another module doing this so will will override that module and replace it
+                        modules.remove(currentlyOverriding);
+                        Module m = addModule(modules, moduleClass.getName(), currentlyOverriding, currentlyOverriding.getClass());
+                        modules.putOverride(rootClass, m);
+                    }
+                    else {
+                        // we are the first to attempt to override this module, find the module, then override it and replace it with ourselves
+                        Module moduleToOverride = modules.find(rootClass);
+                        if (moduleToOverride != null) {
+                            modules.remove(moduleToOverride);
+                            Module m = addModule(modules, moduleClass.getName(), moduleToOverride, moduleToOverride.getClass());
+                            modules.putOverride(rootClass, m);
+                        }
+                        else throw new RuntimeException("Trying to override "+rootClass.getName()+" but that module was never loaded");
+                    }
+                } else // this module doesn't try to override anything, just add it
+                    addModule(modules, moduleClass.getName(), null, null);
+            }
+            traceEnd(WorkingOnTracer.Phase.RESOLVE_MODULE, moduleClass.getName(), moduleStart);
+        }
+    }
+
+    /**
+     * Creates the modules resolveModuleClasses will create concurrently, where modules that have no
+     * override relation with each other are created at the same time. Modules in the same chain of
+     * overrides are created one after another, starting at the root.
+     *
+     * If a module can't be created the modules that are still being created are cancelled, and the
+     * error is thrown as it would be when creating the modules sequentially.
+     *
+     * @return The created modules by their class
+     */
+    protected Map<String, Module> instantiateInParallel(final OverrideGraph graph, ExecutorService executor, Iterable<String> tasks, Collection<Class<? extends Module>> moduleClasses) throws IllegalAccessException, InvocationTargetException, InstantiationException {
+        Map<Class<? extends Module>, List<Class<? extends Module>>> chains = new LinkedHashMap<>();
+        for (Class<? extends Module> moduleClass: moduleClassesToCreate(graph, tasks, moduleClasses)) {
+            Class<? extends Module> rootClass = graph.rootClassToOverrideFor(moduleClass);
+            if (rootClass == null)
+                rootClass = moduleClass;
+            List<Class<? extends Module>> chain = chains.get(rootClass);
+            if (chain == null) {
+                chain = new ArrayList<>();
+                chains.put(rootClass, chain);
+            }
+            chain.add(moduleClass);
+        }
+
+        List<Future<Map<String, Module>>> futures = new ArrayList<>(chains.size());
+        for (final List<Class<? extends Module>> chain: chains.values()) {
+            Collections.sort(chain, (a, b) -> graph.depthOf(a) - graph.depthOf(b));
+            futures.add(executor.submit(() -> {
+                Map<String, Module> created = new HashMap<>();
+                for (Class<? extends Module> moduleClass: chain)
+                    created.put(moduleClass.getName(), newModule(moduleClass));
+                return created;
+            }));
+        }
+
+        Map<String, Module> prepared = new HashMap<>();
+        try {
+            for (Future<Map<String, Module>> future: futures)
+                prepared.putAll(future.get());
+        } catch (InterruptedException e) {
+            cancel(futures);
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while creating modules", e);
+        } catch (ExecutionException e) {
+            cancel(futures);
+            Throwable cause = e.getCause();
+            if (cause instanceof IllegalAccessException)
+                throw (IllegalAccessException) cause;
+            if (cause instanceof InvocationTargetException)
+                throw (InvocationTargetException) cause;
+            if (cause instanceof InstantiationException)
+                throw (InstantiationException) cause;
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            if (cause instanceof Error)
+                throw (Error) cause;
+            throw new RuntimeException(cause);
+        }
+        return prepared;
+    }
+
+    private static void cancel(List<? extends Future<?>> futures) {
+        for (Future<?> future: futures)
+            future.cancel(true);
+    }
+
+    /**
+     * Picks the module classes the way resolveModuleClasses does: the base modules of the tasks, for every
+     * module class the first of its task modules that exists for each task or else the module class
+     * itself, and the modules those override.
+     */
+    private Set<Class<? extends Module>> moduleClassesToCreate(OverrideGraph graph, Iterable<String> tasks, Collection<Class<? extends Module>> moduleClasses) {
+        Set<Class<? extends Module>> picked = new LinkedHashSet<>();
+        for (Class<? extends Module> moduleClass: moduleClasses) {
+            String packageName = moduleClass.getPackage().getName();
+            boolean pickedAnyTask = false;
+            for (String task: tasks) {
+                String taskPackageName = packageName + "." + task.toLowerCase() + ".";
+                pickIfExists(picked, taskPackageName + task);
+                pickedAnyTask |= pickIfExists(picked, taskPackageName + moduleClass.getSimpleName() + task)
+                        || pickIfExists(picked, taskPackageName + moduleClass.getSimpleName());
+            }
+            if (!pickedAnyTask)
+                picked.add(moduleClass);
+        }
+
+        Set<Class<? extends Module>> toCreate = new LinkedHashSet<>();
+        for (Class<? extends Module> moduleClass: picked) {
+            Class<? extends Module> c = moduleClass;
+            while (c != null && toCreate.add(c))
+                c = graph.classToOverrideFor(c);
+        }
+        return toCreate;
+    }
+
+    private boolean pickIfExists(Set<Class<? extends Module>> picked, String moduleClassName) {
+        Class<? extends Module> moduleClass = moduleClassForName(moduleClassName);
+        if (moduleClass == null)
+            return false;
+        picked.add(moduleClass);
+        return true;
+    }
+
+    /**
+     * @return The module class with the name, or null if it does not exist or is no Module
+     */
+    private Class<? extends Module> moduleClassForName(String name) {
+        Class<?> c = classResolutionCache.forName(name);
+        return c == null || !Module.class.isAssignableFrom(c) ? null : c.asSubclass(Module.class);
+    }
+
+    protected Class<? extends Module> rootClassToOverrideFor(String fullClassName) {
+        Class<? extends Module> moduleClass = moduleClassForName(fullClassName);
+        return moduleClass == null ? null : rootClassToOverrideFor(moduleClass);
+    }
+
+    protected Class<? extends Module> rootClassToOverrideFor(Class<? extends Module> moduleClass) {
+        return overrideGraphFor(moduleClass).rootClassToOverrideFor(moduleClass);
+    }
+
+    protected Class<? extends Module> classToOverrideFor(Class<? extends Module> moduleClass) {
+        return overrideGraphFor(moduleClass).classToOverrideFor(moduleClass);
+    }
+
+    private OverrideGraph overrideGraphFor(Class<? extends Module> moduleClass) {
+        OverrideGraph graph = overrideGraph;
+        if (graph != null && graph.contains(moduleClass))
+            return graph;
+        return new OverrideGraph.Builder(this).add(moduleClass).build();
+    }
+
+    /**
+     * Reads the Module class directly overridden by a Module class from the generated registry or
+     * the OverridesModule annotation. Use classToOverrideFor to get the value from the override graph.
+     */
+    Class<? extends Module> overriddenClassOf(Class<? extends Module> moduleClass) {
+        ModuleFactories factories = getModuleFactories();
+        if (factories != null && factories.contains(moduleClass.getName()))
+            return overridesValue(moduleClass, factories.overrides(moduleClass.getName()));
+
+        if (moduleClass.isAnnotationPresent(OverridesModule.class)) {
+            OverridesModule annotation = (OverridesModule) moduleClass.getAnnotation(OverridesModule.class); // android studio cast
+            return overridesValue(moduleClass, annotation.value());
+        }
+        return null;
+    }
+
+    private Class<? extends Module> overridesValue(Class<? extends Module> moduleClass, Class<? extends Module> classThatOverrides) {
+        if (classThatOverrides == Module.class) { // default value, look for the module in the parent package
+            String packageName = moduleClass.getPackage().getName();
+            int lastDot = packageName.lastIndexOf('.');
+            String subPackageName = packageName.substring(lastDot + 1);
+            String parentPackageName = packageName.substring(0, Math.max(lastDot, 0));
+            String className = moduleClass.getSimpleName();
+            if (className.length() > subPackageName.length() && className.toLowerCase().endsWith(subPackageName)) {
+                Class<? extends Module> overridden = moduleClassForName(parentPackageName + "." + className.substring(0, className.length() - subPackageName.length()));
+                if (overridden != null)
+                    return overridden;
+            }
+            Class<? extends Module> overridden = moduleClassForName(parentPackageName + "." + className);
+            if (overridden == null)
+                throw new RuntimeException(moduleClass.getName() + " overrides a module from the parent package, but no such module exists in " + parentPackageName);
+            return overridden;
+        }
+        return classThatOverrides;
+    }
+}
@@ -0,0 +1,145 @@
+package houtbecke.rs.workingon;
+
+import com.google.inject.Binder;
+import com.google.inject.Binding;
+import com.google.inject.Key;
+import com.google.inject.Module;
+import com.google.inject.spi.DefaultElementVisitor;
+import com.google.inject.spi.Element;
+import com.google.inject.spi.Elements;
+import com.google.inject.spi.PrivateElements;
+import com.google.inject.spi.ScopeBinding;
+import com.google.inject.util.Modules;
+
+import java.lang.annotation.Annotation;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ *
+ * A Module and all the modules overriding it, in the order they override it.
+ *
+ * Nesting Modules.override once for every overriding module records all elements of the inner
+ * modules again at every level. Instead this records every overriding module once, drops the
+ * bindings that a later overriding module replaces, and overrides the module with the result in
+ * a single Modules.override. If an earlier overriding module exposes a key from a private module
+ * that a later one replaces, it falls back to nesting.
+ *
+ */
+final class OverrideChain implements Module {
+
+    private final Module module;
+    private final List<Module> overridingModules;
+
+    private OverrideChain(Module module, List<Module> overridingModules) {
+        this.module = module;
+        this.overridingModules = Collections.unmodifiableList(overridingModules);
+    }
+
+    /**
+     * @return A Module that overrides moduleToOverride with module. If moduleToOverride already is an
+     *         OverrideChain, module is added at the end of that chain.
+     */
+    static OverrideChain override(Module moduleToOverride, Module module) {
+        if (moduleToOverride instanceof OverrideChain) {
+            OverrideChain chain = (OverrideChain) moduleToOverride;
+            List<Module> overridingModules = new ArrayList<>(chain.overridingModules.size() + 1);
+            overridingModules.addAll(chain.overridingModules);
+            overridingModules.add(module);
+            return new OverrideChain(chain.module, overridingModules);
+        }
+        List<Module> overridingModules = new ArrayList<>(1);
+        overridingModules.add(module);
+        return new OverrideChain(moduleToOverride, overridingModules);
+    }
+
+    /**
+     * @return The Module that is overridden
+     */
+    Module getModule() {
+        return module;
+    }
+
+    /**
+     * @return The modules overriding the Module, the last one wins
+     */
+    List<Module> getOverridingModules() {
+        return overridingModules;
+    }
+
+    /**
+     * @return The same overrides as nested Modules.override calls
+     */
+    Module nested() {
+        Module result = module;
+        for (Module overridingModule: overridingModules)
+            result = Modules.override(result).with(overridingModule);
+        return result;
+    }
+
+    @Override
+    public void configure(Binder binder) {
+        if (overridingModules.size() == 1) {
+            binder.install(Modules.override(module).with(overridingModules.get(0)));
+            return;
+        }
+        List<Element> flattened = flatten(binder);
+        binder.install(flattened == null ? nested() : Modules.override(module).with(Elements.getModule(flattened)));
+    }
+
+    private List<Element> flatten(Binder binder) {
+        final Set<Key<?>> overriddenKeys = new HashSet<>();
+        final Set<Class<? extends Annotation>> overriddenScopes = new HashSet<>();
+        List<List<Element>> layers = new ArrayList<>(overridingModules.size());
+
+        for (int k = overridingModules.size() - 1; k >= 0; k--) {
+            final List<Element> kept = new ArrayList<>();
+            final Set<Key<?>> layerKeys = new HashSet<>();
+            final Set<Class<? extends Annotation>> layerScopes = new HashSet<>();
+            for (Element element: Elements.getElements(binder.currentStage(), overridingModules.get(k))) {
+                Boolean keep = element.acceptVisitor(new DefaultElementVisitor<Boolean>() {
+                    @Override
+                    protected Boolean visitOther(Element element) {
+                        return true;
+                    }
+
+                    @Override
+                    public <T> Boolean visit(Binding<T> binding) {
+                        layerKeys.add(binding.getKey());
+                        return !overriddenKeys.contains(binding.getKey());
+                    }
+
+                    @Override
+                    public Boolean visit(PrivateElements privateElements) {
+                        layerKeys.addAll(privateElements.getExposedKeys());
+                        for (Key<?> exposed: privateElements.getExposedKeys())
+                            if (overriddenKeys.contains(exposed))
+                                return null;
+                        return true;
+                    }
+
+                    @Override
+                    public Boolean visit(ScopeBinding scopeBinding) {
+                        layerScopes.add(scopeBinding.getAnnotationType());
+                        return !overriddenScopes.contains(scopeBinding.getAnnotationType());
+                    }
+                });
+                if (keep == null)
+                    return null;
+                if (keep)
+                    kept.add(element);
+            }
+            overriddenKeys.addAll(layerKeys);
+            overriddenScopes.addAll(layerScopes);
+            layers.add(kept);
+        }
+
+        List<Element> flattened = new ArrayList<>();
+        for (int k = layers.size() - 1; k >= 0; k--)
+            flattened.addAll(layers.get(k));
+        return flattened;
+    }
+}
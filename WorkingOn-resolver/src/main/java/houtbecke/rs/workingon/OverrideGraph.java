@@ -0,0 +1,128 @@
+package houtbecke.rs.workingon;
+
+import com.google.inject.Module;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ *
+ * The OverridesModule relations between a set of Module classes.
+ *
+ * The graph is built once for a set of modules, after which the module each one directly overrides,
+ * the root module at the end of its chain of overrides and the depth in that chain can be looked up
+ * without reading any annotations. Chains that loop back onto themselves are rejected when building.
+ *
+ */
+public final class OverrideGraph {
+
+    private final Map<Class<? extends Module>, Class<? extends Module>> overrides;
+    private final Map<Class<? extends Module>, Class<? extends Module>> roots;
+    private final Map<Class<? extends Module>, Integer> depths;
+
+    private OverrideGraph(Map<Class<? extends Module>, Class<? extends Module>> overrides, Map<Class<? extends Module>, Class<? extends Module>> roots, Map<Class<? extends Module>, Integer> depths) {
+        this.overrides = Collections.unmodifiableMap(overrides);
+        this.roots = Collections.unmodifiableMap(roots);
+        this.depths = Collections.unmodifiableMap(depths);
+    }
+
+    /**
+     * @return true if the Module class, or a module overriding it, was added to this graph
+     */
+    public boolean contains(Class<? extends Module> moduleClass) {
+        return depths.containsKey(moduleClass);
+    }
+
+    /**
+     * @return The Module class directly overridden by the Module class, or null if it does not override anything
+     */
+    public Class<? extends Module> classToOverrideFor(Class<? extends Module> moduleClass) {
+        return overrides.get(moduleClass);
+    }
+
+    /**
+     * @return The Module class at the end of the chain of overrides of the Module class, or null if it does
+     *         not override anything
+     */
+    public Class<? extends Module> rootClassToOverrideFor(Class<? extends Module> moduleClass) {
+        return roots.get(moduleClass);
+    }
+
+    /**
+     * @return The number of overrides between the Module class and its root, 0 if it does not override anything
+     */
+    public int depthOf(Class<? extends Module> moduleClass) {
+        Integer depth = depths.get(moduleClass);
+        return depth == null ? 0 : depth;
+    }
+
+    /**
+     * @return All Module classes in this graph
+     */
+    public Iterable<Class<? extends Module>> moduleClasses() {
+        return depths.keySet();
+    }
+
+    public static class Builder {
+
+        private final ModuleResolver resolver;
+        private final Map<Class<? extends Module>, Class<? extends Module>> overrides = new HashMap<>();
+        private final Map<Class<? extends Module>, Class<? extends Module>> roots = new HashMap<>();
+        private final Map<Class<? extends Module>, Integer> depths = new HashMap<>();
+
+        /**
+         * @param resolver Used to read the Module class each Module class directly overrides
+         */
+        public Builder(ModuleResolver resolver) {
+            this.resolver = resolver;
+        }
+
+        /**
+         * Adds a Module class, and all the Module classes it overrides, to the graph.
+         *
+         * @throws IllegalStateException If the chain of overrides of the Module class contains a cycle
+         */
+        public Builder add(Class<? extends Module> moduleClass) {
+            List<Class<? extends Module>> chain = new ArrayList<>();
+            Class<? extends Module> current = moduleClass;
+            while (current != null && !depths.containsKey(current)) {
+                if (chain.contains(current))
+                    throw new IllegalStateException("Cyclic OverridesModule chain: " + describe(chain, current));
+                chain.add(current);
+                current = resolver.overriddenClassOf(current);
+            }
+
+            // walk back from the first module we already knew, or the module that overrides nothing
+            Class<? extends Module> root = current == null ? null : roots.get(current);
+            if (current != null && root == null)
+                root = current;
+            int depth = current == null ? -1 : depths.get(current);
+            for (int k = chain.size() - 1; k >= 0; k--) {
+                Class<? extends Module> c = chain.get(k);
+                Class<? extends Module> overridden = k + 1 < chain.size() ? chain.get(k + 1) : current;
+                depth++;
+                depths.put(c, depth);
+                if (overridden != null) {
+                    overrides.put(c, overridden);
+                    roots.put(c, root);
+                } else
+                    root = c;
+            }
+            return this;
+        }
+
+        public OverrideGraph build() {
+            return new OverrideGraph(new HashMap<>(overrides), new HashMap<>(roots), new HashMap<>(depths));
+        }
+
+        private static String describe(List<Class<? extends Module>> chain, Class<? extends Module> repeated) {
+            StringBuilder sb = new StringBuilder();
+            for (Class<? extends Module> c: chain.subList(chain.indexOf(repeated), chain.size()))
+                sb.append(c.getName()).append(" -> ");
+            return sb.append(repeated.getName()).toString();
+        }
+    }
+}
@@ -16,8 +16,11 @@ import java.lang.annotation.Target;
 @Target(ElementType.TYPE)
 public @interface OverridesModule {
     /**
-     * @return The Class of the Module to override
+     * @return The Class of the Module to override. When left out the Module with the same name in
+     * the parent package is overridden, with the name of the subpackage removed as suffix if present.
+     * For example my.app.module.dev.MyModuleDev and my.app.module.dev.MyModule both override
+     * my.app.module.MyModule.
      */
 
-    Class<? extends Module> value(); // TODO return default for implementing default behaviour: default Module.class;
+    Class<? extends Module> value() default Module.class;
 }
@@ -0,0 +1,212 @@
+package houtbecke.rs.workingon;
+
+import com.google.inject.Binding;
+import com.google.inject.ConfigurationException;
+import com.google.inject.ImplementedBy;
+import com.google.inject.Injector;
+import com.google.inject.Key;
+import com.google.inject.Module;
+import com.google.inject.ProvidedBy;
+import com.google.inject.Provider;
+import com.google.inject.Stage;
+import com.google.inject.TypeLiteral;
+import com.google.inject.spi.DefaultBindingTargetVisitor;
+import com.google.inject.spi.DefaultElementVisitor;
+import com.google.inject.spi.Dependency;
+import com.google.inject.spi.Element;
+import com.google.inject.spi.Elements;
+import com.google.inject.spi.HasDependencies;
+import com.google.inject.spi.InjectionPoint;
+import com.google.inject.spi.InjectionRequest;
+import com.google.inject.spi.LinkedKeyBinding;
+import com.google.inject.spi.MembersInjectorLookup;
+import com.google.inject.spi.PrivateElements;
+import com.google.inject.spi.ProviderKeyBinding;
+import com.google.inject.spi.ProviderLookup;
+import com.google.inject.spi.StaticInjectionRequest;
+import com.google.inject.spi.UntargettedBinding;
+
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.logging.Logger;
+
+/**
+ *
+ * Decides if modules can be built into a parent injector on their own, with other modules in a child
+ * injector of it.
+ *
+ * That's the case if nothing the parent modules depend on, directly or through just-in-time bindings, is
+ * bound by the child modules, and the child modules bind no key the parent modules bind. The dependencies
+ * are collected from the elements of the modules, so no injector is built to find out.
+ *
+ */
+final class ParentModules {
+
+    /**
+     * The keys bound by elements, and the keys they depend on.
+     */
+    private static final class Collector extends DefaultElementVisitor<Void> {
+        final Set<Key<?>> boundKeys = new HashSet<>();
+        final Set<Key<?>> dependencies = new HashSet<>();
+
+        void collect(List<Element> elements) {
+            for (Element element: elements)
+                element.acceptVisitor(this);
+        }
+
+        @Override
+        public <T> Void visit(Binding<T> binding) {
+            boundKeys.add(binding.getKey());
+            if (binding instanceof HasDependencies)
+                addDependencies(((HasDependencies) binding).getDependencies());
+            binding.acceptTargetVisitor(new DefaultBindingTargetVisitor<T, Void>() {
+                @Override
+                public Void visit(LinkedKeyBinding<? extends T> linkedKeyBinding) {
+                    dependencies.add(linkedKeyBinding.getLinkedKey());
+                    return null;
+                }
+
+                @Override
+                public Void visit(ProviderKeyBinding<? extends T> providerKeyBinding) {
+                    dependencies.add(providerKeyBinding.getProviderKey());
+                    return null;
+                }
+
+                @Override
+                public Void visit(UntargettedBinding<? extends T> untargettedBinding) {
+                    addDependencies(implementationDependencies(untargettedBinding.getKey()));
+                    return null;
+                }
+            });
+            return null;
+        }
+
+        @Override
+        public Void visit(PrivateElements privateElements) {
+            Collector privateCollector = new Collector();
+            privateCollector.collect(privateElements.getElements());
+            boundKeys.addAll(privateElements.getExposedKeys());
+            for (Key<?> dependency: privateCollector.dependencies)
+                if (!privateCollector.boundKeys.contains(dependency))
+                    dependencies.add(dependency);
+            return null;
+        }
+
+        @Override
+        public Void visit(InjectionRequest<?> injectionRequest) {
+            try {
+                addInjectionPoints(injectionRequest.getInjectionPoints());
+            } catch (ConfigurationException ignore) { /* fails the same in a single injector */ }
+            return null;
+        }
+
+        @Override
+        public Void visit(StaticInjectionRequest staticInjectionRequest) {
+            try {
+                addInjectionPoints(staticInjectionRequest.getInjectionPoints());
+            } catch (ConfigurationException ignore) { /* fails the same in a single injector */ }
+            return null;
+        }
+
+        @Override
+        public <T> Void visit(ProviderLookup<T> providerLookup) {
+            dependencies.add(providerLookup.getKey());
+            return null;
+        }
+
+        @Override
+        public <T> Void visit(MembersInjectorLookup<T> membersInjectorLookup) {
+            try {
+                addInjectionPoints(InjectionPoint.forInstanceMethodsAndFields(membersInjectorLookup.getType()));
+            } catch (ConfigurationException ignore) { /* fails the same in a single injector */ }
+            return null;
+        }
+
+        private void addDependencies(Iterable<Dependency<?>> dependencies) {
+            for (Dependency<?> dependency: dependencies)
+                this.dependencies.add(dependency.getKey());
+        }
+
+        private void addInjectionPoints(Iterable<InjectionPoint> injectionPoints) {
+            for (InjectionPoint injectionPoint: injectionPoints)
+                addDependencies(injectionPoint.getDependencies());
+        }
+    }
+
+    private ParentModules() {
+    }
+
+    /**
+     * @return true if the parent modules can be built into an injector that the child modules are built into a child injector of
+     */
+    static boolean canBeParent(Collection<Module> parentModules, Collection<Module> childModules) {
+        Collector parent = new Collector();
+        parent.collect(Elements.getElements(Stage.TOOL, parentModules));
+        Collector child = new Collector();
+        child.collect(Elements.getElements(Stage.TOOL, childModules));
+
+        for (Key<?> key: child.boundKeys)
+            if (parent.boundKeys.contains(key))
+                return false;
+
+        Deque<Key<?>> keys = new ArrayDeque<>(parent.dependencies);
+        Set<Key<?>> visited = new HashSet<>();
+        while (!keys.isEmpty()) {
+            Key<?> key = keys.poll();
+            if (!visited.add(key) || parent.boundKeys.contains(key))
+                continue; // the dependencies of its binding are collected already
+            if (child.boundKeys.contains(key))
+                return false;
+            for (Dependency<?> dependency: justInTimeDependencies(key))
+                keys.add(dependency.getKey());
+        }
+        return true;
+    }
+
+    /**
+     * @return The dependencies of the just-in-time binding Guice creates for a key that's not bound, as far as they can be determined
+     */
+    private static Iterable<Dependency<?>> justInTimeDependencies(Key<?> key) {
+        Type type = key.getTypeLiteral().getType();
+        Class<?> rawType = key.getTypeLiteral().getRawType();
+        if (rawType == Provider.class || rawType == javax.inject.Provider.class) {
+            if (!(type instanceof ParameterizedType))
+                return new HashSet<>();
+            Type providedType = ((ParameterizedType) type).getActualTypeArguments()[0];
+            Key<?> providedKey = key.getAnnotationType() == null ? Key.get(providedType)
+                    : key.hasAttributes() ? Key.get(providedType, key.getAnnotation()) : Key.get(providedType, key.getAnnotationType());
+            Set<Dependency<?>> dependencies = new HashSet<>();
+            dependencies.add(Dependency.get(providedKey));
+            return dependencies;
+        }
+        if (key.getAnnotationType() != null || rawType == Injector.class || rawType == Stage.class || rawType == Logger.class)
+            return new HashSet<>();
+        return implementationDependencies(key);
+    }
+
+    private static Set<Dependency<?>> implementationDependencies(Key<?> key) {
+        Set<Dependency<?>> dependencies = new HashSet<>();
+        Class<?> rawType = key.getTypeLiteral().getRawType();
+        ImplementedBy implementedBy = rawType.getAnnotation(ImplementedBy.class);
+        ProvidedBy providedBy = rawType.getAnnotation(ProvidedBy.class);
+        if (implementedBy != null)
+            dependencies.add(Dependency.get(Key.get(implementedBy.value())));
+        else if (providedBy != null)
+            dependencies.add(Dependency.get(Key.get(providedBy.value())));
+        else if (!rawType.isInterface() && !Modifier.isAbstract(rawType.getModifiers()))
+            try {
+                TypeLiteral<?> typeLiteral = key.getTypeLiteral();
+                dependencies.addAll(InjectionPoint.forConstructorOf(typeLiteral).getDependencies());
+                for (InjectionPoint injectionPoint: InjectionPoint.forInstanceMethodsAndFields(typeLiteral))
+                    dependencies.addAll(injectionPoint.getDependencies());
+            } catch (ConfigurationException ignore) { /* fails the same in a single injector */ }
+        return dependencies;
+    }
+}
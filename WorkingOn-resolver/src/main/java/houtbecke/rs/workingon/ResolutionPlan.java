@@ -0,0 +1,142 @@
+package houtbecke.rs.workingon;
+
+import com.google.inject.Module;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ *
+ * The modules resolved by loadModules, as the classes of the modules to create in order and the classes
+ * of the modules overriding each of them.
+ *
+ * A plan can be written to a file and read back on a later start, in which case the modules are created
+ * directly from the plan without probing for task modules. Every plan has a key describing what it was
+ * resolved from, and a plan is only read back if the key is the same.
+ *
+ */
+final class ResolutionPlan {
+
+    private final String key;
+    private final List<List<String>> entries;
+
+    private ResolutionPlan(String key, List<List<String>> entries) {
+        this.key = key;
+        this.entries = Collections.unmodifiableList(entries);
+    }
+
+    /**
+     * @param key Describes everything the modules were resolved from
+     * @param modules The modules as resolved by loadModules, before extra module instances are added
+     */
+    static ResolutionPlan of(String key, Collection<Module> modules) {
+        List<List<String>> entries = new ArrayList<>(modules.size());
+        for (Module module: modules) {
+            List<String> entry = new ArrayList<>();
+            if (module instanceof OverrideChain) {
+                OverrideChain chain = (OverrideChain) module;
+                entry.add(chain.getModule().getClass().getName());
+                for (Module overridingModule: chain.getOverridingModules())
+                    entry.add(overridingModule.getClass().getName());
+            } else
+                entry.add(module.getClass().getName());
+            entries.add(entry);
+        }
+        return new ResolutionPlan(key, entries);
+    }
+
+    String getKey() {
+        return key;
+    }
+
+    /**
+     * @return For each module to create the name of its class, followed by the names of the classes
+     *         of the modules overriding it
+     */
+    List<List<String>> getEntries() {
+        return entries;
+    }
+
+    /**
+     * Creates the modules of this plan and their overrides.
+     *
+     * @return The modules, or null if any of the classes in the plan no longer exists or is no Module
+     */
+    List<Module> instantiate(ModuleResolver resolver) throws IllegalAccessException, InstantiationException, InvocationTargetException {
+        List<Module> modules = new ArrayList<>(entries.size());
+        for (List<String> entry: entries) {
+            Module module = null;
+            for (String className: entry) {
+                Class<?> moduleClass = resolver.getClassResolutionCache().forName(className);
+                if (moduleClass == null || !Module.class.isAssignableFrom(moduleClass))
+                    return null;
+                Module created = resolver.newModule(moduleClass);
+                module = module == null ? created : OverrideChain.override(module, created);
+            }
+            modules.add(module);
+        }
+        return modules;
+    }
+
+    /**
+     * Writes this plan to a file, as the key on the first line followed by a line per module. The plan is
+     * written to a temporary file with a name of its own first, so processes writing the same file at the
+     * same time don't write into each other's file.
+     */
+    void write(File file) throws IOException {
+        File temp = File.createTempFile(file.getName(), ".tmp", file.getAbsoluteFile().getParentFile());
+        try {
+            writeTo(temp);
+            if (!temp.renameTo(file))
+                throw new IOException("Could not rename " + temp + " to " + file);
+        } finally {
+            if (temp.exists() && !temp.delete())
+                temp.deleteOnExit();
+        }
+    }
+
+    private void writeTo(File temp) throws IOException {
+        try (Writer writer = new FileWriter(temp)) {
+            writer.write(key);
+            writer.write('\n');
+            for (List<String> entry: entries) {
+                for (int k = 0; k < entry.size(); k++) {
+                    if (k > 0)
+                        writer.write(' ');
+                    writer.write(entry.get(k));
+                }
+                writer.write('\n');
+            }
+        }
+    }
+
+    /**
+     * @return The plan in the file, or null if the file does not exist, can not be read or has a different key
+     */
+    static ResolutionPlan read(File file, String key) {
+        if (!file.exists())
+            return null;
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            if (!key.equals(reader.readLine()))
+                return null;
+            List<List<String>> entries = new ArrayList<>();
+            String line;
+            while ((line = reader.readLine()) != null)
+                if (!line.isEmpty())
+                    entries.add(Arrays.asList(line.split(" ")));
+            return new ResolutionPlan(key, entries);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package houtbecke.rs.workingon;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ *
+ * A WorkingOnTracer that records all phases in memory.
+ *
+ * After loading the configuration the recorded phases can be summarized per phase, or written as
+ * a Chrome trace JSON file that can be opened in chrome://tracing or Perfetto.
+ *
+ */
+public class TraceRecorder implements WorkingOnTracer {
+
+    public static class Event {
+        public final Phase phase;
+        public final String detail;
+        public final long startNanos;
+        public final long endNanos;
+        public final long threadId;
+
+        Event(Phase phase, String detail, long startNanos, long endNanos, long threadId) {
+            this.phase = phase;
+            this.detail = detail;
+            this.startNanos = startNanos;
+            this.endNanos = endNanos;
+            this.threadId = threadId;
+        }
+
+        public long getDurationNanos() {
+            return endNanos - startNanos;
+        }
+    }
+
+    private final List<Event> events = new ArrayList<>();
+
+    @Override
+    public void begin(Phase phase, String detail, long startNanos) {
+        // we only record complete phases
+    }
+
+    @Override
+    public void end(Phase phase, String detail, long startNanos, long endNanos) {
+        Event event = new Event(phase, detail, startNanos, endNanos, Thread.currentThread().getId());
+        synchronized (events) {
+            events.add(event);
+        }
+    }
+
+    /**
+     * @return A copy of all recorded events, in the order the phases ended
+     */
+    public List<Event> getEvents() {
+        synchronized (events) {
+            return new ArrayList<>(events);
+        }
+    }
+
+    public void clear() {
+        synchronized (events) {
+            events.clear();
+        }
+    }
+
+    /**
+     * @return For each phase the number of times it occurred and the total time spent in it. Time
+     *         spent in nested phases is also counted for the phase containing them.
+     */
+    public String summary() {
+        Map<Phase, long[]> totals = new EnumMap<>(Phase.class);
+        for (Event event: getEvents()) {
+            long[] total = totals.get(event.phase);
+            if (total == null) {
+                total = new long[2];
+                totals.put(event.phase, total);
+            }
+            total[0]++;
+            total[1] += event.getDurationNanos();
+        }
+        StringBuilder sb = new StringBuilder("WorkingOn startup trace:\n");
+        for (Map.Entry<Phase, long[]> entry: totals.entrySet())
+            sb.append(String.format("%-20s %6d x %10.3f ms%n", entry.getKey(), entry.getValue()[0], entry.getValue()[1] / 1000000.0));
+        return sb.toString();
+    }
+
+    /**
+     * Writes all recorded events in the Chrome trace event format.
+     */
+    public void writeChromeTrace(Writer writer) throws IOException {
+        List<Event> recorded = getEvents();
+        long origin = Long.MAX_VALUE;
+        for (Event event: recorded)
+            origin = Math.min(origin, event.startNanos);
+
+        writer.write("{\"traceEvents\":[");
+        boolean first = true;
+        for (Event event: recorded) {
+            if (!first)
+                writer.write(",");
+            first = false;
+            writer.write("\n{\"name\":\"" + event.phase + "\",\"cat\":\"workingon\",\"ph\":\"X\",\"pid\":1,\"tid\":" + event.threadId
+                    + ",\"ts\":" + (event.startNanos - origin) / 1000.0 + ",\"dur\":" + event.getDurationNanos() / 1000.0);
+            if (event.detail != null)
+                writer.write(",\"args\":{\"detail\":\"" + escape(event.detail) + "\"}");
+            writer.write("}");
+        }
+        writer.write("\n]}\n");
+        writer.flush();
+    }
+
+    /**
+     * Writes all recorded events in the Chrome trace event format to a file.
+     */
+    public void writeChromeTrace(File file) throws IOException {
+        try (Writer writer = new FileWriter(file)) {
+            writeChromeTrace(writer);
+        }
+    }
+
+    private static String escape(String s) {
+        StringBuilder sb = new StringBuilder(s.length());
+        for (char c: s.toCharArray()) {
+            if (c == '"' || c == '\\')
+                sb.append('\\').append(c);
+            else if (c < 0x20)
+                sb.append(String.format("\\u%04x", (int) c));
+            else
+                sb.append(c);
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,54 @@
+package houtbecke.rs.workingon;
+
+/**
+ *
+ * Receives the begin and end of each phase of loading the WorkingOn configuration.
+ *
+ * Set a tracer with WorkingOn.setTracer, or ModuleResolver.setTracer, to find out where startup time
+ * is spent. Tracers are called on the thread that loads the configuration, and with a module instantiation
+ * executor also on its threads at the same time, so they must be thread safe and should return quickly.
+ * TraceRecorder is a tracer that keeps all events in memory.
+ *
+ */
+public interface WorkingOnTracer {
+
+    enum Phase {
+        /** Instantiating the configuration class, detail is its name */
+        CONFIG_CLASS,
+        /** Reading the configuration file, detail is its path */
+        CONFIG_FILE,
+        /** Probing task module classes and building the override graph */
+        PROBE,
+        /** Resolving a module passed to loadModules, detail is its class name */
+        RESOLVE_MODULE,
+        /** Resolving a module for a task, detail is the task followed by the module class name */
+        RESOLVE_TASK,
+        /** Creating a module instance, detail is its class name */
+        INSTANTIATE,
+        /** Wrapping a module with Modules.override, detail is the class name of the overriding module */
+        OVERRIDE,
+        /** Checking the modules for keys bound more than once before creating the injector */
+        CHECK_CONFLICTS,
+        /** Creating the RoboGuice base application injector */
+        CREATE_INJECTOR,
+        /** Injecting the members of the application */
+        INJECT_APPLICATION,
+        /** Calling WorkingOnApplication.startWorkingOn */
+        START_WORKING_ON
+    }
+
+    /**
+     * @param phase The phase that begins
+     * @param detail Details such as the module or task the phase is for, or null
+     * @param startNanos The System.nanoTime at which the phase begins
+     */
+    void begin(Phase phase, String detail, long startNanos);
+
+    /**
+     * @param phase The phase that ended
+     * @param detail Details such as the module or task the phase is for, or null
+     * @param startNanos The System.nanoTime at which the phase began
+     * @param endNanos The System.nanoTime at which the phase ended
+     */
+    void end(Phase phase, String detail, long startNanos, long endNanos);
+}
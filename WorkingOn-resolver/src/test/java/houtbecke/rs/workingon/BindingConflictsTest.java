@@ -0,0 +1,83 @@
+package houtbecke.rs.workingon;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.Key;
+import com.google.inject.Module;
+import com.google.inject.name.Names;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+
+import houtbecke.rs.workingon.sample.AppModule;
+import houtbecke.rs.workingon.sample.OtherModule;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class BindingConflictsTest {
+
+    public static class GreetingModule extends AbstractModule {
+        @Override
+        protected void configure() {
+            bind(String.class).annotatedWith(Names.named("greeting")).toInstance("child");
+        }
+    }
+
+    public static class Plain {
+    }
+
+    public static class PlainModule extends AbstractModule {
+        @Override
+        protected void configure() {
+            bind(Plain.class);
+        }
+    }
+
+    @Test
+    public void childModuleBindingKeyOfParentConflicts() {
+        Injector parent = Guice.createInjector(new AppModule());
+        List<BindingConflicts.Conflict> conflicts = BindingConflicts.check(Collections.<String>emptyList(), Collections.<Module>singletonList(new GreetingModule()), parent);
+
+        assertEquals(1, conflicts.size());
+        BindingConflicts.Conflict conflict = conflicts.get(0);
+        assertEquals(Key.get(String.class, Names.named("greeting")), conflict.getKey());
+        assertEquals(AppModule.class.getName(), conflict.getContributions().get(0).getModuleClassName());
+        assertEquals(GreetingModule.class.getName(), conflict.getContributions().get(1).getModuleClassName());
+    }
+
+    @Test
+    public void childModuleBindingJustInTimeKeyOfParentConflicts() {
+        Injector parent = Guice.createInjector();
+        parent.getInstance(Plain.class);
+        List<BindingConflicts.Conflict> conflicts = BindingConflicts.check(Collections.<String>emptyList(), Collections.<Module>singletonList(new PlainModule()), parent);
+
+        assertEquals(1, conflicts.size());
+        assertNull(conflicts.get(0).getContributions().get(0).getModuleClassName());
+    }
+
+    @Test
+    public void childModulesNotBindingKeysOfParentDontConflict() {
+        Injector parent = Guice.createInjector(new AppModule());
+
+        assertTrue(BindingConflicts.check(Collections.<String>emptyList(), Collections.<Module>singletonList(new OtherModule()), parent).isEmpty());
+    }
+
+    @Test
+    public void resolverChecksChildInjectorAgainstParent() {
+        ModuleResolver resolver = new ModuleResolver(() -> true);
+        resolver.setConflictCheck(true);
+        final Injector parent = Guice.createInjector(new AppModule());
+        try {
+            resolver.createInjector(parent::createChildInjector, Collections.<String>emptyList(), Collections.<Module>singletonList(new GreetingModule()), parent);
+            fail("conflict with the parent was not reported");
+        } catch (BindingConflictException e) {
+            assertEquals(1, e.getConflicts().size());
+        }
+    }
+}
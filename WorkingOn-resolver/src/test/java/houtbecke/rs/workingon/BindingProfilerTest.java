@@ -0,0 +1,115 @@
+package houtbecke.rs.workingon;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.Key;
+import com.google.inject.Module;
+import com.google.inject.name.Names;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import houtbecke.rs.workingon.sample.AppModule;
+import houtbecke.rs.workingon.sample.OtherModule;
+import houtbecke.rs.workingon.sample.dev.AppModuleDev;
+import houtbecke.rs.workingon.sample.dev.Dev;
+
+import static org.junit.Assert.assertEquals;
+
+public class BindingProfilerTest {
+
+    private ModuleResolver resolver;
+    private BindingProfiler profiler;
+
+    @Before
+    public void setUp() {
+        resolver = new ModuleResolver(() -> true);
+        resolver.setModuleFactories(null);
+        profiler = new BindingProfiler();
+        resolver.setBindingProfiler(profiler);
+    }
+
+    @Test
+    public void overrideIsAttributedToOverridingModule() throws Exception {
+        Injector injector = load(Collections.singletonList("Dev"), AppModule.class, OtherModule.class);
+
+        assertStats(injector, "greeting", AppModuleDev.class, BindingProfiler.Role.OVERRIDE);
+        assertStats(injector, "farewell", AppModule.class, BindingProfiler.Role.BASE);
+        assertStats(injector, "dev", Dev.class, BindingProfiler.Role.TASK);
+    }
+
+    @Test
+    public void replacingModuleIsTaskModule() throws Exception {
+        Injector injector = load(Collections.singletonList("Replace"), OtherModule.class);
+
+        assertStats(injector, "other", houtbecke.rs.workingon.sample.replace.OtherModule.class, BindingProfiler.Role.TASK);
+    }
+
+    @Test
+    public void loadedModuleInPackageNamedAfterTaskIsBaseModule() throws Exception {
+        Injector injector = load(Collections.singletonList("Replace"), houtbecke.rs.workingon.sample.replace.OtherModule.class);
+
+        assertStats(injector, "other", houtbecke.rs.workingon.sample.replace.OtherModule.class, BindingProfiler.Role.BASE);
+    }
+
+    private static final Key<String> NAME = Key.get(String.class, Names.named("name"));
+
+    public static class FirstNameModule extends AbstractModule {
+        @Override
+        protected void configure() {
+            bind(NAME).toProvider(() -> "first");
+        }
+    }
+
+    public static class SecondNameModule extends AbstractModule {
+        @Override
+        protected void configure() {
+            bind(NAME).toProvider(() -> "second");
+        }
+    }
+
+    @Test
+    public void statsAreKeptByContributingModule() {
+        Injector first = resolver.createInjector(modules -> Guice.createInjector(modules), Collections.<Module>singletonList(new FirstNameModule()));
+        first.getInstance(NAME);
+        first.getInstance(NAME);
+        resolver.createInjector(modules -> Guice.createInjector(modules), Collections.<Module>singletonList(new SecondNameModule())).getInstance(NAME);
+
+        assertEquals(SecondNameModule.class.getName(), profiler.get(NAME).getModuleClassName());
+        assertEquals(1, profiler.get(NAME).getCount());
+        assertEquals(2, profiler.getStats().size());
+        for (BindingProfiler.BindingStats stats: profiler.getStats())
+            assertEquals(stats.getModuleClassName().equals(FirstNameModule.class.getName()) ? 2 : 1, stats.getCount());
+    }
+
+    @Test
+    public void childInjectorIsProfiledOnce() throws Exception {
+        final Injector parent = load(Collections.<String>emptyList(), AppModule.class);
+        Injector child = resolver.createInjector(modules -> parent.createChildInjector(modules), Collections.<String>emptyList(),
+                Collections.<Module>singletonList(new FirstNameModule()), parent);
+
+        child.getInstance(NAME);
+
+        assertEquals(1, profiler.get(NAME).getCount());
+        assertEquals(FirstNameModule.class.getName(), profiler.get(NAME).getModuleClassName());
+        assertEquals(BindingProfiler.Role.BASE, profiler.get(NAME).getRole());
+    }
+
+    private void assertStats(Injector injector, String name, Class<? extends Module> moduleClass, BindingProfiler.Role role) {
+        Key<String> key = Key.get(String.class, Names.named(name));
+        injector.getInstance(key);
+        BindingProfiler.BindingStats stats = profiler.get(key);
+        assertEquals(moduleClass.getName(), stats.getModuleClassName());
+        assertEquals(role, stats.getRole());
+    }
+
+    @SafeVarargs
+    private final Injector load(List<String> tasks, Class<? extends Module>... moduleClasses) throws Exception {
+        return resolver.load(modules -> Guice.createInjector(modules), tasks, Arrays.asList(moduleClasses), Collections.<Module>emptyList());
+    }
+}
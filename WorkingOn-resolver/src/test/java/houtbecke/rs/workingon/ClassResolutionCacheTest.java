@@ -0,0 +1,80 @@
+package houtbecke.rs.workingon;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import houtbecke.rs.workingon.sample.AppModule;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class ClassResolutionCacheTest {
+
+    private static final String MISSING = "houtbecke.rs.workingon.sample.DoesNotExist";
+
+    private ClassResolutionCache cache;
+
+    @Before
+    public void setUp() {
+        cache = new ClassResolutionCache();
+    }
+
+    @Test
+    public void firstLookupIsMissAndLaterLookupsAreHits() {
+        assertSame(AppModule.class, cache.forName(AppModule.class.getName()));
+        assertSame(AppModule.class, cache.forName(AppModule.class.getName()));
+        assertSame(AppModule.class, cache.forName(AppModule.class.getName()));
+
+        assertEquals(1, cache.getMisses());
+        assertEquals(2, cache.getHits());
+    }
+
+    @Test
+    public void missingClassIsCachedToo() {
+        assertNull(cache.forName(MISSING));
+        assertNull(cache.forName(MISSING));
+
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, cache.getHits());
+    }
+
+    @Test
+    public void clearForgetsClassesAndCounts() {
+        cache.forName(AppModule.class.getName());
+        cache.forName(AppModule.class.getName());
+        cache.clear();
+
+        assertEquals(0, cache.getMisses());
+        assertEquals(0, cache.getHits());
+
+        assertSame(AppModule.class, cache.forName(AppModule.class.getName()));
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void concurrentLookupsResolveOnce() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Callable<Class<?>>> lookups = new ArrayList<>();
+            for (int i = 0; i < 64; i++) {
+                String name = i % 2 == 0 ? AppModule.class.getName() : MISSING;
+                lookups.add(() -> cache.forName(name));
+            }
+            for (Future<Class<?>> result: executor.invokeAll(lookups))
+                result.get();
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(2, cache.getMisses());
+        assertEquals(62, cache.getHits());
+    }
+}
@@ -0,0 +1,172 @@
+package houtbecke.rs.workingon;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.Module;
+import com.google.inject.Singleton;
+import com.google.inject.TypeLiteral;
+import com.google.inject.matcher.Matchers;
+import com.google.inject.multibindings.Multibinder;
+import com.google.inject.spi.TypeEncounter;
+import com.google.inject.spi.TypeListener;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class DeferredModulesTest {
+
+    private static final AtomicInteger declaredConfigured = new AtomicInteger();
+    private static final AtomicInteger recordedConfigured = new AtomicInteger();
+
+    public static class Service {
+    }
+
+    public static class OtherService {
+    }
+
+    @DeferredModule(Service.class)
+    public static class DeclaredModule extends AbstractModule {
+        @Override
+        protected void configure() {
+            declaredConfigured.incrementAndGet();
+            bind(Service.class).in(Singleton.class);
+        }
+    }
+
+    @DeferredModule
+    public static class RecordedModule extends AbstractModule {
+        @Override
+        protected void configure() {
+            recordedConfigured.incrementAndGet();
+            bind(OtherService.class).in(Singleton.class);
+        }
+    }
+
+    @DeferredModule
+    public static class MultibindingModule extends AbstractModule {
+        @Override
+        protected void configure() {
+            Multibinder.newSetBinder(binder(), String.class).addBinding().toInstance("deferred");
+        }
+    }
+
+    @DeferredModule
+    public static class ListeningModule extends AbstractModule {
+        @Override
+        protected void configure() {
+            bindListener(Matchers.any(), new TypeListener() {
+                @Override
+                public <I> void hear(TypeLiteral<I> type, TypeEncounter<I> encounter) {
+                }
+            });
+        }
+    }
+
+    @DeferredModule
+    public static class ParentKeyModule extends AbstractModule {
+        @Override
+        protected void configure() {
+            bind(Service.class);
+        }
+    }
+
+    private ModuleResolver resolver;
+
+    @Before
+    public void setUp() {
+        resolver = new ModuleResolver(() -> true);
+        declaredConfigured.set(0);
+        recordedConfigured.set(0);
+    }
+
+    private Injector defer(Injector parent, Module... modules) {
+        List<Module> deferredModules = new ArrayList<>();
+        Collections.addAll(deferredModules, modules);
+        return resolver.createDeferringInjector(parent, Collections.<String>emptyList(), deferredModules);
+    }
+
+    @Test
+    public void declaredModuleIsBuiltOnceUnderConcurrentFirstAccess() throws Exception {
+        final Injector injector = defer(Guice.createInjector(), new DeclaredModule());
+        assertEquals(0, declaredConfigured.get());
+
+        int threads = 16;
+        final CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Service>> services = new ArrayList<>();
+            for (int k = 0; k < threads; k++)
+                services.add(executor.submit(new Callable<Service>() {
+                    @Override
+                    public Service call() throws Exception {
+                        start.await();
+                        return injector.getInstance(Service.class);
+                    }
+                }));
+            start.countDown();
+            Service first = services.get(0).get();
+            for (Future<Service> service: services)
+                assertSame(first, service.get());
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(1, declaredConfigured.get());
+    }
+
+    @Test
+    public void recordedModuleIsConfiguredOnce() {
+        Injector injector = defer(Guice.createInjector(), new RecordedModule());
+        assertEquals(1, recordedConfigured.get());
+
+        assertSame(injector.getInstance(OtherService.class), injector.getInstance(OtherService.class));
+        assertEquals(1, recordedConfigured.get());
+    }
+
+    @Test
+    public void multibindingIsRejected() {
+        assertRejected(MultibindingModule.class, "Multibinder");
+    }
+
+    @Test
+    public void typeListenerIsRejected() {
+        assertRejected(ListeningModule.class, "type listener");
+    }
+
+    @Test
+    public void keyOfParentIsRejected() {
+        assertRejected(ParentKeyModule.class, Service.class.getName());
+    }
+
+    private void assertRejected(Class<? extends Module> moduleClass, String reason) {
+        Injector parent = Guice.createInjector(new AbstractModule() {
+            @Override
+            protected void configure() {
+                bind(Service.class);
+            }
+        });
+        try {
+            defer(parent, moduleClass.newInstance());
+            fail(moduleClass.getName() + " was deferred");
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains(moduleClass.getName()) && e.getMessage().contains(reason));
+        } catch (ReflectiveOperationException e) {
+            throw new AssertionError(e);
+        }
+    }
+}
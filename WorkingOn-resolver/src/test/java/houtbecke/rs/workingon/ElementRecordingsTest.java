@@ -0,0 +1,150 @@
+package houtbecke.rs.workingon;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.Inject;
+import com.google.inject.Module;
+import com.google.inject.Provider;
+import com.google.inject.name.Named;
+import com.google.inject.name.Names;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+
+public class ElementRecordingsTest {
+
+    private static final AtomicInteger configured = new AtomicInteger();
+
+    public static class Greeter {
+        @Inject
+        @Named("name")
+        String name;
+    }
+
+    public static class GreeterProvider implements Provider<Greeter> {
+        @Inject
+        @Named("name")
+        String name;
+
+        @Override
+        public Greeter get() {
+            return new Greeter();
+        }
+    }
+
+    @CacheableModule
+    public static class PlainInstanceModule extends AbstractModule {
+        @Override
+        protected void configure() {
+            configured.incrementAndGet();
+            bind(String.class).annotatedWith(Names.named("greeting")).toInstance("hello");
+        }
+    }
+
+    @CacheableModule
+    public static class InjectedInstanceModule extends AbstractModule {
+        @Override
+        protected void configure() {
+            configured.incrementAndGet();
+            bind(Greeter.class).toInstance(new Greeter());
+        }
+    }
+
+    @CacheableModule
+    public static class InjectedProviderModule extends AbstractModule {
+        @Override
+        protected void configure() {
+            configured.incrementAndGet();
+            bind(Greeter.class).toProvider(new GreeterProvider());
+        }
+    }
+
+    @CacheableModule
+    public static class InjectionRequestModule extends AbstractModule {
+        @Override
+        protected void configure() {
+            configured.incrementAndGet();
+            requestInjection(new Greeter());
+        }
+    }
+
+    private ElementRecordings recordings;
+
+    @Before
+    public void setUp() {
+        recordings = new ElementRecordings();
+        configured.set(0);
+    }
+
+    @Test
+    public void plainInstanceIsReplayed() {
+        assertConfigured(1, new PlainInstanceModule());
+    }
+
+    @Test
+    public void instanceWithInjectableMembersIsNotReplayed() {
+        assertConfigured(3, new InjectedInstanceModule());
+    }
+
+    @Test
+    public void providerInstanceWithInjectableMembersIsNotReplayed() {
+        assertConfigured(3, new InjectedProviderModule());
+    }
+
+    @Test
+    public void injectionRequestIsNotReplayed() {
+        assertConfigured(3, new InjectionRequestModule());
+    }
+
+    @Test
+    public void moduleCreatedByRegistryIsReplayed() throws Exception {
+        ModuleResolver resolver = new ModuleResolver(() -> false);
+        resolver.setModuleFactories(new ModuleFactories() {
+            @Override
+            public boolean contains(String moduleClassName) {
+                return moduleClassName.equals(PlainInstanceModule.class.getName());
+            }
+
+            @Override
+            public Module create(String moduleClassName, boolean debugMode) {
+                return contains(moduleClassName) ? new PlainInstanceModule() : null;
+            }
+
+            @Override
+            public Class<? extends Module> overrides(String moduleClassName) {
+                return null;
+            }
+        });
+
+        Module module = resolver.getModule(PlainInstanceModule.class.getName(), null, null, null);
+        for (int k = 0; k < 3; k++)
+            resolver.createInjector(modules -> Guice.createInjector(modules), Collections.singletonList(module));
+
+        assertEquals(1, configured.get());
+    }
+
+    /**
+     * Builds three injectors with the module, the first records it
+     */
+    private void assertConfigured(int times, Module module) {
+        recordings.created(module, false);
+        Module name = new AbstractModule() {
+            @Override
+            protected void configure() {
+                bind(String.class).annotatedWith(Names.named("name")).toInstance("name");
+            }
+        };
+        for (int k = 0; k < 3; k++) {
+            List<Module> modules = recordings.replaying(Collections.singletonList(module));
+            modules.add(name);
+            Guice.createInjector(modules);
+        }
+        assertEquals(times, configured.get());
+    }
+}
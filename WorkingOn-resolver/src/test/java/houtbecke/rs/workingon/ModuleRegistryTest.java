@@ -0,0 +1,125 @@
+package houtbecke.rs.workingon;
+
+import com.google.inject.Module;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+
+import houtbecke.rs.workingon.sample.AppModule;
+import houtbecke.rs.workingon.sample.OtherModule;
+import houtbecke.rs.workingon.sample.dev.AppModuleDev;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ModuleRegistryTest {
+
+    @Test
+    public void keepsTheOrderModulesWereAddedIn() {
+        ModuleRegistry registry = new ModuleRegistry();
+        Module other = new OtherModule();
+        Module app = new AppModule();
+        Module dev = new AppModuleDev(true);
+
+        assertTrue(registry.add(other));
+        assertTrue(registry.add(app));
+        assertTrue(registry.add(dev));
+        assertFalse(registry.add(app));
+
+        assertEquals(Arrays.asList(other, app, dev), new ArrayList<>(registry));
+        assertEquals(3, registry.size());
+    }
+
+    @Test
+    public void findsTheLastModuleOfExactlyAClass() {
+        ModuleRegistry registry = new ModuleRegistry();
+        Module first = new AppModule();
+        Module last = new AppModule();
+        Module dev = new AppModuleDev(true);
+        registry.add(first);
+        registry.add(dev);
+        registry.add(last);
+
+        assertSame(last, registry.find(AppModule.class));
+        assertSame(dev, registry.find(AppModuleDev.class));
+        assertNull(registry.find(OtherModule.class));
+
+        registry.remove(last);
+        assertSame(first, registry.find(AppModule.class));
+    }
+
+    @Test
+    public void removeAllOfClassRemovesOnlyThatClass() {
+        ModuleRegistry registry = new ModuleRegistry();
+        Module first = new AppModule();
+        Module dev = new AppModuleDev(true);
+        Module last = new AppModule();
+        registry.add(first);
+        registry.add(dev);
+        registry.add(last);
+
+        assertSame(last, registry.removeAllOfClass(AppModule.class));
+
+        assertEquals(Arrays.asList(dev), new ArrayList<>(registry));
+        assertNull(registry.find(AppModule.class));
+        assertNull(registry.removeAllOfClass(AppModule.class));
+    }
+
+    @Test
+    public void overridesAreUnregisteredWhenTheirModuleIsRemoved() {
+        ModuleRegistry registry = new ModuleRegistry();
+        Module dev = new AppModuleDev(true);
+        registry.add(dev);
+        registry.putOverride(AppModule.class, dev);
+
+        assertSame(dev, registry.getOverride(AppModule.class));
+
+        registry.remove(dev);
+
+        assertNull(registry.getOverride(AppModule.class));
+    }
+
+    @Test
+    public void iteratorRemovalKeepsTheIndexesUpToDate() {
+        ModuleRegistry registry = new ModuleRegistry();
+        Module app = new AppModule();
+        Module dev = new AppModuleDev(true);
+        registry.add(app);
+        registry.add(dev);
+        registry.putOverride(AppModule.class, dev);
+
+        for (Iterator<Module> it = registry.iterator(); it.hasNext();)
+            if (it.next() == dev)
+                it.remove();
+
+        assertFalse(registry.contains(dev));
+        assertNull(registry.find(AppModuleDev.class));
+        assertNull(registry.getOverride(AppModule.class));
+        assertSame(app, registry.find(AppModule.class));
+    }
+
+    @Test
+    public void putOverrideReplacesTheEarlierOverride() {
+        ModuleRegistry registry = new ModuleRegistry();
+        Module first = new AppModuleDev(true);
+        Module second = new OtherModule();
+        registry.add(first);
+        registry.add(second);
+        registry.putOverride(AppModule.class, first);
+        registry.putOverride(AppModule.class, second);
+
+        // the earlier override is no longer registered, so removing it keeps the new one
+        registry.remove(first);
+        assertSame(second, registry.getOverride(AppModule.class));
+
+        assertSame(second, registry.removeOverride(AppModule.class));
+        assertNull(registry.getOverride(AppModule.class));
+        assertTrue(registry.contains(second));
+    }
+}
@@ -0,0 +1,141 @@
+package houtbecke.rs.workingon;
+
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.Key;
+import com.google.inject.Module;
+import com.google.inject.name.Names;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import houtbecke.rs.workingon.sample.AppModule;
+import houtbecke.rs.workingon.sample.ExtraOverride;
+import houtbecke.rs.workingon.sample.OtherModule;
+import houtbecke.rs.workingon.sample.dev.AppModuleDev;
+import houtbecke.rs.workingon.sample.orphan.MissingOrphan;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ModuleResolverTest {
+
+    private ModuleResolver resolver;
+
+    @Before
+    public void setUp() {
+        resolver = new ModuleResolver(() -> true);
+        resolver.setModuleFactories(null);
+    }
+
+    @Test
+    public void withoutTasks() throws Exception {
+        Injector injector = load(Collections.<String>emptyList(), AppModule.class, OtherModule.class);
+
+        assertEquals("app", named(injector, "greeting"));
+        assertEquals("app", named(injector, "farewell"));
+        assertEquals("other", named(injector, "other"));
+    }
+
+    @Test
+    public void probesTaskModules() throws Exception {
+        Injector injector = load(Collections.singletonList("Dev"), AppModule.class, OtherModule.class);
+
+        assertEquals("base", named(injector, "dev")); // sample.dev.Dev
+        assertEquals("dev", named(injector, "greeting")); // sample.dev.AppModuleDev, before sample.dev.AppModule
+        assertEquals("app", named(injector, "farewell"));
+        assertEquals("true", named(injector, "debug"));
+        assertEquals("other", named(injector, "other"));
+    }
+
+    @Test
+    public void probesTaskModuleWithoutSuffix() throws Exception {
+        Injector injector = load(Collections.singletonList("Mock"), AppModule.class);
+
+        assertEquals("app", named(injector, "greeting"));
+        assertEquals("mock", named(injector, "farewell")); // sample.mock.AppModule
+    }
+
+    @Test
+    public void overridesForEveryTask() throws Exception {
+        Injector injector = load(Arrays.asList("Dev", "Mock"), AppModule.class);
+
+        assertEquals("dev", named(injector, "greeting"));
+        assertEquals("mock", named(injector, "farewell"));
+    }
+
+    @Test
+    public void replacesModuleThatIsNotOverridden() throws Exception {
+        Injector injector = load(Collections.singletonList("Replace"), AppModule.class, OtherModule.class);
+
+        assertEquals("replaced", named(injector, "other"));
+        assertEquals(1, count(resolver.resolve(Collections.singletonList("Replace"), classes(OtherModule.class), Collections.<Module>emptyList())));
+    }
+
+    @Test
+    public void overridesOutsideTasks() throws Exception {
+        Injector injector = load(Collections.<String>emptyList(), AppModule.class, ExtraOverride.class);
+
+        assertEquals("extra", named(injector, "greeting"));
+        assertEquals("app", named(injector, "farewell"));
+    }
+
+    @Test
+    public void overridesModuleWithTaskSuffixRemoved() {
+        assertEquals(AppModule.class, resolver.overriddenClassOf(AppModuleDev.class));
+    }
+
+    @Test
+    public void overridesModuleWithSameName() {
+        assertEquals(AppModule.class, resolver.overriddenClassOf(houtbecke.rs.workingon.sample.mock.AppModule.class));
+        assertEquals(AppModule.class, resolver.overriddenClassOf(ExtraOverride.class));
+        assertNull(resolver.overriddenClassOf(AppModule.class));
+    }
+
+    @Test
+    public void failsToOverrideMissingModule() {
+        try {
+            resolver.overriddenClassOf(MissingOrphan.class);
+            fail();
+        } catch (RuntimeException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("houtbecke.rs.workingon.sample"));
+        }
+    }
+
+    @Test
+    public void failsOnCyclicOverrides() throws Exception {
+        try {
+            resolver.resolve(Collections.<String>emptyList(), classes(houtbecke.rs.workingon.sample.cycle.First.class), Collections.<Module>emptyList());
+            fail();
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("Cyclic OverridesModule chain"));
+        }
+    }
+
+    @SafeVarargs
+    private final Injector load(List<String> tasks, Class<? extends Module>... moduleClasses) throws Exception {
+        return Guice.createInjector(resolver.resolve(tasks, classes(moduleClasses), Collections.<Module>emptyList()));
+    }
+
+    @SafeVarargs
+    private static List<Class<? extends Module>> classes(Class<? extends Module>... moduleClasses) {
+        return Arrays.asList(moduleClasses);
+    }
+
+    private static int count(Iterable<Module> modules) {
+        int count = 0;
+        for (Module ignore: modules)
+            count++;
+        return count;
+    }
+
+    private static String named(Injector injector, String name) {
+        return injector.getInstance(Key.get(String.class, Names.named(name)));
+    }
+}
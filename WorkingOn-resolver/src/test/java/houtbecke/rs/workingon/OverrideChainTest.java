@@ -0,0 +1,375 @@
+package houtbecke.rs.workingon;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Binding;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.Key;
+import com.google.inject.Module;
+import com.google.inject.PrivateModule;
+import com.google.inject.Provider;
+import com.google.inject.Scope;
+import com.google.inject.ScopeAnnotation;
+import com.google.inject.Scopes;
+import com.google.inject.Singleton;
+import com.google.inject.TypeLiteral;
+import com.google.inject.multibindings.MapBinder;
+import com.google.inject.multibindings.Multibinder;
+import com.google.inject.name.Names;
+import com.google.inject.spi.DefaultBindingScopingVisitor;
+import com.google.inject.spi.DefaultBindingTargetVisitor;
+import com.google.inject.spi.DefaultElementVisitor;
+import com.google.inject.spi.Element;
+import com.google.inject.spi.Elements;
+import com.google.inject.spi.InstanceBinding;
+import com.google.inject.spi.LinkedKeyBinding;
+import com.google.inject.spi.PrivateElements;
+import com.google.inject.spi.ProviderInstanceBinding;
+import com.google.inject.spi.ProviderKeyBinding;
+import com.google.inject.spi.ScopeBinding;
+
+import org.junit.Test;
+
+import java.lang.annotation.Annotation;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks that an OverrideChain records the same bindings as nesting Modules.override for every layer.
+ */
+public class OverrideChainTest {
+
+    @Test
+    public void multiLayerChain() {
+        Module chain = chain(
+                named("root", "a", "b", "c"),
+                named("first", "a", "d"),
+                named("second", "a", "b"),
+                named("third", "d"));
+
+        assertSameAsNested(chain);
+        Injector injector = Guice.createInjector(chain);
+        assertEquals("second", instance(injector, "a"));
+        assertEquals("second", instance(injector, "b"));
+        assertEquals("root", instance(injector, "c"));
+        assertEquals("third", instance(injector, "d"));
+    }
+
+    @Test
+    public void linkedAndProviderBindings() {
+        Module chain = chain(
+                new AbstractModule() {
+                    @Override
+                    protected void configure() {
+                        bind(CharSequence.class).to(String.class);
+                        bind(String.class).toInstance("root");
+                        bind(Number.class).toProvider(new ConstantProvider(1));
+                    }
+                },
+                new AbstractModule() {
+                    @Override
+                    protected void configure() {
+                        bind(Number.class).toProvider(new ConstantProvider(2));
+                    }
+                },
+                new AbstractModule() {
+                    @Override
+                    protected void configure() {
+                        bind(CharSequence.class).toProvider(StringBuilderProvider.class);
+                    }
+                });
+
+        assertSameAsNested(chain);
+        Injector injector = Guice.createInjector(chain);
+        assertEquals(2, injector.getInstance(Number.class));
+        assertEquals(StringBuilder.class, injector.getInstance(CharSequence.class).getClass());
+    }
+
+    @Test
+    public void scopes() {
+        final CountingScope rootScope = new CountingScope();
+        final CountingScope overridingScope = new CountingScope();
+        Module chain = chain(
+                new AbstractModule() {
+                    @Override
+                    protected void configure() {
+                        bindScope(TestScoped.class, rootScope);
+                        bind(Object.class).in(TestScoped.class);
+                        bind(StringBuilder.class).in(Singleton.class);
+                        bind(Runnable.class).toInstance(() -> { });
+                    }
+                },
+                new AbstractModule() {
+                    @Override
+                    protected void configure() {
+                        bind(StringBuilder.class).in(Scopes.NO_SCOPE);
+                    }
+                },
+                new AbstractModule() {
+                    @Override
+                    protected void configure() {
+                        bindScope(TestScoped.class, overridingScope);
+                        bind(StringBuffer.class).in(TestScoped.class);
+                    }
+                });
+
+        assertSameAsNested(chain);
+        Injector injector = Guice.createInjector(chain);
+        injector.getInstance(Object.class);
+        injector.getInstance(StringBuffer.class);
+        assertEquals(0, rootScope.scoped);
+        assertEquals(2, overridingScope.scoped);
+        assertEquals(false, injector.getInstance(StringBuilder.class) == injector.getInstance(StringBuilder.class));
+    }
+
+    @Test
+    public void privateModules() {
+        Module chain = chain(
+                new AbstractModule() {
+                    @Override
+                    protected void configure() {
+                        bind(String.class).annotatedWith(Names.named("a")).toInstance("root");
+                        install(privateNamed("root", "b"));
+                    }
+                },
+                named("first", "a"),
+                privateNamed("second", "c"),
+                named("third", "a", "d"));
+
+        assertSameAsNested(chain);
+        Injector injector = Guice.createInjector(chain);
+        assertEquals("third", instance(injector, "a"));
+        assertEquals("root", instance(injector, "b"));
+        assertEquals("second", instance(injector, "c"));
+        assertEquals("third", instance(injector, "d"));
+    }
+
+    @Test
+    public void privateModuleExposingReplacedKey() {
+        // the second layer exposes a key the third layer replaces, which falls back to nesting
+        Module chain = chain(
+                named("root", "a"),
+                named("first", "b"),
+                privateNamed("second", "a"),
+                named("third", "a"));
+
+        assertSameAsNested(chain);
+        Injector injector = Guice.createInjector(chain);
+        assertEquals("third", instance(injector, "a"));
+        assertEquals("first", instance(injector, "b"));
+    }
+
+    @Test
+    public void multibinders() {
+        Module chain = chain(
+                new AbstractModule() {
+                    @Override
+                    protected void configure() {
+                        Multibinder.newSetBinder(binder(), String.class).addBinding().toInstance("root");
+                        MapBinder.newMapBinder(binder(), String.class, Integer.class).addBinding("root").toInstance(0);
+                        bind(Integer.class).toInstance(0);
+                    }
+                },
+                new AbstractModule() {
+                    @Override
+                    protected void configure() {
+                        Multibinder.newSetBinder(binder(), String.class).addBinding().toInstance("first");
+                        bind(Integer.class).toInstance(1);
+                    }
+                },
+                new AbstractModule() {
+                    @Override
+                    protected void configure() {
+                        Multibinder.newSetBinder(binder(), String.class).addBinding().toInstance("second");
+                        MapBinder.newMapBinder(binder(), String.class, Integer.class).addBinding("second").toInstance(2);
+                    }
+                });
+
+        assertSameAsNested(chain);
+        Injector injector = Guice.createInjector(chain);
+        assertEquals(3, injector.getInstance(Key.get(new TypeLiteral<Set<String>>() { })).size());
+        assertEquals(2, injector.getInstance(Key.get(new TypeLiteral<Map<String, Integer>>() { })).size());
+        assertEquals(1, (int) injector.getInstance(Integer.class));
+    }
+
+    private static Module chain(Module module, Module... overridingModules) {
+        Module chain = module;
+        for (Module overridingModule: overridingModules)
+            chain = OverrideChain.override(chain, overridingModule);
+        return chain;
+    }
+
+    private static void assertSameAsNested(Module chain) {
+        assertEquals(describe(Elements.getElements(((OverrideChain) chain).nested())), describe(Elements.getElements(chain)));
+    }
+
+    private static Object instance(Injector injector, String name) {
+        return injector.getInstance(Key.get(String.class, Names.named(name)));
+    }
+
+    private static Module named(final String value, final String... names) {
+        return new AbstractModule() {
+            @Override
+            protected void configure() {
+                for (String name: names)
+                    bind(String.class).annotatedWith(Names.named(name)).toInstance(value);
+            }
+        };
+    }
+
+    /**
+     * @return A PrivateModule that binds the names to the value in private, and exposes them
+     */
+    private static Module privateNamed(final String value, final String... names) {
+        return new PrivateModule() {
+            @Override
+            protected void configure() {
+                for (String name: names) {
+                    bind(String.class).annotatedWith(Names.named(name + " in private")).toInstance(value);
+                    bind(String.class).annotatedWith(Names.named(name)).to(Key.get(String.class, Names.named(name + " in private")));
+                    expose(String.class).annotatedWith(Names.named(name));
+                }
+            }
+        };
+    }
+
+    /**
+     * @return What the elements bind, sorted, without their sources or the ids of multibinder elements
+     */
+    private static List<String> describe(List<Element> elements) {
+        List<String> descriptions = new ArrayList<>();
+        for (Element element: elements)
+            descriptions.add(element.acceptVisitor(new DefaultElementVisitor<String>() {
+                @Override
+                protected String visitOther(Element element) {
+                    return element.getClass().getSimpleName();
+                }
+
+                @Override
+                public <T> String visit(Binding<T> binding) {
+                    return describe(binding.getKey()) + " " + describeTarget(binding) + " " + describeScoping(binding);
+                }
+
+                @Override
+                public String visit(PrivateElements privateElements) {
+                    List<String> exposed = new ArrayList<>();
+                    for (Key<?> key: privateElements.getExposedKeys())
+                        exposed.add(describe(key));
+                    Collections.sort(exposed);
+                    return "private exposing " + exposed + " " + describe(privateElements.getElements());
+                }
+
+                @Override
+                public String visit(ScopeBinding scopeBinding) {
+                    return "scope " + scopeBinding.getAnnotationType().getName() + " " + scopeBinding.getScope();
+                }
+            }));
+        Collections.sort(descriptions);
+        return descriptions;
+    }
+
+    private static String describe(Key<?> key) {
+        Annotation annotation = key.getAnnotation();
+        if (annotation == null)
+            return key.getTypeLiteral().toString();
+        return key.getTypeLiteral() + " " + annotation.toString().replaceAll("uniqueId=\\d+", "uniqueId");
+    }
+
+    private static String describeTarget(Binding<?> binding) {
+        return binding.acceptTargetVisitor(new DefaultBindingTargetVisitor<Object, String>() {
+            @Override
+            protected String visitOther(Binding<?> binding) {
+                return binding.getClass().getSimpleName();
+            }
+
+            @Override
+            public String visit(InstanceBinding<?> binding) {
+                return "instance " + binding.getInstance();
+            }
+
+            @Override
+            public String visit(LinkedKeyBinding<?> binding) {
+                return "to " + describe(binding.getLinkedKey());
+            }
+
+            @Override
+            public String visit(ProviderKeyBinding<?> binding) {
+                return "provider " + describe(binding.getProviderKey());
+            }
+
+            @Override
+            public String visit(ProviderInstanceBinding<?> binding) {
+                return "provider " + binding.getUserSuppliedProvider().getClass().getName();
+            }
+        });
+    }
+
+    private static String describeScoping(Binding<?> binding) {
+        return binding.acceptScopingVisitor(new DefaultBindingScopingVisitor<String>() {
+            @Override
+            protected String visitOther() {
+                return "unscoped";
+            }
+
+            @Override
+            public String visitEagerSingleton() {
+                return "eager singleton";
+            }
+
+            @Override
+            public String visitScope(Scope scope) {
+                return "in " + scope;
+            }
+
+            @Override
+            public String visitScopeAnnotation(Class<? extends Annotation> scopeAnnotation) {
+                return "in @" + scopeAnnotation.getName();
+            }
+        });
+    }
+
+    @ScopeAnnotation
+    @Retention(RetentionPolicy.RUNTIME)
+    @Target({ElementType.TYPE, ElementType.METHOD})
+    public @interface TestScoped {
+    }
+
+    static class CountingScope implements Scope {
+        int scoped;
+
+        @Override
+        public <T> Provider<T> scope(Key<T> key, Provider<T> unscoped) {
+            scoped++;
+            return unscoped;
+        }
+    }
+
+    static class ConstantProvider implements Provider<Number> {
+        private final int value;
+
+        ConstantProvider(int value) {
+            this.value = value;
+        }
+
+        @Override
+        public Number get() {
+            return value;
+        }
+    }
+
+    static class StringBuilderProvider implements Provider<CharSequence> {
+        @Override
+        public CharSequence get() {
+            return new StringBuilder();
+        }
+    }
+}
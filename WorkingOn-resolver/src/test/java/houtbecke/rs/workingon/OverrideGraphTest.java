@@ -0,0 +1,65 @@
+package houtbecke.rs.workingon;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import houtbecke.rs.workingon.sample.AppModule;
+import houtbecke.rs.workingon.sample.DeeperOverride;
+import houtbecke.rs.workingon.sample.ExtraOverride;
+import houtbecke.rs.workingon.sample.OtherModule;
+import houtbecke.rs.workingon.sample.cycle.First;
+import houtbecke.rs.workingon.sample.cycle.Second;
+import houtbecke.rs.workingon.sample.dev.AppModuleDev;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class OverrideGraphTest {
+
+    private ModuleResolver resolver;
+
+    @Before
+    public void setUp() {
+        resolver = new ModuleResolver(() -> false);
+        resolver.setModuleFactories(null);
+    }
+
+    @Test
+    public void moduleThatOverridesNothing() {
+        OverrideGraph graph = new OverrideGraph.Builder(resolver).add(OtherModule.class).build();
+
+        assertTrue(graph.contains(OtherModule.class));
+        assertNull(graph.classToOverrideFor(OtherModule.class));
+        assertNull(graph.rootClassToOverrideFor(OtherModule.class));
+        assertEquals(0, graph.depthOf(OtherModule.class));
+    }
+
+    @Test
+    public void chainOfOverrides() {
+        OverrideGraph graph = new OverrideGraph.Builder(resolver).add(DeeperOverride.class).add(AppModuleDev.class).build();
+
+        assertTrue(graph.contains(AppModule.class));
+        assertTrue(graph.contains(ExtraOverride.class));
+        assertEquals(ExtraOverride.class, graph.classToOverrideFor(DeeperOverride.class));
+        assertEquals(AppModule.class, graph.classToOverrideFor(ExtraOverride.class));
+        assertEquals(AppModule.class, graph.rootClassToOverrideFor(DeeperOverride.class));
+        assertEquals(AppModule.class, graph.rootClassToOverrideFor(AppModuleDev.class));
+        assertEquals(2, graph.depthOf(DeeperOverride.class));
+        assertEquals(1, graph.depthOf(AppModuleDev.class));
+        assertEquals(0, graph.depthOf(AppModule.class));
+        assertFalse(graph.contains(OtherModule.class));
+    }
+
+    @Test
+    public void rejectsCycles() {
+        try {
+            new OverrideGraph.Builder(resolver).add(First.class);
+            fail();
+        } catch (IllegalStateException e) {
+            assertEquals("Cyclic OverridesModule chain: " + First.class.getName() + " -> " + Second.class.getName() + " -> " + First.class.getName(), e.getMessage());
+        }
+    }
+}
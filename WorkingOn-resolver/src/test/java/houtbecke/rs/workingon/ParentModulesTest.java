@@ -0,0 +1,87 @@
+package houtbecke.rs.workingon;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Module;
+import com.google.inject.Provider;
+import com.google.inject.name.Names;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+
+import javax.inject.Inject;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ParentModulesTest {
+
+    interface Service {
+    }
+
+    static class ServiceImpl implements Service {
+    }
+
+    static class Client {
+        @Inject
+        Client(Service service) {
+        }
+    }
+
+    static class ProviderClient {
+        @Inject
+        Provider<Service> service;
+    }
+
+    private static Module binding(final Class<?> type) {
+        return new AbstractModule() {
+            @Override
+            protected void configure() {
+                bind(type);
+            }
+        };
+    }
+
+    private static final Module SERVICE = new AbstractModule() {
+        @Override
+        protected void configure() {
+            bind(Service.class).to(ServiceImpl.class);
+        }
+    };
+
+    private static List<Module> modules(Module module) {
+        return Collections.singletonList(module);
+    }
+
+    @Test
+    public void independentModules() {
+        assertTrue(ParentModules.canBeParent(modules(SERVICE), modules(binding(Client.class))));
+    }
+
+    @Test
+    public void parentDependingOnChildBinding() {
+        assertFalse(ParentModules.canBeParent(modules(binding(Client.class)), modules(SERVICE)));
+    }
+
+    @Test
+    public void dependencyThroughJustInTimeBinding() {
+        Module linked = new AbstractModule() {
+            @Override
+            protected void configure() {
+                bind(Object.class).annotatedWith(Names.named("client")).to(Client.class);
+            }
+        };
+        assertFalse(ParentModules.canBeParent(modules(linked), modules(SERVICE)));
+    }
+
+    @Test
+    public void dependencyThroughProvider() {
+        assertFalse(ParentModules.canBeParent(modules(binding(ProviderClient.class)), modules(SERVICE)));
+    }
+
+    @Test
+    public void keyBoundByBoth() {
+        assertFalse(ParentModules.canBeParent(modules(SERVICE), modules(SERVICE)));
+    }
+}
@@ -0,0 +1,96 @@
+package houtbecke.rs.workingon;
+
+import com.google.inject.Module;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import houtbecke.rs.workingon.sample.AppModule;
+import houtbecke.rs.workingon.sample.OtherModule;
+import houtbecke.rs.workingon.sample.dev.AppModuleDev;
+import houtbecke.rs.workingon.sample.dev.Dev;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ResolutionPlanTest {
+
+    private static final String KEY = "1-2|modules:AppModule,OtherModule,|tasks:Dev,|extraModules:";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private ModuleResolver resolver;
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        resolver = new ModuleResolver(() -> true);
+        resolver.setModuleFactories(null);
+        file = new File(temporaryFolder.getRoot(), "plan");
+    }
+
+    @Test
+    public void roundTripCreatesTheSameModules() throws Exception {
+        ModuleRegistry resolved = resolver.resolve(Collections.singletonList("Dev"),
+                Arrays.<Class<? extends Module>>asList(AppModule.class, OtherModule.class), Collections.<Module>emptyList());
+        ResolutionPlan plan = ResolutionPlan.of(KEY, resolved);
+
+        plan.write(file);
+        ResolutionPlan read = ResolutionPlan.read(file, KEY);
+
+        assertNotNull(read);
+        assertEquals(plan.getEntries(), read.getEntries());
+        assertTrue(read.getEntries().contains(Arrays.asList(AppModule.class.getName(), AppModuleDev.class.getName())));
+        assertTrue(read.getEntries().contains(Collections.singletonList(Dev.class.getName())));
+        List<Module> modules = read.instantiate(resolver);
+        assertEquals(read.getEntries(), ResolutionPlan.of(KEY, modules).getEntries());
+        assertEquals(1, temporaryFolder.getRoot().list().length);
+    }
+
+    @Test
+    public void planWithAnotherKeyIsNotRead() throws Exception {
+        ResolutionPlan.of(KEY, Collections.<Module>singletonList(new AppModule())).write(file);
+
+        assertNull(ResolutionPlan.read(file, KEY.replace("tasks:Dev", "tasks:Mock")));
+    }
+
+    @Test
+    public void missingFileIsNotRead() {
+        assertNull(ResolutionPlan.read(file, KEY));
+    }
+
+    @Test
+    public void emptyFileIsNotRead() throws Exception {
+        write("");
+
+        assertNull(ResolutionPlan.read(file, KEY));
+    }
+
+    @Test
+    public void corruptPlanIsNotInstantiated() throws Exception {
+        write(KEY + "\n" + AppModule.class.getName() + "\nhoutbecke.rs.workingon.sample.Gone\n");
+        assertNull(ResolutionPlan.read(file, KEY).instantiate(resolver));
+
+        write(KEY + "\n" + AppModule.class.getName() + " java.lang.String\n");
+        assertNull(ResolutionPlan.read(file, KEY).instantiate(resolver));
+    }
+
+    private void write(String content) throws IOException {
+        try (Writer writer = new FileWriter(file)) {
+            writer.write(content);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package houtbecke.rs.workingon;
+
+import com.google.inject.Guice;
+import com.google.inject.Module;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import houtbecke.rs.workingon.sample.AppModule;
+import houtbecke.rs.workingon.sample.dev.AppModuleDev;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TraceRecorderTest {
+
+    private TraceRecorder recorder;
+
+    @Before
+    public void setUp() {
+        recorder = new TraceRecorder();
+    }
+
+    @Test
+    public void summaryCountsAndTotalsEachPhase() {
+        recorder.end(WorkingOnTracer.Phase.INSTANTIATE, "a", 0, 1000000);
+        recorder.end(WorkingOnTracer.Phase.INSTANTIATE, "b", 1000000, 3000000);
+        recorder.end(WorkingOnTracer.Phase.PROBE, null, 0, 500000);
+
+        String summary = recorder.summary();
+
+        assertTrue(summary, summary.contains(String.format("%-20s %6d x %10.3f ms%n", WorkingOnTracer.Phase.PROBE, 1, 0.5)));
+        assertTrue(summary, summary.contains(String.format("%-20s %6d x %10.3f ms%n", WorkingOnTracer.Phase.INSTANTIATE, 2, 3.0)));
+    }
+
+    @Test
+    public void nestedPhaseCountsForContainingPhaseToo() {
+        recorder.begin(WorkingOnTracer.Phase.RESOLVE_MODULE, "outer", 0);
+        recorder.begin(WorkingOnTracer.Phase.INSTANTIATE, "inner", 1000000);
+        recorder.end(WorkingOnTracer.Phase.INSTANTIATE, "inner", 1000000, 2000000);
+        recorder.end(WorkingOnTracer.Phase.RESOLVE_MODULE, "outer", 0, 4000000);
+
+        List<TraceRecorder.Event> events = recorder.getEvents();
+        assertEquals(2, events.size());
+        assertEquals(WorkingOnTracer.Phase.INSTANTIATE, events.get(0).phase);
+        assertEquals(WorkingOnTracer.Phase.RESOLVE_MODULE, events.get(1).phase);
+
+        String summary = recorder.summary();
+        assertTrue(summary, summary.contains(String.format("%-20s %6d x %10.3f ms%n", WorkingOnTracer.Phase.RESOLVE_MODULE, 1, 4.0)));
+        assertTrue(summary, summary.contains(String.format("%-20s %6d x %10.3f ms%n", WorkingOnTracer.Phase.INSTANTIATE, 1, 1.0)));
+    }
+
+    @Test
+    public void resolverPhasesAreNestedInResolveModule() throws Exception {
+        ModuleResolver resolver = new ModuleResolver(() -> true);
+        resolver.setModuleFactories(null);
+        resolver.setTracer(recorder);
+        resolver.load(modules -> Guice.createInjector(modules), Collections.singletonList("Dev"),
+                Collections.<Class<? extends Module>>singletonList(AppModule.class), Collections.<Module>emptyList());
+
+        TraceRecorder.Event resolve = only(WorkingOnTracer.Phase.RESOLVE_MODULE, AppModule.class.getName());
+        for (String instantiated: Arrays.asList(AppModule.class.getName(), AppModuleDev.class.getName())) {
+            TraceRecorder.Event instantiate = only(WorkingOnTracer.Phase.INSTANTIATE, instantiated);
+            assertTrue(instantiated, instantiate.startNanos >= resolve.startNanos);
+            assertTrue(instantiated, instantiate.endNanos <= resolve.endNanos);
+        }
+        only(WorkingOnTracer.Phase.CREATE_INJECTOR, null);
+    }
+
+    @Test
+    public void chromeTraceIsRelativeToFirstEventAndEscapesDetails() throws Exception {
+        recorder.end(WorkingOnTracer.Phase.PROBE, null, 5000, 7000);
+        recorder.end(WorkingOnTracer.Phase.INSTANTIATE, "my \"module\"", 6000, 6500);
+
+        StringWriter writer = new StringWriter();
+        recorder.writeChromeTrace(writer);
+        String trace = writer.toString();
+
+        assertTrue(trace, trace.startsWith("{\"traceEvents\":["));
+        assertTrue(trace, trace.contains("\"name\":\"PROBE\",\"cat\":\"workingon\",\"ph\":\"X\",\"pid\":1,\"tid\":" + Thread.currentThread().getId() + ",\"ts\":0.0,\"dur\":2.0}"));
+        assertTrue(trace, trace.contains("\"ts\":1.0,\"dur\":0.5,\"args\":{\"detail\":\"my \\\"module\\\"\"}"));
+    }
+
+    private TraceRecorder.Event only(WorkingOnTracer.Phase phase, String detail) {
+        TraceRecorder.Event found = null;
+        for (TraceRecorder.Event event: recorder.getEvents()) {
+            if (event.phase != phase || (detail != null && !detail.equals(event.detail)))
+                continue;
+            assertTrue("more than one " + phase + " " + detail, found == null);
+            found = event;
+        }
+        assertTrue("no " + phase + " " + detail, found != null);
+        return found;
+    }
+}
@@ -0,0 +1,12 @@
+package houtbecke.rs.workingon.sample;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.name.Names;
+
+public class AppModule extends AbstractModule {
+    @Override
+    protected void configure() {
+        bind(String.class).annotatedWith(Names.named("greeting")).toInstance("app");
+        bind(String.class).annotatedWith(Names.named("farewell")).toInstance("app");
+    }
+}
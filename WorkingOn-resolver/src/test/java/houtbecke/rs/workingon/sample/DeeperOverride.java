@@ -0,0 +1,14 @@
+package houtbecke.rs.workingon.sample;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.name.Names;
+
+import houtbecke.rs.workingon.OverridesModule;
+
+@OverridesModule(ExtraOverride.class)
+public class DeeperOverride extends AbstractModule {
+    @Override
+    protected void configure() {
+        bind(String.class).annotatedWith(Names.named("greeting")).toInstance("deeper");
+    }
+}
@@ -0,0 +1,11 @@
+package houtbecke.rs.workingon.sample;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.name.Names;
+
+public class OtherModule extends AbstractModule {
+    @Override
+    protected void configure() {
+        bind(String.class).annotatedWith(Names.named("other")).toInstance("other");
+    }
+}
@@ -0,0 +1,12 @@
+package houtbecke.rs.workingon.sample.cycle;
+
+import com.google.inject.AbstractModule;
+
+import houtbecke.rs.workingon.OverridesModule;
+
+@OverridesModule(Second.class)
+public class First extends AbstractModule {
+    @Override
+    protected void configure() {
+    }
+}
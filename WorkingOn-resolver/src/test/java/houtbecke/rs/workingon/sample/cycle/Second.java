@@ -0,0 +1,12 @@
+package houtbecke.rs.workingon.sample.cycle;
+
+import com.google.inject.AbstractModule;
+
+import houtbecke.rs.workingon.OverridesModule;
+
+@OverridesModule(First.class)
+public class Second extends AbstractModule {
+    @Override
+    protected void configure() {
+    }
+}
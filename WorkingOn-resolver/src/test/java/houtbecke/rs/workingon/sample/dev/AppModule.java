@@ -0,0 +1,17 @@
+package houtbecke.rs.workingon.sample.dev;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.name.Names;
+
+import houtbecke.rs.workingon.OverridesModule;
+
+/**
+ * Not used for the Dev task, as AppModuleDev is looked for first.
+ */
+@OverridesModule
+public class AppModule extends AbstractModule {
+    @Override
+    protected void configure() {
+        bind(String.class).annotatedWith(Names.named("greeting")).toInstance("alternate");
+    }
+}
@@ -0,0 +1,22 @@
+package houtbecke.rs.workingon.sample.dev;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.name.Names;
+
+import houtbecke.rs.workingon.OverridesModule;
+
+@OverridesModule
+public class AppModuleDev extends AbstractModule {
+
+    private final boolean debugMode;
+
+    public AppModuleDev(boolean debugMode) {
+        this.debugMode = debugMode;
+    }
+
+    @Override
+    protected void configure() {
+        bind(String.class).annotatedWith(Names.named("greeting")).toInstance("dev");
+        bind(String.class).annotatedWith(Names.named("debug")).toInstance(String.valueOf(debugMode));
+    }
+}
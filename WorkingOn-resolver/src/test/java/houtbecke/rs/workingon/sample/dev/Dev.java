@@ -0,0 +1,11 @@
+package houtbecke.rs.workingon.sample.dev;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.name.Names;
+
+public class Dev extends AbstractModule {
+    @Override
+    protected void configure() {
+        bind(String.class).annotatedWith(Names.named("dev")).toInstance("base");
+    }
+}
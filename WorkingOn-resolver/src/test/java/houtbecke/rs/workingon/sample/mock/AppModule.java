@@ -0,0 +1,14 @@
+package houtbecke.rs.workingon.sample.mock;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.name.Names;
+
+import houtbecke.rs.workingon.OverridesModule;
+
+@OverridesModule
+public class AppModule extends AbstractModule {
+    @Override
+    protected void configure() {
+        bind(String.class).annotatedWith(Names.named("farewell")).toInstance("mock");
+    }
+}
@@ -0,0 +1,15 @@
+package houtbecke.rs.workingon.sample.orphan;
+
+import com.google.inject.AbstractModule;
+
+import houtbecke.rs.workingon.OverridesModule;
+
+/**
+ * Overrides a module from the parent package that does not exist.
+ */
+@OverridesModule
+public class MissingOrphan extends AbstractModule {
+    @Override
+    protected void configure() {
+    }
+}
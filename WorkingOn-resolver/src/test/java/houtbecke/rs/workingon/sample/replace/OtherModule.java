@@ -0,0 +1,14 @@
+package houtbecke.rs.workingon.sample.replace;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.name.Names;
+
+/**
+ * Replaces OtherModule for the Replace task, as it does not override it.
+ */
+public class OtherModule extends AbstractModule {
+    @Override
+    protected void configure() {
+        bind(String.class).annotatedWith(Names.named("other")).toInstance("replaced");
+    }
+}
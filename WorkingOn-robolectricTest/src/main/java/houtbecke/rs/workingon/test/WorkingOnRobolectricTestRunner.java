@@ -1,15 +1,42 @@
 package houtbecke.rs.workingon.test;
 
+import org.junit.runner.notification.RunNotifier;
+import org.junit.runners.model.FrameworkMethod;
 import org.junit.runners.model.InitializationError;
 import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.TestLifecycle;
 
 public class WorkingOnRobolectricTestRunner extends RobolectricGradleTestRunner {
 
+    private final Class<?> testClass;
+
     public WorkingOnRobolectricTestRunner(Class<?> testClass) throws InitializationError {
         super(testClass);
-        System.out.println("testClass:" + testClass.getName());
-        System.setProperty("testClass", testClass.getName());
+        this.testClass = testClass;
+    }
 
+    /**
+     * Every test gets its own WorkingOnContext, bound to the thread it runs on, so test classes with
+     * different configurations can run in parallel. The test class is passed on per thread rather than
+     * in the global testClass system property.
+     */
+    @Override
+    protected Class<? extends TestLifecycle> getTestLifecycleClass() {
+        return WorkingOnTestLifecycle.class;
+    }
 
+    /**
+     * Robolectric 3.0 builds the statement of a test in runChild rather than in methodBlock, so the test
+     * class is passed on around it.
+     */
+    @Override
+    protected void runChild(FrameworkMethod method, RunNotifier notifier) {
+        String property = WorkingOnTestLifecycle.testClassProperty();
+        System.setProperty(property, testClass.getName());
+        try {
+            super.runChild(method, notifier);
+        } finally {
+            System.clearProperty(property);
+        }
     }
-}
\ No newline at end of file
+}
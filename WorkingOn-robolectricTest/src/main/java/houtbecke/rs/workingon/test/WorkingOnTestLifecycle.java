@@ -0,0 +1,54 @@
+package houtbecke.rs.workingon.test;
+
+import android.app.Application;
+
+import org.robolectric.DefaultTestLifecycle;
+import org.robolectric.annotation.Config;
+import org.robolectric.manifest.AndroidManifest;
+
+import java.lang.reflect.Method;
+
+/**
+ * Binds a WorkingOnContext configured from the test class to the test thread before the Application is
+ * created, and unbinds it after the test.
+ *
+ * This class is loaded by Robolectric's class loader, so it can reach the WorkingOn classes the test
+ * uses, but only by reflection since this module does not depend on WorkingOn-core. The test class is
+ * passed by WorkingOnRobolectricTestRunner in a system property for the test thread.
+ */
+public class WorkingOnTestLifecycle extends DefaultTestLifecycle {
+
+    private static final String WORKING_ON_CLASS = "houtbecke.rs.workingon.WorkingOn";
+    private static final String WORKING_ON_CONTEXT_CLASS = "houtbecke.rs.workingon.WorkingOnContext";
+
+    /**
+     * @return The system property holding the name of the test class running on the current thread
+     */
+    static String testClassProperty() {
+        return "workingon.testClass." + Thread.currentThread().getId();
+    }
+
+    @Override
+    public Application createApplication(Method method, AndroidManifest appManifest, Config config) {
+        String testClassName = System.getProperty(testClassProperty());
+        if (testClassName != null)
+            try {
+                ClassLoader classLoader = getClass().getClassLoader();
+                Class<?> testClass = Class.forName(testClassName, false, classLoader);
+                Class.forName(WORKING_ON_CLASS, true, classLoader).getMethod("bindTestContext", Class.class).invoke(null, testClass);
+            } catch (Exception e) {
+                throw new RuntimeException("Could not bind a WorkingOn context for " + testClassName, e);
+            }
+        return super.createApplication(method, appManifest, config);
+    }
+
+    @Override
+    public void afterTest(Method method) {
+        super.afterTest(method);
+        try {
+            ClassLoader classLoader = getClass().getClassLoader();
+            Class<?> contextClass = Class.forName(WORKING_ON_CONTEXT_CLASS, false, classLoader);
+            Class.forName(WORKING_ON_CLASS, true, classLoader).getMethod("bindContext", contextClass).invoke(null, (Object) null);
+        } catch (Exception ignore) { /* WorkingOn is not used by this test */ }
+    }
+}